@@ -8,22 +8,34 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.google.gson.Gson;
 import com.google.gson.JsonParseException;
 import com.philippkutsch.tuchain.chain.*;
+import com.philippkutsch.tuchain.chain.store.BlockStore;
+import com.philippkutsch.tuchain.chain.store.CheckpointStore;
+import com.philippkutsch.tuchain.chain.utils.BlockchainJsonReader;
 import com.philippkutsch.tuchain.chain.utils.ChainUtils;
 import com.philippkutsch.tuchain.config.Config;
 import com.philippkutsch.tuchain.modules.BlockchainSyncModule;
 import com.philippkutsch.tuchain.modules.PingModule;
-import com.philippkutsch.tuchain.modules.mining.HashPerformanceAnalyser;
+import com.philippkutsch.tuchain.modules.mining.GetWorkWorker;
+import com.philippkutsch.tuchain.modules.mining.HashEngine;
+import com.philippkutsch.tuchain.modules.mining.HashEngines;
 import com.philippkutsch.tuchain.modules.mining.Miner;
+import com.philippkutsch.tuchain.modules.mining.MiningMetrics;
+import com.philippkutsch.tuchain.modules.mining.MiningModule;
+import com.philippkutsch.tuchain.modules.mining.ScalarHashEngine;
 import com.philippkutsch.tuchain.network.RemoteNode;
+import com.philippkutsch.tuchain.utils.BlockchainVerificationUtils;
+import com.philippkutsch.tuchain.utils.SignatureCache;
 import net.sourceforge.argparse4j.ArgumentParsers;
 import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
 import net.sourceforge.argparse4j.inf.Subparsers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nonnull;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
@@ -70,21 +82,47 @@ public class App {
                 .addArgument("node")
                 .action(Arguments.storeTrue());
 
-        subparsers.addParser("gen-wallet")
-                .help("Generate a new wallet file")
-                .addArgument("-o", "--out")
+        Subparser walletParser = subparsers.addParser("gen-wallet")
+                .help("Generate a new wallet file");
+        walletParser.addArgument("-o", "--out")
                 .dest("walletOut")
                 .type(Arguments.fileType())
                 .setDefault("myWallet.wallet")
                 .help("Target wallet file");
+        walletParser.addArgument("--key-type")
+                .dest("walletKeyType")
+                .choices(KeyType.RSA.getName(), KeyType.ED25519.getName())
+                .setDefault(KeyType.RSA.getName())
+                .help("Signature scheme of the wallet");
 
         subparsers.addParser("gen-genesis")
                 .help("Generate a new genesis block and save it to a new chain")
                 .addArgument("-o", "--out")
                 .dest("genesisOut")
                 .type(Arguments.fileType())
-                .setDefault("blockchain.json")
-                .help("Target blockchain file");
+                .setDefault("blocks")
+                .help("Target block store directory");
+
+        Subparser workerParser = subparsers.addParser("worker")
+                .help("Mine for a node running the getwork mining engine");
+        workerParser.addArgument("--host")
+                .dest("workerHost")
+                .setDefault("127.0.0.1")
+                .help("Node address");
+        workerParser.addArgument("--port")
+                .dest("workerPort")
+                .type(Integer.class)
+                .required(true)
+                .help("Node miningWorkPort");
+        workerParser.addArgument("--threads")
+                .dest("workerThreads")
+                .type(Integer.class)
+                .setDefault(Runtime.getRuntime().availableProcessors())
+                .help("Worker connections, one hashing thread each");
+        workerParser.addArgument("--hash-engine")
+                .dest("workerHashEngine")
+                .setDefault(HashEngines.SCALAR)
+                .help("Hashing engine, scalar or vector");
 
         Namespace namespace = null;
         try {
@@ -112,7 +150,7 @@ public class App {
 
             try {
                 //Generate wallet
-                Wallet newWallet = Wallet.generate();
+                Wallet newWallet = Wallet.generate(KeyType.forName(namespace.getString("walletKeyType")));
 
                 //Save wallet
                 newWallet.save(targetWalletFile);
@@ -137,19 +175,29 @@ public class App {
                 ListeningExecutorService service = MoreExecutors.
                         listeningDecorator(Executors.newCachedThreadPool());
 
+                Block genesisBlock = Block.generateGenesisBlock();
+                MiningMetrics metrics = new MiningMetrics();
+                //noinspection ConstantConditions
                 ListenableFuture<HashedBlock> hashedBlockFuture = service.submit(new Miner(
-                        24, 0,
-                        Block.generateGenesisBlock(),
-                        new HashPerformanceAnalyser()
+                        genesisBlock.getDifficulty(), 0,
+                        genesisBlock,
+                        null,
+                        ScalarHashEngine::new,
+                        metrics
                 ));
                 HashedBlock hashedBlock = hashedBlockFuture.get();
+                metrics.onBlockMined();
+                logger.info("Genesis block mined with " + metrics.getTotalHashes() + " hashes in "
+                        + metrics.getTemplateAgeMillis() + " ms");
                 logger.info("Generated genesis block " + ChainUtils.encodeToString(hashedBlock));
 
-                //Export to blockchain
-                List<HashedBlock> blockList = new ArrayList<>();
-                blockList.add(hashedBlock);
-                Blockchain exportChain = new Blockchain(blockList);
-                Files.writeString(targetBlockchain.toPath(), ChainUtils.encodeToString(exportChain));
+                //Export to new block store
+                try (BlockStore blockStore = BlockStore.open(targetBlockchain.toPath())) {
+                    if (blockStore.size() != 0) {
+                        throw new IOException("Block store " + targetBlockchain.getPath() + " is not empty");
+                    }
+                    blockStore.append(hashedBlock);
+                }
 
                 //Shutdown
                 service.shutdown();
@@ -159,6 +207,30 @@ public class App {
             return;
         }
 
+        //External mining worker
+        if (namespace.getInt("workerPort") != null) {
+            String host = namespace.getString("workerHost");
+            int port = namespace.getInt("workerPort");
+            int threads = Math.max(1, namespace.getInt("workerThreads"));
+            logger.info("Starting " + threads + " mining workers for " + host + ":" + port);
+
+            HashEngine.Factory engineFactory = HashEngines.forName(namespace.getString("workerHashEngine"));
+            List<Thread> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Thread worker = new Thread(new GetWorkWorker(host, port, engineFactory), "worker-" + i);
+                worker.start();
+                workers.add(worker);
+            }
+            try {
+                for (Thread worker : workers) {
+                    worker.join();
+                }
+            } catch (InterruptedException e) {
+                workers.forEach(Thread::interrupt);
+            }
+            return;
+        }
+
         //Try to load config files
         String workingDirectoryPath = namespace.getString("directory");
         File workingDirectory = new File(workingDirectoryPath);
@@ -181,27 +253,51 @@ public class App {
             throw new IllegalStateException("No configuration");
         }
 
-        //Load wallet and get rsa keys
-        RsaKeys rsaKeys;
+        //Load wallet and get its keys
+        Keys keys;
         try {
             Wallet wallet = Wallet.load(new File(workingDirectory, config.getWalletFilePath()));
-            rsaKeys = new RsaKeys(wallet.getPublicKey(), wallet.getPrivateKey());
+            keys = wallet.getKeys();
         } catch (IOException | NoSuchAlgorithmException | InvalidKeySpecException e) {
-            logger.error("Failed to load rsa keys", e);
+            logger.error("Failed to load wallet keys", e);
             return;
         }
 
-        //Load blockchain
+        //Open block store and checkpoints
+        BlockStore blockStore;
+        CheckpointStore checkpointStore;
+        try {
+            File blockStoreDirectory = new File(workingDirectory, config.getBlockStorePath());
+            blockStore = BlockStore.open(blockStoreDirectory.toPath());
+            checkpointStore = new CheckpointStore(
+                    new File(blockStoreDirectory, "checkpoints").toPath(), config.getCheckpointInterval());
+        } catch (IOException e) {
+            logger.error("Failed to open block store", e);
+            return;
+        }
+
+        //Load blockchain from block store, import the legacy blockchain file once if the store is empty
         File blockchainFile = new File(workingDirectory, config.getBlockchainFilePath());
         Blockchain blockchain = null;
-        if (blockchainFile.exists()) {
+        if (blockStore.size() == 0 && blockchainFile.exists()) {
             try {
-                String blockchainJson = Files.readString(blockchainFile.toPath());
-                blockchain = ChainUtils.decodeFromString(blockchainJson, Blockchain.class);
+                BlockchainJsonReader.readFile(blockchainFile.toPath(),
+                        blockStore::append, logProgress("Importing blockchain file"));
+                blockStore.sync();
+                logger.info("Imported " + blockStore.size() + " blocks from " + blockchainFile.getPath());
             } catch (IOException | JsonParseException e) {
                 logger.error("Failed to read blockchain from file", e);
                 return;
             }
+        }
+        if (blockStore.size() > 0) {
+            try {
+                blockchain = Blockchain.load(blockStore, checkpointStore, logProgress("Loading blockchain"));
+                logger.info("Loaded " + blockchain.getHeight() + " blocks");
+            } catch (IOException | JsonParseException e) {
+                logger.error("Failed to read blockchain from block store", e);
+                return;
+            }
         } else {
             if (!namespace.getBoolean("genesis")) {
                 throw new IllegalStateException("No blockchain found. A blockchain with an genesis block is required");
@@ -213,7 +309,7 @@ public class App {
         CrowdfundingNode crowdfundingNode;
         try {
             //noinspection ConstantConditions
-            crowdfundingNode = new CrowdfundingNode(config, rsaKeys, blockchain);
+            crowdfundingNode = new CrowdfundingNode(config, keys, blockchain);
         } catch (IOException e) {
             logger.error("Failed to create node", e);
             return;
@@ -229,8 +325,12 @@ public class App {
                 exit                   Shutdown node and exit
                 nodes                  List all connected nodes
                 ping                   Ping all connected nodes
-                save                   Save blockchain to disk
+                save                   Flush stored blocks to disk
                 blockchain             View blockchain length
+                mining                 Show hashrate, template and time to block metrics
+                utxo-check             Rebuild the UTXO set and compare it with the live set
+                audit                  Validate the whole blockchain from the genesis block
+                sigcache               Show size and hit rate of the verified signature cache
                 block [id]             View block
                 transaction [id]       View transaction
                 minerkey               Show miner public key
@@ -285,6 +385,37 @@ public class App {
                     List<HashedBlock> blockList = crowdfundingNode.getBlockchain().getBlockchain();
                     logger.info("Blockchain: " + blockList.size() + " blocks long");
                 }
+                else if ("mining".equals(input[0])) {
+                    MiningMetrics metrics = crowdfundingNode.requireModule(MiningModule.class).getMetrics();
+                    for (String line : metrics.describe()) {
+                        logger.info(line);
+                    }
+                }
+                else if ("utxo-check".equals(input[0])) {
+                    List<String> differences = crowdfundingNode.getBlockchain().verifyUtxoSet();
+                    if (differences.isEmpty()) {
+                        logger.info("UTXO set consistent");
+                    } else {
+                        logger.error("UTXO set inconsistent, " + differences.size() + " differences:");
+                        for (String difference : differences) {
+                            logger.error(difference);
+                        }
+                    }
+                }
+                else if ("audit".equals(input[0])) {
+                    //Blocks are only checked against their tip on arrival, this revalidates all of them
+                    long start = System.currentTimeMillis();
+                    BlockchainVerificationUtils.VerificationResult result
+                            = BlockchainVerificationUtils.validateBlockchain(crowdfundingNode.getBlockchain(), 100);
+                    if (result.isSuccess()) {
+                        logger.info("Blockchain valid, audited in " + (System.currentTimeMillis() - start) + " ms");
+                    } else {
+                        logger.error("Blockchain invalid\n" + result.errorString());
+                    }
+                }
+                else if ("sigcache".equals(input[0])) {
+                    logger.info(SignatureCache.shared().describe());
+                }
                 else if ("block".equals(input[0])) {
                     if (input.length != 2) {
                         logger.info("Usage: block [id]");
@@ -337,15 +468,15 @@ public class App {
                 }
                 else if ("save".equals(input[0])) {
                     try {
-                        Files.writeString(blockchainFile.toPath(), ChainUtils.encodeToString(crowdfundingNode.blockchain));
-                        logger.info("Chain saved!");
+                        blockStore.sync();
+                        logger.info("Chain saved! " + blockStore.size() + " blocks stored");
                     } catch (IOException e) {
                         logger.error("Failed to save blockchain", e);
                     }
                 }
                 else if ("minerkey".equals(input[0])) {
-                    logger.info("Public:\n" + ChainUtils.bytesToBase64(rsaKeys.getPublicKeyBytes())
-                            + "\n\nPrivate:\n" + ChainUtils.bytesToBase64(rsaKeys.getPrivateKeyBytes()));
+                    logger.info("Public:\n" + ChainUtils.bytesToBase64(keys.getPublicKeyBytes())
+                            + "\n\nPrivate:\n" + ChainUtils.bytesToBase64(keys.getPrivateKeyBytes()));
                 }
                 else if ("balance-key".equals(input[0])) {
                     if (input.length != 2) {
@@ -353,9 +484,9 @@ public class App {
                         continue;
                     }
 
-                    RsaKeys pubKey;
+                    Keys pubKey;
                     try {
-                        pubKey = new RsaKeys(ChainUtils.bytesFromBase64(input[1]), null);
+                        pubKey = Keys.forPublicKey(ChainUtils.bytesFromBase64(input[1]));
                     } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
                         logger.error("Invalid public key", e);
                         continue;
@@ -365,13 +496,10 @@ public class App {
                             blockchain.findUTXO(pubKey.getPublicKeyBytes());
 
                     logger.info("Available balance");
-
-                    int sum = 0;
                     for (UnspentTransactionOutput uTXO : uTXOList) {
                         logger.info(uTXO.toString());
-                        sum += uTXO.getAmount();
                     }
-                    logger.info("Total available amount: " + sum);
+                    logger.info("Total available amount: " + blockchain.getBalance(pubKey.getPublicKeyBytes()));
                 }
                 else if ("balance".equals(input[0])) {
                     if (input.length != 2) {
@@ -379,10 +507,10 @@ public class App {
                         continue;
                     }
 
-                    RsaKeys pubKey;
+                    Keys pubKey;
                     try {
                         Wallet wallet = Wallet.load(new File(workingDirectory, input[1]));
-                        pubKey = new RsaKeys(wallet.getPublicKey(), null);
+                        pubKey = new Keys(wallet.getKeyType(), wallet.getPublicKey(), null);
                     } catch (IOException | NoSuchAlgorithmException | InvalidKeySpecException e) {
                         logger.error("Invalid public key / wallet", e);
                         continue;
@@ -392,13 +520,10 @@ public class App {
                             blockchain.findUTXO(pubKey.getPublicKeyBytes());
 
                     logger.info("Available balance");
-
-                    int sum = 0;
                     for (UnspentTransactionOutput uTXO : uTXOList) {
                         logger.info(uTXO.toString());
-                        sum += uTXO.getAmount();
                     }
-                    logger.info("Total available amount: " + sum);
+                    logger.info("Total available amount: " + blockchain.getBalance(pubKey.getPublicKeyBytes()));
                 }
                 else if ("tx".equals(input[0])) {
                     if (input.length != 6) {
@@ -412,11 +537,11 @@ public class App {
                     int amount = Integer.parseInt(input[3]);
                     byte[] targetPubKey = ChainUtils.bytesFromBase64(input[4]);
 
-                    RsaKeys keyPair;
+                    Keys keyPair;
                     try {
-                        new RsaKeys(targetPubKey, null);
+                        Keys.forPublicKey(targetPubKey);
                         Wallet wallet = Wallet.load(new File(workingDirectory, input[5]));
-                        keyPair = new RsaKeys(wallet.getPublicKey(), wallet.getPrivateKey());
+                        keyPair = wallet.getKeys();
                     } catch (IOException | NoSuchAlgorithmException | InvalidKeySpecException e) {
                         logger.error("Invalid keys", e);
                         continue;
@@ -452,8 +577,9 @@ public class App {
                         outputs = new Transaction.Output[]{transactionOutput, new Transaction.Output(availableAmount - amount, keyPair.getPublicKeyBytes())};
                     }
 
-                    SignAbleTransaction signAbleTransaction = new SignAbleTransaction(System.currentTimeMillis(), inputs, outputs);
-                    byte[] rawTransactionBytes = ChainUtils.encodeToBytes(signAbleTransaction);
+                    SignAbleTransaction signAbleTransaction = new SignAbleTransaction(System.currentTimeMillis(), inputs, outputs,
+                            CanonicalEncoding.CURRENT_VERSION);
+                    byte[] rawTransactionBytes = signAbleTransaction.toSignBytes();
 
                     byte[] signature;
                     try {
@@ -465,7 +591,8 @@ public class App {
 
                     Transaction.SignedInput signedInput = transactionInput.toSignedInput(signature);
                     Transaction.SignedInput[] signedInputs = {signedInput};
-                    Transaction transaction = new Transaction(signAbleTransaction.getTimestamp(), signedInputs, outputs);
+                    Transaction transaction = new Transaction(signAbleTransaction.getTimestamp(), signedInputs, outputs,
+                            signAbleTransaction.getVersion());
 
                     //Submit
                     BlockchainSyncModule syncModule = crowdfundingNode.getModule(BlockchainSyncModule.class);
@@ -492,11 +619,11 @@ public class App {
                     int amount = Integer.parseInt(input[1]);
                     byte[] targetPubKey = ChainUtils.bytesFromBase64(input[2]);
 
-                    RsaKeys keyPair;
+                    Keys keyPair;
                     try {
-                        new RsaKeys(targetPubKey, null);
+                        Keys.forPublicKey(targetPubKey);
                         Wallet wallet = Wallet.load(new File(workingDirectory, input[3]));
-                        keyPair = new RsaKeys(wallet.getPublicKey(), wallet.getPrivateKey());
+                        keyPair = wallet.getKeys();
                     } catch (IOException | NoSuchAlgorithmException | InvalidKeySpecException e) {
                         logger.error("Invalid keys", e);
                         continue;
@@ -539,8 +666,9 @@ public class App {
                         outputs = new Transaction.Output[]{transactionOutput, new Transaction.Output(collectedAmount - amount, keyPair.getPublicKeyBytes())};
                     }
 
-                    SignAbleTransaction signAbleTransaction = new SignAbleTransaction(System.currentTimeMillis(), inputList.toArray(new Transaction.Input[0]), outputs);
-                    byte[] rawTransactionBytes = ChainUtils.encodeToBytes(signAbleTransaction);
+                    SignAbleTransaction signAbleTransaction = new SignAbleTransaction(System.currentTimeMillis(), inputList.toArray(new Transaction.Input[0]), outputs,
+                            CanonicalEncoding.CURRENT_VERSION);
+                    byte[] rawTransactionBytes = signAbleTransaction.toSignBytes();
                     byte[] signature;
                     try {
                         signature = keyPair.signData(rawTransactionBytes);
@@ -554,7 +682,8 @@ public class App {
                         signedInputList.add(rawInput.toSignedInput(signature));
                     }
 
-                    Transaction transaction = new Transaction(signAbleTransaction.getTimestamp(), signedInputList.toArray(new Transaction.SignedInput[0]), outputs);
+                    Transaction transaction = new Transaction(signAbleTransaction.getTimestamp(), signedInputList.toArray(new Transaction.SignedInput[0]), outputs,
+                            signAbleTransaction.getVersion());
 
                     //Submit
                     BlockchainSyncModule syncModule = crowdfundingNode.getModule(BlockchainSyncModule.class);
@@ -585,10 +714,10 @@ public class App {
                     String title = input[3];
                     String description = input[4];
 
-                    RsaKeys keyPair;
+                    Keys keyPair;
                     try {
                         Wallet wallet = Wallet.load(new File(workingDirectory, input[5]));
-                        keyPair = new RsaKeys(wallet.getPublicKey(), wallet.getPrivateKey());
+                        keyPair = wallet.getKeys();
                     } catch (IOException | NoSuchAlgorithmException | InvalidKeySpecException e) {
                         logger.error("Invalid keys", e);
                         continue;
@@ -602,8 +731,9 @@ public class App {
                     long deadline = System.currentTimeMillis() + deadlineMinutes * 60 * 1000;
 
                     SignAbleContract signAbleContract = new SignAbleContract(
-                            System.currentTimeMillis(), deadline, goal, keyPair.getPublicKeyBytes(), title, description);
-                    byte[] rawContractBytes = ChainUtils.encodeToBytes(signAbleContract);
+                            System.currentTimeMillis(), deadline, goal, keyPair.getPublicKeyBytes(), title, description,
+                            CanonicalEncoding.CURRENT_VERSION);
+                    byte[] rawContractBytes = signAbleContract.toSignBytes();
                     byte[] signature;
                     try {
                         signature = keyPair.signData(rawContractBytes);
@@ -634,18 +764,8 @@ public class App {
                     for(Contract contract : contractList) {
                         boolean running = contract.getDeadline() >= System.currentTimeMillis();
 
-                        //Aggregate investment
-                        List<Transaction> investmentTransactions = blockchain.findTransactionsTo(contract.getContractId());
-                        investmentTransactions.removeIf((trans) -> trans.getTimestamp() > contract.getDeadline());
-                        int investmentSum = investmentTransactions.stream().mapToInt(t -> {
-                            int outputSum = 0;
-                            for(Transaction.Output output : t.getOutputs()) {
-                                if(Arrays.equals(output.getPubKey(), contract.getContractId())) {
-                                    outputSum += output.getAmount();
-                                }
-                            }
-                            return outputSum;
-                        }).sum();
+                        //Aggregated per contract on the tip
+                        long investmentSum = blockchain.getContractInvestment(contract.getContractId());
 
                         logger.info("\n" + (running ? "[RUNNING]" : "[EXPIRED]")
                                 + " Address: " + ChainUtils.bytesToBase64(contract.getContractId()) + "\n"
@@ -670,10 +790,10 @@ public class App {
                     int amount = Integer.parseInt(input[3]);
                     byte[] targetProject = ChainUtils.bytesFromBase64(input[4]);
 
-                    RsaKeys keyPair;
+                    Keys keyPair;
                     try {
                         Wallet wallet = Wallet.load(new File(workingDirectory, input[5]));
-                        keyPair = new RsaKeys(wallet.getPublicKey(), wallet.getPrivateKey());
+                        keyPair = wallet.getKeys();
                     } catch (IOException | NoSuchAlgorithmException | InvalidKeySpecException e) {
                         logger.error("Invalid keys", e);
                         continue;
@@ -709,8 +829,9 @@ public class App {
                         outputs = new Transaction.Output[]{transactionOutput, new Transaction.Output(availableAmount - amount, keyPair.getPublicKeyBytes())};
                     }
 
-                    SignAbleTransaction signAbleTransaction = new SignAbleTransaction(System.currentTimeMillis(), inputs, outputs);
-                    byte[] rawTransactionBytes = ChainUtils.encodeToBytes(signAbleTransaction);
+                    SignAbleTransaction signAbleTransaction = new SignAbleTransaction(System.currentTimeMillis(), inputs, outputs,
+                            CanonicalEncoding.CURRENT_VERSION);
+                    byte[] rawTransactionBytes = signAbleTransaction.toSignBytes();
 
                     byte[] signature;
                     try {
@@ -722,7 +843,8 @@ public class App {
 
                     Transaction.SignedInput signedInput = transactionInput.toSignedInput(signature);
                     Transaction.SignedInput[] signedInputs = {signedInput};
-                    Transaction transaction = new Transaction(signAbleTransaction.getTimestamp(), signedInputs, outputs);
+                    Transaction transaction = new Transaction(signAbleTransaction.getTimestamp(), signedInputs, outputs,
+                            signAbleTransaction.getVersion());
 
                     //Submit
                     BlockchainSyncModule syncModule = crowdfundingNode.getModule(BlockchainSyncModule.class);
@@ -750,10 +872,10 @@ public class App {
                     int vOut = Integer.parseInt(input[2]);
                     byte[] targetProject = ChainUtils.bytesFromBase64(input[3]);
 
-                    RsaKeys keyPair;
+                    Keys keyPair;
                     try {
                         Wallet wallet = Wallet.load(new File(workingDirectory, input[4]));
-                        keyPair = new RsaKeys(wallet.getPublicKey(), wallet.getPrivateKey());
+                        keyPair = wallet.getKeys();
                     } catch (IOException | NoSuchAlgorithmException | InvalidKeySpecException e) {
                         logger.error("Invalid keys", e);
                         continue;
@@ -781,8 +903,9 @@ public class App {
                     Transaction.Output transactionOutput = new Transaction.Output(0, targetProject);
                     Transaction.Output[] outputs = new Transaction.Output[]{transactionOutput, new Transaction.Output(availableAmount, keyPair.getPublicKeyBytes())};
 
-                    SignAbleTransaction signAbleTransaction = new SignAbleTransaction(System.currentTimeMillis(), inputs, outputs);
-                    byte[] rawTransactionBytes = ChainUtils.encodeToBytes(signAbleTransaction);
+                    SignAbleTransaction signAbleTransaction = new SignAbleTransaction(System.currentTimeMillis(), inputs, outputs,
+                            CanonicalEncoding.CURRENT_VERSION);
+                    byte[] rawTransactionBytes = signAbleTransaction.toSignBytes();
 
                     byte[] signature;
                     try {
@@ -794,7 +917,8 @@ public class App {
 
                     Transaction.SignedInput signedInput = transactionInput.toSignedInput(signature);
                     Transaction.SignedInput[] signedInputs = {signedInput};
-                    Transaction transaction = new Transaction(signAbleTransaction.getTimestamp(), signedInputs, outputs);
+                    Transaction transaction = new Transaction(signAbleTransaction.getTimestamp(), signedInputs, outputs,
+                            signAbleTransaction.getVersion());
 
                     //Submit
                     BlockchainSyncModule syncModule = crowdfundingNode.getModule(BlockchainSyncModule.class);
@@ -821,10 +945,10 @@ public class App {
                     int amount = Integer.parseInt(input[1]);
                     byte[] targetProject = ChainUtils.bytesFromBase64(input[2]);
 
-                    RsaKeys keyPair;
+                    Keys keyPair;
                     try {
                         Wallet wallet = Wallet.load(new File(workingDirectory, input[3]));
-                        keyPair = new RsaKeys(wallet.getPublicKey(), wallet.getPrivateKey());
+                        keyPair = wallet.getKeys();
                     } catch (IOException | NoSuchAlgorithmException | InvalidKeySpecException e) {
                         logger.error("Invalid keys", e);
                         continue;
@@ -867,8 +991,9 @@ public class App {
                         outputs = new Transaction.Output[]{transactionOutput, new Transaction.Output(collectedAmount - amount, keyPair.getPublicKeyBytes())};
                     }
 
-                    SignAbleTransaction signAbleTransaction = new SignAbleTransaction(System.currentTimeMillis(), inputList.toArray(new Transaction.Input[0]), outputs);
-                    byte[] rawTransactionBytes = ChainUtils.encodeToBytes(signAbleTransaction);
+                    SignAbleTransaction signAbleTransaction = new SignAbleTransaction(System.currentTimeMillis(), inputList.toArray(new Transaction.Input[0]), outputs,
+                            CanonicalEncoding.CURRENT_VERSION);
+                    byte[] rawTransactionBytes = signAbleTransaction.toSignBytes();
                     byte[] signature;
                     try {
                         signature = keyPair.signData(rawTransactionBytes);
@@ -882,7 +1007,8 @@ public class App {
                         signedInputList.add(rawInput.toSignedInput(signature));
                     }
 
-                    Transaction transaction = new Transaction(signAbleTransaction.getTimestamp(), signedInputList.toArray(new Transaction.SignedInput[0]), outputs);
+                    Transaction transaction = new Transaction(signAbleTransaction.getTimestamp(), signedInputList.toArray(new Transaction.SignedInput[0]), outputs,
+                            signAbleTransaction.getVersion());
 
                     //Submit
                     BlockchainSyncModule syncModule = crowdfundingNode.getModule(BlockchainSyncModule.class);
@@ -908,10 +1034,10 @@ public class App {
                     //Arguments
                     byte[] targetProject = ChainUtils.bytesFromBase64(input[1]);
 
-                    RsaKeys keyPair;
+                    Keys keyPair;
                     try {
                         Wallet wallet = Wallet.load(new File(workingDirectory, input[2]));
-                        keyPair = new RsaKeys(wallet.getPublicKey(), wallet.getPrivateKey());
+                        keyPair = wallet.getKeys();
                     } catch (IOException | NoSuchAlgorithmException | InvalidKeySpecException e) {
                         logger.error("Invalid keys", e);
                         continue;
@@ -934,8 +1060,9 @@ public class App {
                     Transaction.Output transactionOutput = new Transaction.Output(0, targetProject);
                     Transaction.Output[] outputs = new Transaction.Output[]{transactionOutput, new Transaction.Output(utxo.getAmount(), keyPair.getPublicKeyBytes())};
 
-                    SignAbleTransaction signAbleTransaction = new SignAbleTransaction(System.currentTimeMillis(), inputs, outputs);
-                    byte[] rawTransactionBytes = ChainUtils.encodeToBytes(signAbleTransaction);
+                    SignAbleTransaction signAbleTransaction = new SignAbleTransaction(System.currentTimeMillis(), inputs, outputs,
+                            CanonicalEncoding.CURRENT_VERSION);
+                    byte[] rawTransactionBytes = signAbleTransaction.toSignBytes();
 
                     byte[] signature;
                     try {
@@ -947,7 +1074,8 @@ public class App {
 
                     Transaction.SignedInput signedInput = transactionInput.toSignedInput(signature);
                     Transaction.SignedInput[] signedInputs = {signedInput};
-                    Transaction transaction = new Transaction(signAbleTransaction.getTimestamp(), signedInputs, outputs);
+                    Transaction transaction = new Transaction(signAbleTransaction.getTimestamp(), signedInputs, outputs,
+                            signAbleTransaction.getVersion());
 
                     //Submit
                     BlockchainSyncModule syncModule = crowdfundingNode.getModule(BlockchainSyncModule.class);
@@ -976,8 +1104,24 @@ public class App {
 
         try {
             crowdfundingNode.shutdown();
+            //Let a running checkpoint finish before the store is closed
+            blockchain.close();
+            blockStore.close();
         } catch (IOException e) {
             logger.error("Shutdown failed", e);
         }
     }
+
+    //Log load progress in steps of 10 percent
+    @Nonnull
+    private static LoadProgress logProgress(@Nonnull String task) {
+        int[] lastStep = {-1};
+        return (done, total) -> {
+            int step = total > 0 ? (int) (done * 10 / total) : 10;
+            if (step != lastStep[0]) {
+                lastStep[0] = step;
+                logger.info(task + " " + (step * 10) + "%");
+            }
+        };
+    }
 }
@@ -20,10 +20,10 @@ public class CrowdfundingNode extends Node {
             = LoggerFactory.getLogger(CrowdfundingNode.class);
 
     public CrowdfundingNode(@Nonnull Config config,
-                            @Nonnull RsaKeys rsaKeys,
+                            @Nonnull Keys keys,
                             @Nonnull Blockchain blockchain)
             throws IOException {
-        super(config, rsaKeys, blockchain);
+        super(config, keys, blockchain);
         try {
             registerModule(new PingModule(this));
             registerModule(new MiningModule(this));
@@ -0,0 +1,127 @@
+package com.philippkutsch.tuchain;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.security.PublicKey;
+import java.security.interfaces.EdECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
+
+/**
+ * KeyType
+ *
+ * Signature schemes of wallets and transaction outputs.
+ * Wallets declare their key type. Output public keys are stored X.509 encoded,
+ * the encoding declares the key algorithm in its algorithm identifier.
+ * Ed25519 keys are 44 bytes and can not be mistaken for 32 byte contract addresses.
+ */
+public enum KeyType {
+    //OID 1.2.840.113549.1.1.1
+    RSA("rsa", "RSA", "SHA256withRSA", RSAPublicKey.class,
+            new byte[]{0x2a, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xf7, 0x0d, 0x01, 0x01, 0x01}),
+    //OID 1.3.101.112
+    ED25519("ed25519", "Ed25519", "Ed25519", EdECPublicKey.class,
+            new byte[]{0x2b, 0x65, 0x70});
+
+    private static final byte DER_SEQUENCE = 0x30;
+    private static final byte DER_OID = 0x06;
+
+    private final String name;
+    private final String keyAlgorithm;
+    private final String signatureAlgorithm;
+    private final Class<? extends PublicKey> publicKeyClass;
+    private final byte[] algorithmOid;
+
+    KeyType(@Nonnull String name,
+            @Nonnull String keyAlgorithm,
+            @Nonnull String signatureAlgorithm,
+            @Nonnull Class<? extends PublicKey> publicKeyClass,
+            @Nonnull byte[] algorithmOid) {
+        this.name = name;
+        this.keyAlgorithm = keyAlgorithm;
+        this.signatureAlgorithm = signatureAlgorithm;
+        this.publicKeyClass = publicKeyClass;
+        this.algorithmOid = algorithmOid;
+    }
+
+    //Wallets without a key type are RSA wallets
+    @Nonnull
+    public static KeyType forName(@Nullable String name) {
+        if(name == null) {
+            return RSA;
+        }
+        for(KeyType keyType : values()) {
+            if(keyType.name.equals(name)) {
+                return keyType;
+            }
+        }
+        throw new IllegalArgumentException("Unknown key type " + name);
+    }
+
+    //Type declared by the algorithm identifier of an X.509 public key
+    @Nonnull
+    public static KeyType ofPublicKey(@Nonnull byte[] x509Bytes) throws InvalidKeySpecException {
+        byte[] oid = readAlgorithmOid(x509Bytes);
+        for(KeyType keyType : values()) {
+            if(Arrays.equals(keyType.algorithmOid, oid)) {
+                return keyType;
+            }
+        }
+        throw new InvalidKeySpecException("Unsupported public key algorithm");
+    }
+
+    @Nonnull
+    public String getName() {
+        return name;
+    }
+
+    //Algorithm for KeyFactory and KeyPairGenerator
+    @Nonnull
+    public String getKeyAlgorithm() {
+        return keyAlgorithm;
+    }
+
+    @Nonnull
+    public String getSignatureAlgorithm() {
+        return signatureAlgorithm;
+    }
+
+    public boolean isTypeOf(@Nonnull PublicKey publicKey) {
+        return publicKeyClass.isInstance(publicKey);
+    }
+
+    //SubjectPublicKeyInfo ::= SEQUENCE { algorithm SEQUENCE { OID, ... }, subjectPublicKey BIT STRING }
+    @Nonnull
+    private static byte[] readAlgorithmOid(@Nonnull byte[] der) throws InvalidKeySpecException {
+        int position = 0;
+        for(byte tag : new byte[]{DER_SEQUENCE, DER_SEQUENCE, DER_OID}) {
+            if(position + 1 >= der.length || der[position] != tag) {
+                throw new InvalidKeySpecException("Not an X.509 public key");
+            }
+            int length = der[position + 1] & 0xff;
+            position += 2;
+            //Long form with one or two length bytes
+            if(length == 0x80 || length > 0x82) {
+                throw new InvalidKeySpecException("Not an X.509 public key");
+            }
+            if(length > 0x80) {
+                int lengthBytes = length - 0x80;
+                if(position + lengthBytes > der.length) {
+                    throw new InvalidKeySpecException("Not an X.509 public key");
+                }
+                length = 0;
+                for(int i = 0; i < lengthBytes; i++) {
+                    length = (length << 8) | (der[position++] & 0xff);
+                }
+            }
+            if(tag == DER_OID) {
+                if(position + length > der.length) {
+                    throw new InvalidKeySpecException("Not an X.509 public key");
+                }
+                return Arrays.copyOfRange(der, position, position + length);
+            }
+        }
+        throw new InvalidKeySpecException("Not an X.509 public key");
+    }
+}
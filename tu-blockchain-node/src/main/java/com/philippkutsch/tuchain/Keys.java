@@ -0,0 +1,196 @@
+package com.philippkutsch.tuchain;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.philippkutsch.tuchain.chain.utils.ByteArrayKey;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.*;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+
+/**
+ * Keys utility class
+ *
+ * Holds the keys of one KeyType and allows signing / verification.
+ * The KeyType is always given: wallets declare it, output public keys declare it
+ * in their X.509 encoding (forPublicKey). Keys of another type are rejected.
+ * Decoded public keys are cached by their X.509 bytes and every thread reuses
+ * one Signature engine per key type, so verifying many inputs does not parse or look up anything twice.
+ */
+public class Keys {
+    public static final int PUBLIC_KEY_CACHE_SIZE = 10_000;
+
+    private static final Cache<ByteArrayKey, PublicKey> publicKeyCache = CacheBuilder.newBuilder()
+            .maximumSize(PUBLIC_KEY_CACHE_SIZE)
+            .build();
+    //Signature engines are reset by initSign / initVerify, so one per thread is enough
+    private static final ThreadLocal<Signature[]> signatureEngines
+            = ThreadLocal.withInitial(() -> new Signature[KeyType.values().length]);
+
+    private final byte[] privateKeyBytes;
+    private final byte[] publicKeyBytes;
+
+    private final PrivateKey privateKey;
+    private final PublicKey publicKey;
+    private final KeyType keyType;
+
+    public Keys(@Nonnull KeyType keyType,
+                @Nullable byte[] publicKeyBytes,
+                @Nullable byte[] privateKeyBytes)
+            throws NoSuchAlgorithmException, InvalidKeySpecException {
+
+        this.keyType = keyType;
+        this.privateKeyBytes = privateKeyBytes;
+        this.publicKeyBytes = publicKeyBytes;
+
+        //If present, import public key
+        if(publicKeyBytes != null) {
+            this.publicKey = publicKeyFromBytes(keyType, publicKeyBytes);
+        }
+        else {
+            this.publicKey = null;
+        }
+
+        //If present, import private key
+        if(privateKeyBytes != null) {
+            this.privateKey = privateKeyFromBytes(keyType, privateKeyBytes);
+        }
+        else {
+            this.privateKey = null;
+        }
+    }
+
+    //Public key of a transaction output, of the type its encoding declares
+    @Nonnull
+    public static Keys forPublicKey(@Nonnull byte[] x509Bytes)
+            throws NoSuchAlgorithmException, InvalidKeySpecException {
+        return new Keys(KeyType.ofPublicKey(x509Bytes), x509Bytes, null);
+    }
+
+    //Generates a new key pair in memory
+    @Nonnull
+    public static Keys generate(@Nonnull KeyType keyType)
+            throws NoSuchAlgorithmException, InvalidKeySpecException {
+        KeyPair keyPair = KeyPairGenerator.getInstance(keyType.getKeyAlgorithm()).generateKeyPair();
+        return new Keys(keyType, keyPair.getPublic().getEncoded(), keyPair.getPrivate().getEncoded());
+    }
+
+    @Nonnull
+    public static Keys fromFiles(@Nonnull KeyType keyType,
+                                 @Nonnull File publicKeyFile,
+                                 @Nullable File privateKeyFile)
+            throws IOException, NoSuchAlgorithmException, InvalidKeySpecException {
+        byte[] publicKeyBytes = Files.readAllBytes(publicKeyFile.toPath());
+        byte[] privateKeyBytes = null;
+        if(privateKeyFile != null) {
+            privateKeyBytes = Files.readAllBytes(privateKeyFile.toPath());
+        }
+        return new Keys(keyType, publicKeyBytes, privateKeyBytes);
+    }
+
+    @Nonnull
+    public static Keys fromFilesPaths(@Nonnull KeyType keyType,
+                                      @Nonnull String publicKeyPath,
+                                      @Nullable String privateKeyPath)
+            throws IOException, NoSuchAlgorithmException, InvalidKeySpecException {
+        byte[] publicKeyBytes = Files.readAllBytes(Paths.get(publicKeyPath));
+        byte[] privateKeyBytes = null;
+        if(privateKeyPath != null) {
+            privateKeyBytes = Files.readAllBytes(Paths.get(privateKeyPath));
+        }
+        return new Keys(keyType, publicKeyBytes, privateKeyBytes);
+    }
+
+    @Nonnull
+    public byte[] signData(@Nonnull byte[] data)
+            throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        if(!hasPrivateKey()) {
+            throw new IllegalStateException("No private key");
+        }
+        Signature signature = signature(keyType);
+        signature.initSign(privateKey);
+        signature.update(data);
+        return signature.sign();
+    }
+
+    public boolean verifyData(@Nonnull byte[] data, @Nonnull byte[] sig)
+            throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        if(!hasPublicKey()) {
+            throw new IllegalStateException("No public key");
+        }
+        Signature signature = signature(keyType);
+        signature.initVerify(publicKey);
+        signature.update(data);
+        return signature.verify(sig);
+    }
+
+    @Nonnull
+    public KeyType getKeyType() {
+        return keyType;
+    }
+
+    @Nonnull
+    public byte[] getPublicKeyBytes() {
+        return publicKeyBytes;
+    }
+
+    @Nullable
+    public byte[] getPrivateKeyBytes() {
+        return privateKeyBytes;
+    }
+
+    public boolean hasPublicKey() {
+        return publicKeyBytes != null;
+    }
+
+    public boolean hasPrivateKey() {
+        return privateKeyBytes != null;
+    }
+
+    @Nonnull
+    private static Signature signature(@Nonnull KeyType keyType) throws NoSuchAlgorithmException {
+        Signature[] engines = signatureEngines.get();
+        Signature signature = engines[keyType.ordinal()];
+        if(signature == null) {
+            signature = Signature.getInstance(keyType.getSignatureAlgorithm());
+            engines[keyType.ordinal()] = signature;
+        }
+        return signature;
+    }
+
+    //Invalid keys are not cached and fail again on every call.
+    //KeyFactory rejects keys of another algorithm, cached keys are checked by class
+    @Nonnull
+    private static PublicKey publicKeyFromBytes(@Nonnull KeyType keyType, @Nonnull byte[] bytes)
+            throws NoSuchAlgorithmException, InvalidKeySpecException {
+        PublicKey publicKey = publicKeyCache.getIfPresent(new ByteArrayKey(bytes));
+        if(publicKey == null) {
+            X509EncodedKeySpec x509EncodedKeySpec =
+                    new X509EncodedKeySpec(bytes);
+            KeyFactory keyFactory = KeyFactory.getInstance(keyType.getKeyAlgorithm());
+            publicKey = keyFactory.generatePublic(x509EncodedKeySpec);
+            //Copy, the caller may still modify its array
+            publicKeyCache.put(new ByteArrayKey(bytes.clone()), publicKey);
+        }
+        if(!keyType.isTypeOf(publicKey)) {
+            throw new InvalidKeySpecException("Public key is not a " + keyType.getName() + " key");
+        }
+        return publicKey;
+    }
+
+    @Nonnull
+    private static PrivateKey privateKeyFromBytes(@Nonnull KeyType keyType, @Nonnull byte[] bytes)
+            throws NoSuchAlgorithmException, InvalidKeySpecException{
+        PKCS8EncodedKeySpec pkcs8EncodedKeySpec =
+                new PKCS8EncodedKeySpec(bytes);
+        KeyFactory keyFactory = KeyFactory.getInstance(keyType.getKeyAlgorithm());
+        return keyFactory.generatePrivate(pkcs8EncodedKeySpec);
+    }
+}
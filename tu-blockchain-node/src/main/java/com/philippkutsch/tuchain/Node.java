@@ -28,7 +28,7 @@ import java.util.concurrent.TimeUnit;
  * LowLevel handler for:
  * - Executor service
  * - Config
- * - RsaKeys (Loaded from config)
+ * - Keys (Loaded from the wallet)
  * - Blockchain
  * - Network
  */
@@ -40,18 +40,18 @@ public abstract class Node implements Network.Listener {
     protected final ListeningExecutorService service;
 
     protected final Config config;
-    protected final RsaKeys rsaKeys;
+    protected final Keys keys;
     protected final Blockchain blockchain;
     protected Network network;
 
     private final List<NodeModule> moduleList;
 
     public Node(@Nonnull Config config,
-                @Nonnull RsaKeys rsaKeys,
+                @Nonnull Keys keys,
                 @Nonnull Blockchain blockchain)
             throws IOException {
         this.config = config;
-        this.rsaKeys = rsaKeys;
+        this.keys = keys;
         this.blockchain = blockchain;
         this.moduleList = new ArrayList<>();
 
@@ -147,7 +147,7 @@ public abstract class Node implements Network.Listener {
     }
 
     @Nonnull
-    public RsaKeys getRsaKeys() {
-        return rsaKeys;
+    public Keys getKeys() {
+        return keys;
     }
 }
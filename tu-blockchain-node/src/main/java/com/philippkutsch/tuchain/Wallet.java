@@ -15,10 +15,26 @@ import java.util.UUID;
  * Key-Pair container class
  *
  * Wraps private and public key.
+ * keyType is null for RSA wallets written before Ed25519 support.
+ * Keys are always loaded as the declared type, a key of another type fails to load.
  */
 public class Wallet {
     private final byte[] privateKey;
     private final byte[] publicKey;
+    private final String keyType;
+
+    @Nonnull
+    public static Wallet generate(@Nonnull KeyType keyType)
+            throws IOException,
+            InterruptedException,
+            NoSuchAlgorithmException,
+            InvalidKeySpecException {
+        if(keyType == KeyType.RSA) {
+            return generate();
+        }
+        Keys keys = Keys.generate(keyType);
+        return new Wallet(keys.getPrivateKeyBytes(), keys.getPublicKeyBytes(), keyType);
+    }
 
     @SuppressWarnings({"ConstantConditions", "ResultOfMethodCallIgnored"})
     @Nonnull
@@ -71,14 +87,14 @@ public class Wallet {
         }
 
         //Load files
-        RsaKeys rsaKeys = RsaKeys.fromFiles(publicKeyDerFile, privateKeyDerFile);
+        Keys keys = Keys.fromFiles(KeyType.RSA, publicKeyDerFile, privateKeyDerFile);
 
         //Remove local files
         privateKeyPemFile.delete();
         privateKeyDerFile.delete();
         publicKeyDerFile.delete();
 
-        return new Wallet(rsaKeys.getPrivateKeyBytes(), rsaKeys.getPublicKeyBytes());
+        return new Wallet(keys.getPrivateKeyBytes(), keys.getPublicKeyBytes(), KeyType.RSA);
     }
 
     @Nonnull
@@ -90,8 +106,15 @@ public class Wallet {
 
     public Wallet(@Nonnull byte[] privateKey,
                   @Nonnull byte[] publicKey) {
+        this(privateKey, publicKey, KeyType.RSA);
+    }
+
+    public Wallet(@Nonnull byte[] privateKey,
+                  @Nonnull byte[] publicKey,
+                  @Nonnull KeyType keyType) {
         this.privateKey = privateKey;
         this.publicKey = publicKey;
+        this.keyType = keyType.getName();
     }
 
     public void save(@Nonnull File walletFile)
@@ -107,4 +130,15 @@ public class Wallet {
     public byte[] getPublicKey() {
         return publicKey;
     }
+
+    @Nonnull
+    public KeyType getKeyType() {
+        return KeyType.forName(keyType);
+    }
+
+    @Nonnull
+    public Keys getKeys()
+            throws NoSuchAlgorithmException, InvalidKeySpecException {
+        return new Keys(getKeyType(), publicKey, privateKey);
+    }
 }
@@ -0,0 +1,141 @@
+package com.philippkutsch.tuchain.chain;
+
+import com.philippkutsch.tuchain.chain.utils.ByteArrayKey;
+import com.philippkutsch.tuchain.chain.utils.DataIO;
+
+import javax.annotation.Nonnull;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AddressIndex
+ *
+ * Secondary index from pubKey (or contract address) to all outputs that pay it,
+ * plus the running confirmed balance (sum of unspent outputs) per address.
+ */
+public class AddressIndex {
+    private final Map<ByteArrayKey, Address> addresses;
+
+    public AddressIndex() {
+        this.addresses = new ConcurrentHashMap<>();
+    }
+
+    //Output history, checkpoints contain the outputs visible at their height
+    public void addOutput(
+            @Nonnull OutPoint outPoint,
+            @Nonnull Transaction.Output output,
+            @Nonnull ChainLocation location) {
+        address(output.getPubKey()).outputs.add(new AddressOutput(outPoint, output.getAmount(), location));
+    }
+
+    public void addBalance(@Nonnull Transaction.Output output) {
+        address(output.getPubKey()).balance.addAndGet(output.getAmount());
+    }
+
+    public void spendOutput(@Nonnull Transaction.Output output) {
+        Address address = addresses.get(new ByteArrayKey(output.getPubKey()));
+        if(address != null) {
+            address.balance.addAndGet(-output.getAmount());
+        }
+    }
+
+    //All outputs paid to pubKey in blocks below height, in chain order
+    @Nonnull
+    public List<AddressOutput> findOutputs(@Nonnull byte[] pubKey, int height) {
+        List<AddressOutput> outputs = new ArrayList<>();
+        Address address = addresses.get(new ByteArrayKey(pubKey));
+        if(address == null) {
+            return outputs;
+        }
+        for(AddressOutput output : address.outputs) {
+            if(output.getLocation().getBlockIndex() >= height) {
+                break;
+            }
+            outputs.add(output);
+        }
+        return outputs;
+    }
+
+    public long getBalance(@Nonnull byte[] pubKey) {
+        Address address = addresses.get(new ByteArrayKey(pubKey));
+        return address == null ? 0 : address.balance.get();
+    }
+
+    //Balances and the outputs of blocks below height
+    public void writeTo(@Nonnull DataOutput out, int height) throws IOException {
+        out.writeInt(addresses.size());
+        for(Map.Entry<ByteArrayKey, Address> address : addresses.entrySet()) {
+            DataIO.writeBytes(out, address.getKey().getBytes());
+            out.writeLong(address.getValue().balance.get());
+            List<AddressOutput> outputs = findOutputs(address.getKey().getBytes(), height);
+            out.writeInt(outputs.size());
+            for(AddressOutput output : outputs) {
+                output.getOutPoint().writeTo(out);
+                out.writeInt(output.getAmount());
+                output.getLocation().writeTo(out);
+            }
+        }
+    }
+
+    @Nonnull
+    public static AddressIndex readFrom(@Nonnull DataInput in) throws IOException {
+        AddressIndex addressIndex = new AddressIndex();
+        int addressCount = DataIO.readCount(in);
+        for(int i = 0; i < addressCount; i++) {
+            Address address = new Address();
+            addressIndex.addresses.put(new ByteArrayKey(DataIO.readBytes(in)), address);
+            address.balance.set(in.readLong());
+            int outputCount = DataIO.readCount(in);
+            for(int j = 0; j < outputCount; j++) {
+                address.outputs.add(new AddressOutput(OutPoint.readFrom(in), in.readInt(), ChainLocation.readFrom(in)));
+            }
+        }
+        return addressIndex;
+    }
+
+    @Nonnull
+    private Address address(@Nonnull byte[] pubKey) {
+        return addresses.computeIfAbsent(new ByteArrayKey(pubKey), (key) -> new Address());
+    }
+
+    private static class Address {
+        private final Queue<AddressOutput> outputs = new ConcurrentLinkedQueue<>();
+        private final AtomicLong balance = new AtomicLong();
+    }
+
+    public static class AddressOutput {
+        private final OutPoint outPoint;
+        private final int amount;
+        private final ChainLocation location;
+
+        public AddressOutput(@Nonnull OutPoint outPoint,
+                             int amount,
+                             @Nonnull ChainLocation location) {
+            this.outPoint = outPoint;
+            this.amount = amount;
+            this.location = location;
+        }
+
+        @Nonnull
+        public OutPoint getOutPoint() {
+            return outPoint;
+        }
+
+        public int getAmount() {
+            return amount;
+        }
+
+        @Nonnull
+        public ChainLocation getLocation() {
+            return location;
+        }
+    }
+}
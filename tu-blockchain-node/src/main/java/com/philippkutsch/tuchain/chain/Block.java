@@ -1,6 +1,7 @@
 package com.philippkutsch.tuchain.chain;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -9,17 +10,41 @@ public class Block {
     protected final byte[] prevHash;
     protected final BlockBody data;
 
+    //Consensus encoding version, null for legacy JSON hashed blocks
+    protected final Integer version;
+
+    //Required leading zero bits of the hash, null for blocks before difficulty retargeting
+    protected final Integer difficulty;
+
     @Nonnull
     public static Block generateGenesisBlock() {
-        return new Block(1, new byte[]{}, new BlockBody(new Transaction[]{}, new Contract[]{}));
+        return new Block(1, new byte[]{}, new BlockBody(new Transaction[]{}, new Contract[]{}),
+                CanonicalEncoding.CURRENT_VERSION, DifficultyAdjustment.INITIAL_DIFFICULTY);
     }
 
     public Block(long id,
                  @Nonnull byte[] prevHash,
                  @Nonnull BlockBody data) {
+        this(id, prevHash, data, null);
+    }
+
+    public Block(long id,
+                 @Nonnull byte[] prevHash,
+                 @Nonnull BlockBody data,
+                 @Nullable Integer version) {
+        this(id, prevHash, data, version, null);
+    }
+
+    public Block(long id,
+                 @Nonnull byte[] prevHash,
+                 @Nonnull BlockBody data,
+                 @Nullable Integer version,
+                 @Nullable Integer difficulty) {
         this.id = id;
         this.prevHash = prevHash;
         this.data = data;
+        this.version = version;
+        this.difficulty = difficulty;
     }
 
     public long getId() {
@@ -34,17 +59,27 @@ public class Block {
         return data;
     }
 
+    @Nullable
+    public Integer getVersion() {
+        return version;
+    }
+
+    @Nullable
+    public Integer getDifficulty() {
+        return difficulty;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Block block = (Block) o;
-        return getId() == block.getId() && Arrays.equals(getPrevHash(), block.getPrevHash()) && getData().equals(block.getData());
+        return getId() == block.getId() && Arrays.equals(getPrevHash(), block.getPrevHash()) && getData().equals(block.getData()) && Objects.equals(getVersion(), block.getVersion()) && Objects.equals(getDifficulty(), block.getDifficulty());
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(getId(), getData());
+        int result = Objects.hash(getId(), getData(), getVersion(), getDifficulty());
         result = 31 * result + Arrays.hashCode(getPrevHash());
         return result;
     }
@@ -0,0 +1,155 @@
+package com.philippkutsch.tuchain.chain;
+
+import com.google.common.hash.Hashing;
+import com.philippkutsch.tuchain.chain.utils.DataIO;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * BlockHeader
+ *
+ * Header fields of a HashedBlock kept on heap for every block of a chain.
+ * The body is only referenced for chains without a BlockStore, otherwise
+ * it is loaded from the store when needed.
+ */
+public final class BlockHeader {
+    private final long id;
+    private final byte[] prevHash;
+    private final long timestamp;
+    private final long nuOnce;
+    private final byte[] hash;
+    private final Integer version;
+    private final byte[] merkleRoot;
+    private final Integer difficulty;
+    private final BlockBody residentBody;
+
+    private BlockHeader(@Nonnull HashedBlock block, @Nullable BlockBody residentBody) {
+        this(block.getId(), block.getPrevHash(), block.getTimestamp(), block.getNuOnce(), block.getHash(),
+                block.getVersion(), block.getMerkleRoot(), block.getDifficulty(), residentBody);
+    }
+
+    private BlockHeader(long id,
+                        @Nonnull byte[] prevHash,
+                        long timestamp,
+                        long nuOnce,
+                        @Nonnull byte[] hash,
+                        @Nullable Integer version,
+                        @Nullable byte[] merkleRoot,
+                        @Nullable Integer difficulty,
+                        @Nullable BlockBody residentBody) {
+        this.id = id;
+        this.prevHash = prevHash;
+        this.timestamp = timestamp;
+        this.nuOnce = nuOnce;
+        this.hash = hash;
+        this.version = version;
+        this.merkleRoot = merkleRoot;
+        this.difficulty = difficulty;
+        this.residentBody = residentBody;
+    }
+
+    //Header that keeps the body on heap
+    @Nonnull
+    public static BlockHeader resident(@Nonnull HashedBlock block) {
+        return new BlockHeader(block, block.getData());
+    }
+
+    //Header only, the body has to be loaded from a store
+    @Nonnull
+    public static BlockHeader stored(@Nonnull HashedBlock block) {
+        return new BlockHeader(block, null);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @Nonnull
+    public byte[] getPrevHash() {
+        return prevHash;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getNuOnce() {
+        return nuOnce;
+    }
+
+    @Nonnull
+    public byte[] getHash() {
+        return hash;
+    }
+
+    @Nullable
+    public Integer getVersion() {
+        return version;
+    }
+
+    @Nullable
+    public byte[] getMerkleRoot() {
+        return merkleRoot;
+    }
+
+    @Nullable
+    public Integer getDifficulty() {
+        return difficulty;
+    }
+
+    //Checks the hash without the body, only possible for headers storing a Merkle root.
+    //The root itself is checked against the body on block validation
+    public boolean isHashValid() {
+        if(merkleRoot == null || !CanonicalEncoding.hasMerkleRoot(version)) {
+            return false;
+        }
+        byte[] headerHash = Hashing.sha256().hashBytes(CanonicalEncoding.encodeHeader(
+                version, id, prevHash, merkleRoot, difficulty, timestamp, nuOnce)).asBytes();
+        return Arrays.equals(headerHash, hash);
+    }
+
+    @Nullable
+    public BlockBody getResidentBody() {
+        return residentBody;
+    }
+
+    //Header fields only, the body is never written. Used for the headers of checkpoints
+    void writeTo(@Nonnull DataOutput out) throws IOException {
+        out.writeLong(id);
+        DataIO.writeBytes(out, prevHash);
+        out.writeLong(timestamp);
+        out.writeLong(nuOnce);
+        DataIO.writeBytes(out, hash);
+        //0 for legacy blocks without version
+        out.writeInt(version == null ? 0 : version);
+        //Empty for blocks without Merkle root
+        DataIO.writeBytes(out, merkleRoot == null ? new byte[0] : merkleRoot);
+        //0 for blocks without difficulty
+        out.writeInt(difficulty == null ? 0 : difficulty);
+    }
+
+    //Header of a checkpoint, the body has to be loaded from a store
+    @Nonnull
+    static BlockHeader readFrom(@Nonnull DataInput in) throws IOException {
+        long id = in.readLong();
+        byte[] prevHash = DataIO.readBytes(in);
+        long timestamp = in.readLong();
+        long nuOnce = in.readLong();
+        byte[] hash = DataIO.readBytes(in);
+        int version = in.readInt();
+        byte[] merkleRoot = DataIO.readBytes(in);
+        int difficulty = in.readInt();
+        return new BlockHeader(id, prevHash, timestamp, nuOnce, hash, version == 0 ? null : version,
+                merkleRoot.length == 0 ? null : merkleRoot, difficulty == 0 ? null : difficulty, null);
+    }
+
+    @Nonnull
+    public HashedBlock toHashedBlock(@Nonnull BlockBody body) {
+        return new HashedBlock(id, prevHash, body, timestamp, nuOnce, hash, version, merkleRoot, difficulty);
+    }
+}
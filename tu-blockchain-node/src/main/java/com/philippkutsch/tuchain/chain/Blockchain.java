@@ -1,269 +1,398 @@
 package com.philippkutsch.tuchain.chain;
 
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.annotations.JsonAdapter;
+import com.philippkutsch.tuchain.chain.store.BlockStore;
+import com.philippkutsch.tuchain.chain.store.CheckpointStore;
+import com.philippkutsch.tuchain.chain.utils.BlockchainTypeAdapterFactory;
+import com.philippkutsch.tuchain.chain.utils.PersistentVector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import javax.annotation.Nonnull;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.annotation.Nullable;
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Blockchain
+ *
+ * Append only chain of blocks. Every append publishes a new immutable ChainSnapshot,
+ * readers never lock and never copy the block list.
+ * Only writers are serialized by the write lock, read-validate-append sequences
+ * use compareAndAppend and fail if the tip changed.
+ * A chain backed by a BlockStore keeps only block headers on heap and
+ * can write periodic state checkpoints to a CheckpointStore. Checkpoints hold the
+ * headers, lookup tables and tip state and are written by a background thread from
+ * the published tip, so loading only has to read the blocks after a checkpoint.
+ */
+@JsonAdapter(BlockchainTypeAdapterFactory.class)
+public class Blockchain implements ChainView {
+    private static final Logger logger
+            = LoggerFactory.getLogger(Blockchain.class);
 
-public class Blockchain {
-    private transient final ReadWriteLock lock;
+    //Tries to serialize the tip state before a checkpoint is skipped
+    private static final int CHECKPOINT_ATTEMPTS = 3;
 
-    private final List<HashedBlock> blockList;
+    private final ReentrantLock writeLock;
+    private final ChainIndex index;
+    private final BlockStore blockStore;
+    private final CheckpointStore checkpointStore;
+    private final ExecutorService checkpointExecutor;
+    private final AtomicReference<ChainSnapshot> tip;
 
-    //Default constructor for gson only, because gson does not initialise the lock otherwise
     public Blockchain() {
-        this.blockList = new ArrayList<>();
-        this.lock = new ReentrantReadWriteLock(true);
+        this(null, null, new ChainIndex(), PersistentVector.empty());
     }
 
     public Blockchain(@Nonnull List<HashedBlock> initialState) {
+        this();
         if(initialState.size() == 0) {
             throw new IllegalStateException("Expected blockchain size of at least one");
         }
 
-        this.blockList = new ArrayList<>(initialState);
-        this.lock = new ReentrantReadWriteLock(true);
+        for(HashedBlock hashedBlock : initialState) {
+            addBlock(hashedBlock);
+        }
+    }
+
+    //Chain backed by blockStore. Only headers stay on heap, bodies are read from the store
+    //and new blocks are appended to the store before they become visible
+    private Blockchain(@Nullable BlockStore blockStore,
+                       @Nullable CheckpointStore checkpointStore,
+                       @Nonnull ChainIndex index,
+                       @Nonnull PersistentVector<BlockHeader> headers) {
+        this.writeLock = new ReentrantLock(true);
+        this.index = index;
+        this.blockStore = blockStore;
+        this.checkpointStore = checkpointStore;
+        this.checkpointExecutor = checkpointStore != null
+                ? Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                        .setNameFormat("checkpoint-writer")
+                        .setDaemon(true)
+                        .build())
+                : null;
+        this.tip = new AtomicReference<>(new ChainSnapshot(headers, headers.size(), index, blockStore));
+    }
+
+    @Nonnull
+    public static Blockchain load(@Nonnull BlockStore blockStore) throws IOException {
+        return load(blockStore, null, null);
+    }
+
+    //Start from the newest checkpoint matching the store, then decode and connect the
+    //stored blocks after it one by one. Progress is reported in blocks
+    @Nonnull
+    public static Blockchain load(
+            @Nonnull BlockStore blockStore,
+            @Nullable CheckpointStore checkpointStore,
+            @Nullable LoadProgress progress) throws IOException {
+        int storedBlocks = blockStore.size();
+        if(storedBlocks == 0) {
+            throw new IllegalStateException("Expected blockchain size of at least one");
+        }
+
+        Checkpoint checkpoint = null;
+        if(checkpointStore != null) {
+            checkpoint = checkpointStore.readLatest(
+                    (height, tipHash) -> height > 0 && height <= storedBlocks
+                            && Arrays.equals(blockStore.read(height - 1).getHash(), tipHash),
+                    (in) -> readCheckpoint(in, storedBlocks));
+        }
+        ChainIndex index = new ChainIndex();
+        PersistentVector<BlockHeader> headers = PersistentVector.empty();
+        if(checkpoint != null) {
+            index = checkpoint.index;
+            headers = checkpoint.headers;
+            logger.info("Loaded checkpoint at height " + headers.size()
+                    + ", replaying " + (storedBlocks - headers.size()) + " blocks");
+        }
+
+        for(int blockIndex = headers.size(); blockIndex < storedBlocks; blockIndex++) {
+            HashedBlock hashedBlock = blockStore.read(blockIndex);
+            index.connectBlock(blockIndex, hashedBlock);
+            headers = headers.append(BlockHeader.stored(hashedBlock));
+            if(progress != null) {
+                progress.onProgress(blockIndex + 1, storedBlocks);
+            }
+        }
+        return new Blockchain(blockStore, checkpointStore, index, headers);
     }
 
     public void addBlock(@Nonnull HashedBlock hashedBlock) {
         try {
-            lock.writeLock().lock();
-            blockList.add(hashedBlock);
+            writeLock.lock();
+            ChainSnapshot current = tip.get();
+            BlockHeader header = BlockHeader.resident(hashedBlock);
+            if(blockStore != null) {
+                blockStore.append(hashedBlock);
+                header = BlockHeader.stored(hashedBlock);
+            }
+
+            index.connectBlock(current.getHeight(), hashedBlock);
+            ChainSnapshot next = new ChainSnapshot(
+                    current.getHeaders().append(header),
+                    current.getHeight() + 1,
+                    index,
+                    blockStore);
+            tip.set(next);
+
+            if(checkpointStore != null && checkpointStore.isDue(next.getHeight())) {
+                checkpointExecutor.execute(this::writeCheckpoint);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store block #" + hashedBlock.getId(), e);
         } finally {
-            lock.writeLock().unlock();
+            writeLock.unlock();
         }
     }
 
+    //Runs on the checkpoint thread next to the chain writer. The tip state is serialized for
+    //the published tip, if a block is connected meanwhile it is retried on the new tip
+    private void writeCheckpoint() {
+        for(int attempt = 0; attempt < CHECKPOINT_ATTEMPTS; attempt++) {
+            ChainSnapshot snapshot = tip.get();
+            try {
+                long start = System.currentTimeMillis();
+                byte[] state = index.writeState(snapshot.getHeight());
+                if(state == null) {
+                    continue;
+                }
+
+                //Headers come from the immutable snapshot and need no retry
+                //noinspection ConstantConditions
+                checkpointStore.write(snapshot.getHeight(), snapshot.getHeader(snapshot.getHeight() - 1).getHash(),
+                        (out) -> {
+                            out.write(state);
+                            for(int blockIndex = 0; blockIndex < snapshot.getHeight(); blockIndex++) {
+                                snapshot.getHeader(blockIndex).writeTo(out);
+                            }
+                        });
+                logger.debug("Checkpoint at height " + snapshot.getHeight()
+                        + " written in " + (System.currentTimeMillis() - start) + "ms");
+            } catch (IOException e) {
+                logger.warn("Failed to write checkpoint at height " + snapshot.getHeight(), e);
+            }
+            return;
+        }
+        logger.debug("Checkpoint skipped, chain changed while writing");
+    }
+
     @Nonnull
-    public HashedBlock getLastBlock() {
+    private static Checkpoint readCheckpoint(
+            @Nonnull DataInput in,
+            int storedBlocks) throws IOException {
+        ChainIndex index = ChainIndex.readState(in);
+        if(index.getHeight() <= 0 || index.getHeight() > storedBlocks) {
+            throw new IOException("Checkpoint height " + index.getHeight() + " does not match the stored chain");
+        }
+        PersistentVector<BlockHeader> headers = PersistentVector.empty();
+        for(int blockIndex = 0; blockIndex < index.getHeight(); blockIndex++) {
+            headers = headers.append(BlockHeader.readFrom(in));
+        }
+        return new Checkpoint(index, headers);
+    }
+
+    //Waits for a running checkpoint. The chain must not be appended to afterwards
+    public void close() {
+        if(checkpointExecutor == null) {
+            return;
+        }
+        checkpointExecutor.shutdown();
         try {
-            lock.readLock().lock();
-            return blockList.get(blockList.size() - 1);
-        } finally {
-            lock.readLock().unlock();
+            if(!checkpointExecutor.awaitTermination(60, TimeUnit.SECONDS)) {
+                logger.warn("Checkpoint still running on close");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    //Dangerous methods
-    public void beginReadAccess() {
-        lock.readLock().lock();
+    //Append only if the chain has not changed since expected was taken
+    public boolean compareAndAppend(
+            @Nonnull ChainSnapshot expected,
+            @Nonnull HashedBlock hashedBlock) {
+        try {
+            writeLock.lock();
+            if(tip.get() != expected) {
+                return false;
+            }
+            addBlock(hashedBlock);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
     }
-    public void endReadAccess() {
-        lock.readLock().unlock();
+
+    //Current state of the chain, stays valid and unchanged forever
+    @Nonnull
+    public ChainSnapshot snapshot() {
+        return tip.get();
     }
-    public void beginWriteAccess() {
-        lock.writeLock().lock();
+
+    @Override
+    public int getHeight() {
+        return snapshot().getHeight();
     }
-    public void endWriteAccess() {
-        lock.writeLock().unlock();
+
+    @Nonnull
+    @Override
+    public HashedBlock getLastBlock() {
+        return snapshot().getLastBlock();
     }
 
-    //Return a copy of the blockchain
+    //Read only view of the current blocks
     @Nonnull
+    @Override
     public List<HashedBlock> getBlockchain() {
-        try {
-            lock.readLock().lock();
-            return new ArrayList<>(blockList);
-        } finally {
-            lock.readLock().unlock();
-        }
+        return snapshot().getBlockchain();
     }
 
     @Nonnull
+    @Override
     public Optional<HashedBlock> findBlock(long id) {
-        List<HashedBlock> blockListCopy = getBlockchain();
-        for(HashedBlock block : blockListCopy) {
-            if(block.getId() == id) {
-                return Optional.of(block);
-            }
-        }
-        return Optional.empty();
+        return snapshot().findBlock(id);
     }
 
     //List contracts
     @Nonnull
+    @Override
     public List<Contract> listContracts() {
-        List<Contract> contractList = new ArrayList<>();
-        List<HashedBlock> blockListCopy = getBlockchain();
-        for(HashedBlock block : blockListCopy) {
-            contractList.addAll(Arrays.asList(block.getData().getContracts()));
-        }
-        return contractList;
+        return snapshot().listContracts();
     }
 
     //Search for a contract
     @Nonnull
+    @Override
     public Optional<Contract> findContract(@Nonnull byte[] contractId) {
-        List<HashedBlock> blockListCopy = getBlockchain();
-        for(HashedBlock block : blockListCopy) {
-            for(Contract contract : block.getData().getContracts()) {
-                if(Arrays.equals(contract.getContractId(), contractId)) {
-                    return Optional.of(contract);
-                }
-            }
-        }
-        return Optional.empty();
+        return snapshot().findContract(contractId);
     }
 
-    //
-
     //Search for a transaction
     @Nonnull
+    @Override
     public Optional<Transaction> findTransaction(@Nonnull byte[] transactionId) {
-        List<HashedBlock> blockListCopy = getBlockchain();
-        for(HashedBlock block : blockListCopy) {
-            for(Transaction transaction : block.getData().getTransactions()) {
-                if(Arrays.equals(transaction.getTransactionId(), transactionId)) {
-                    return Optional.of(transaction);
-                }
-            }
-        }
-        return Optional.empty();
+        return snapshot().findTransaction(transactionId);
     }
 
     //Search for a transactions block
     @Nonnull
+    @Override
     public Optional<HashedBlock> findTransactionBlock(@Nonnull byte[] transactionId) {
-        List<HashedBlock> blockListCopy = getBlockchain();
-        for(HashedBlock block : blockListCopy) {
-            for(Transaction transaction : block.getData().getTransactions()) {
-                if(Arrays.equals(transaction.getTransactionId(), transactionId)) {
-                    return Optional.of(block);
-                }
-            }
-        }
-        return Optional.empty();
+        return snapshot().findTransactionBlock(transactionId);
     }
 
+    //Merkle inclusion proof of a transaction
     @Nonnull
-    public Optional<Transaction> findReferencingTransaction(@Nonnull byte[] transactionId) {
-        List<HashedBlock> blockListCopy = getBlockchain();
-        for(HashedBlock block : blockListCopy) {
-            for (Transaction transaction : block.getData().getTransactions()) {
-                for(Transaction.Input input : transaction.getInputs()) {
-                    if(Arrays.equals(input.getTxId(), transactionId)) {
-                        return Optional.of(transaction);
-                    }
-                }
-            }
-        }
-        return Optional.empty();
+    @Override
+    public Optional<MerkleProof> proveTransaction(@Nonnull byte[] transactionId) {
+        return snapshot().proveTransaction(transactionId);
     }
 
+    //Merkle inclusion proof of a contract
     @Nonnull
-    public List<Transaction> findTransactionsTo(@Nonnull byte[] publicKey) {
-        List<HashedBlock> blockListCopy = getBlockchain();
-        List<Transaction> matchingTransactions = new ArrayList<>();
-        for(HashedBlock block : blockListCopy) {
-            for(Transaction transaction : block.getData().getTransactions()) {
-                for(Transaction.Output output : transaction.getOutputs()) {
-                    if(Arrays.equals(output.getPubKey(), publicKey)) {
-                        matchingTransactions.add(transaction);
-                    }
-                }
-            }
-        }
-        return matchingTransactions;
+    @Override
+    public Optional<MerkleProof> proveContract(@Nonnull byte[] contractId) {
+        return snapshot().proveContract(contractId);
     }
 
+    //Search for the first transaction spending any output of transactionId
+    @Nonnull
+    @Override
+    public Optional<Transaction> findReferencingTransaction(@Nonnull byte[] transactionId) {
+        return snapshot().findReferencingTransaction(transactionId);
+    }
 
+    //Search for the transaction spending output (txId, vOut)
     @Nonnull
-    private List<Transaction.Input> findTransactionInputs(
-            @Nonnull List<HashedBlock> blockListCopy,
-            @Nonnull byte[] txId) {
-        List<Transaction.Input> inputList = new ArrayList<>();
-        for(HashedBlock block : blockListCopy) {
-            for(Transaction transaction : block.getData().getTransactions()) {
-                for(Transaction.Input input : transaction.getInputs()) {
-                    if(Arrays.equals(input.getTxId(), txId)) {
-                        inputList.add(input);
-                    }
-                }
-            }
-        }
-        return inputList;
+    @Override
+    public Optional<Transaction> findSpendingTransaction(
+            @Nonnull byte[] txId,
+            int vOut) {
+        return snapshot().findSpendingTransaction(txId, vOut);
+    }
+
+    //One entry per output paying publicKey, in chain order
+    @Nonnull
+    @Override
+    public List<Transaction> findTransactionsTo(@Nonnull byte[] publicKey) {
+        return snapshot().findTransactionsTo(publicKey);
     }
 
+    //Search for the input spending output (txId, vOut)
     @Nonnull
+    @Override
     public Optional<Transaction.Input> findTransactionInput(
             @Nonnull byte[] txId,
             int vOut) {
-        List<HashedBlock> blockListCopy = getBlockchain();
-        for(HashedBlock block : blockListCopy) {
-            for(Transaction transaction : block.getData().getTransactions()) {
-                for(Transaction.Input input : transaction.getInputs()) {
-                    if(Arrays.equals(input.getTxId(), txId) && input.getvOut() == vOut) {
-                        return Optional.of(input);
-                    }
-                }
-            }
-        }
-        return Optional.empty();
+        return snapshot().findTransactionInput(txId, vOut);
     }
 
+    //Distinct transactions that have at least one unspent output to pubKey
     @Nonnull
+    @Override
     public List<Transaction> findUTXOTransaction(@Nonnull byte[] pubKey) {
-        List<HashedBlock> blockListCopy = getBlockchain();
-        List<Transaction> uTXOTransactionList = new ArrayList<>();
-        //Iterate over all transaction outputs and check if pubKey is matching
-        for(HashedBlock hashedBlock : blockListCopy) {
-            for(Transaction transaction : hashedBlock.getData().getTransactions()) {
-                Transaction.Output[] outputs = transaction.getOutputs();
-                for(int i = 0; i < outputs.length; i++) {
-                    if(Arrays.equals(pubKey, outputs[i].getPubKey())) {
-                        //Find inputs that are referencing this output
-                        byte[] txId = transaction.getTransactionId();
-                        List<Transaction.Input> inputList =
-                                findTransactionInputs(blockListCopy, txId);
-
-                        //Check if vOut is referenced
-                        boolean spend = false;
-                        for(Transaction.Input input : inputList) {
-                            if(input.getvOut() == i) {
-                                //If we have a reference, the transaction is spent
-                                spend = true;
-                                break;
-                            }
-                        }
-
-                        if(!spend) {
-                            uTXOTransactionList.add(transaction);
-                        }
-                    }
-                }
-            }
-        }
-        return uTXOTransactionList;
+        return snapshot().findUTXOTransaction(pubKey);
     }
 
     @Nonnull
+    @Override
     public List<UnspentTransactionOutput> findUTXO(@Nonnull byte[] pubKey) {
-        List<UnspentTransactionOutput> uTXOList = new ArrayList<>();
-        List<Transaction> uTXOTransactions = findUTXOTransaction(pubKey);
-        for(Transaction transaction : uTXOTransactions) {
-            Transaction.Output[] outputs = transaction.getOutputs();
-            for(int i = 0; i < outputs.length; i++) {
-                if(Arrays.equals(outputs[i].getPubKey(), pubKey)) {
-                    uTXOList.add(new UnspentTransactionOutput(
-                            transaction.getTransactionId(), i, outputs[i].getAmount()));
-                }
-            }
+        return snapshot().findUTXO(pubKey);
+    }
+
+    //Sum of all unspent outputs of pubKey
+    @Override
+    public long getBalance(@Nonnull byte[] pubKey) {
+        return snapshot().getBalance(pubKey);
+    }
+
+    //Check if the output exists and is not spent by any transaction in the chain
+    @Override
+    public boolean isUnspent(@Nonnull byte[] txId, int vOut) {
+        return snapshot().isUnspent(txId, vOut);
+    }
+
+    @Override
+    public long getContractInvestment(@Nonnull byte[] contractId) {
+        return snapshot().getContractInvestment(contractId);
+    }
+
+    //Consistency check: rebuild the UTXO set from scratch and compare it with the live one
+    @Nonnull
+    public List<String> verifyUtxoSet() {
+        try {
+            writeLock.lock();
+            return index.getUtxoSet().diff(UtxoSet.rebuild(snapshot().getBlockchain()));
+        } finally {
+            writeLock.unlock();
         }
-        return uTXOList;
     }
 
     @Nonnull
+    @Override
     public Block buildNextBlock(
             @Nonnull List<Transaction> transactionList,
             @Nonnull List<Contract> contractList) {
-        HashedBlock currentBlock = getLastBlock();
-        BlockBody blockBody = new BlockBody(
-                transactionList.toArray(new Transaction[0]),
-                contractList.toArray(new Contract[0]));
-        return new Block(currentBlock.id + 1, currentBlock.hash, blockBody);
+        return snapshot().buildNextBlock(transactionList, contractList);
+    }
+
+    //Index and headers restored from a checkpoint
+    private static class Checkpoint {
+        private final ChainIndex index;
+        private final PersistentVector<BlockHeader> headers;
+
+        private Checkpoint(@Nonnull ChainIndex index, @Nonnull PersistentVector<BlockHeader> headers) {
+            this.index = index;
+            this.headers = headers;
+        }
     }
 }
@@ -0,0 +1,271 @@
+package com.philippkutsch.tuchain.chain;
+
+import com.google.common.hash.Hashing;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * CanonicalEncoding
+ *
+ * Binary encoding of blocks, transactions and contracts used for hashing and signing.
+ * Every encoding starts with a type tag and the consensus version, followed by the fields
+ * in a fixed order. Numbers are big endian, byte arrays and strings are [int length][bytes].
+ *
+ * Objects without a version are legacy objects and keep hashing their Gson JSON.
+ *
+ * Version 1 block headers list all transaction and contract ids. Since version 2 the
+ * header commits to the body by a fixed size digest and ends with timestamp and nonce,
+ * so miners can hash the constant prefix once (see HeaderHasher). Version 2 digests the
+ * list of ids, since version 3 the digest is the root of a MerkleTree, which is also
+ * stored in the HashedBlock and allows inclusion proofs against the header alone.
+ * Version 4 headers also cover the difficulty after the body digest.
+ */
+public final class CanonicalEncoding {
+    public static final int VERSION_BINARY = 1;
+    public static final int VERSION_BODY_DIGEST = 2;
+    public static final int VERSION_MERKLE_ROOT = 3;
+    public static final int VERSION_DIFFICULTY = 4;
+
+    //Version for newly created blocks, transactions and contracts
+    public static final int CURRENT_VERSION = VERSION_DIFFICULTY;
+
+    //Timestamp and nonce at the end of a body digest header
+    public static final int HEADER_SUFFIX_LENGTH = 16;
+
+    private static final byte TAG_TRANSACTION = 'T';
+    private static final byte TAG_SIGN_ABLE_TRANSACTION = 't';
+    private static final byte TAG_CONTRACT = 'C';
+    private static final byte TAG_SIGN_ABLE_CONTRACT = 'c';
+    private static final byte TAG_BLOCK_HEADER = 'B';
+
+    private CanonicalEncoding() {
+
+    }
+
+    //Legacy (null) or a known binary version
+    public static boolean isSupportedVersion(@Nullable Integer version) {
+        return version == null || (version >= VERSION_BINARY && version <= VERSION_DIFFICULTY);
+    }
+
+    //Whether block headers of this version commit to the body by digest
+    public static boolean hasBodyDigest(@Nullable Integer version) {
+        return version != null && version != VERSION_BINARY;
+    }
+
+    //Whether the body digest of this version is a Merkle root
+    public static boolean hasMerkleRoot(@Nullable Integer version) {
+        return hasBodyDigest(version) && version != VERSION_BODY_DIGEST;
+    }
+
+    //Whether block headers of this version carry a difficulty
+    public static boolean hasDifficulty(@Nullable Integer version) {
+        return version != null && version >= VERSION_DIFFICULTY;
+    }
+
+    //Legacy blocks without a version come first
+    public static int versionOrder(@Nullable Integer version) {
+        return version == null ? 0 : version;
+    }
+
+    @Nonnull
+    public static byte[] encode(@Nonnull Transaction transaction) {
+        Writer writer = new Writer(TAG_TRANSACTION, transaction.getVersion());
+        writer.writeLong(transaction.getTimestamp());
+        writer.writeInt(transaction.getInputs().length);
+        for(Transaction.SignedInput input : transaction.getInputs()) {
+            writer.writeBytes(input.getTxId());
+            writer.writeInt(input.getvOut());
+            writer.writeBytes(input.getSignature());
+        }
+        writeOutputs(writer, transaction.getOutputs());
+        return writer.toByteArray();
+    }
+
+    @Nonnull
+    public static byte[] encode(@Nonnull SignAbleTransaction transaction) {
+        Writer writer = new Writer(TAG_SIGN_ABLE_TRANSACTION, transaction.getVersion());
+        writer.writeLong(transaction.getTimestamp());
+        writer.writeInt(transaction.getInputs().length);
+        for(Transaction.Input input : transaction.getInputs()) {
+            writer.writeBytes(input.getTxId());
+            writer.writeInt(input.getvOut());
+        }
+        writeOutputs(writer, transaction.getOutputs());
+        return writer.toByteArray();
+    }
+
+    @Nonnull
+    public static byte[] encode(@Nonnull Contract contract) {
+        Writer writer = new Writer(TAG_CONTRACT, contract.getVersion());
+        writeContractFields(writer, contract);
+        writer.writeBytes(contract.signature);
+        return writer.toByteArray();
+    }
+
+    //Only the signed fields, also if called with a Contract
+    @Nonnull
+    public static byte[] encodeSignAble(@Nonnull SignAbleContract contract) {
+        Writer writer = new Writer(TAG_SIGN_ABLE_CONTRACT, contract.getVersion());
+        writeContractFields(writer, contract);
+        return writer.toByteArray();
+    }
+
+    @Nonnull
+    public static byte[] encodeHeader(@Nonnull HashAbleBlock block) {
+        if(!hasBodyDigest(block.getVersion())) {
+            //Version 1, the body is committed by the ids of its transactions and contracts
+            Writer writer = new Writer(TAG_BLOCK_HEADER, block.getVersion());
+            writer.writeLong(block.id);
+            writer.writeBytes(block.prevHash);
+            writer.writeLong(block.timestamp);
+            writer.writeLong(block.nuOnce);
+            writeBodyIds(writer, block.getData());
+            return writer.toByteArray();
+        }
+
+        return encodeHeader(block.getVersion(), block.id, block.prevHash,
+                bodyDigest(block.getVersion(), block.getData()), block.difficulty, block.timestamp, block.nuOnce);
+    }
+
+    //Body digest header from the header fields alone
+    @Nonnull
+    public static byte[] encodeHeader(
+            int version,
+            long id,
+            @Nonnull byte[] prevHash,
+            @Nonnull byte[] bodyDigest,
+            @Nullable Integer difficulty,
+            long timestamp,
+            long nuOnce) {
+        Writer writer = headerPrefix(version, id, prevHash, bodyDigest, difficulty);
+        writer.writeLong(timestamp);
+        writer.writeLong(nuOnce);
+        return writer.toByteArray();
+    }
+
+    //Header bytes before timestamp and nonce, constant while mining a block
+    @Nonnull
+    public static byte[] encodeHeaderPrefix(@Nonnull Block block, @Nonnull byte[] bodyDigest) {
+        return headerPrefix(block.getVersion(), block.id, block.prevHash, bodyDigest, block.difficulty)
+                .toByteArray();
+    }
+
+    //Version 2 hashes the list of all ids, later versions use the Merkle root
+    @Nonnull
+    public static byte[] bodyDigest(@Nullable Integer version, @Nonnull BlockBody body) {
+        if(!hasMerkleRoot(version)) {
+            Writer writer = new Writer();
+            writeBodyIds(writer, body);
+            return Hashing.sha256().hashBytes(writer.toByteArray()).asBytes();
+        }
+        return MerkleTree.of(body).getRoot();
+    }
+
+    @Nonnull
+    private static Writer headerPrefix(
+            @Nullable Integer version,
+            long id,
+            @Nonnull byte[] prevHash,
+            @Nonnull byte[] bodyDigest,
+            @Nullable Integer difficulty) {
+        Writer writer = new Writer(TAG_BLOCK_HEADER, version);
+        writer.writeLong(id);
+        writer.writeBytes(prevHash);
+        writer.writeBytes(bodyDigest);
+        if(hasDifficulty(version)) {
+            //Missing difficulty is rejected by verification
+            writer.writeInt(difficulty == null ? 0 : difficulty);
+        }
+        return writer;
+    }
+
+    private static void writeBodyIds(@Nonnull Writer writer, @Nonnull BlockBody body) {
+        Transaction[] transactions = body.getTransactions();
+        writer.writeInt(transactions.length);
+        for(Transaction transaction : transactions) {
+            writer.writeBytes(transaction.getTransactionId());
+        }
+        Contract[] contracts = body.getContracts();
+        writer.writeInt(contracts.length);
+        for(Contract contract : contracts) {
+            writer.writeBytes(contract.getContractId());
+        }
+    }
+
+    private static void writeOutputs(@Nonnull Writer writer, @Nonnull Transaction.Output[] outputs) {
+        writer.writeInt(outputs.length);
+        for(Transaction.Output output : outputs) {
+            writer.writeInt(output.getAmount());
+            writer.writeBytes(output.getPubKey());
+        }
+    }
+
+    private static void writeContractFields(@Nonnull Writer writer, @Nonnull SignAbleContract contract) {
+        writer.writeLong(contract.getTimestamp());
+        writer.writeLong(contract.getDeadline());
+        writer.writeInt(contract.getGoal());
+        writer.writeBytes(contract.getOwnerPubKey());
+        writer.writeBytes(contract.getTitle().getBytes(StandardCharsets.UTF_8));
+        writer.writeBytes(contract.getDescription().getBytes(StandardCharsets.UTF_8));
+    }
+
+    //Growable big endian buffer
+    private static final class Writer {
+        private byte[] buffer;
+        private int size;
+
+        private Writer() {
+            this.buffer = new byte[256];
+            this.size = 0;
+        }
+
+        private Writer(byte tag, @Nullable Integer version) {
+            this();
+            //Unknown versions are still encoded, verification rejects them
+            if(version == null) {
+                throw new IllegalArgumentException("Legacy objects have no binary encoding");
+            }
+            writeByte(tag);
+            writeInt(version);
+        }
+
+        private void ensureCapacity(int additional) {
+            if(size + additional > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + additional));
+            }
+        }
+
+        private void writeByte(byte value) {
+            ensureCapacity(1);
+            buffer[size++] = value;
+        }
+
+        private void writeInt(int value) {
+            ensureCapacity(4);
+            buffer[size++] = (byte) (value >>> 24);
+            buffer[size++] = (byte) (value >>> 16);
+            buffer[size++] = (byte) (value >>> 8);
+            buffer[size++] = (byte) value;
+        }
+
+        private void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        private void writeBytes(@Nonnull byte[] bytes) {
+            writeInt(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        @Nonnull
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+}
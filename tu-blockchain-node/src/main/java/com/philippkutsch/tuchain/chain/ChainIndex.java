@@ -0,0 +1,337 @@
+package com.philippkutsch.tuchain.chain;
+
+import com.philippkutsch.tuchain.chain.utils.ByteArrayKey;
+import com.philippkutsch.tuchain.chain.utils.DataIO;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ChainIndex
+ *
+ * Lookup tables derived from the blocks of a Blockchain.
+ *
+ * Blocks are only ever appended, so every entry stores the height of the block
+ * it was created in. Readers holding a ChainSnapshot of height h ignore all
+ * entries with a block index >= h, which lets the single writer keep indexing
+ * while readers of older snapshots continue without locking.
+ *
+ * The UTXO set, the address balances and the contract aggregates are tip state only.
+ * They are guarded by a sequence counter (odd while a block is being connected).
+ * Checkpoints contain the lookup table entries visible at their height and the tip state,
+ * so only the blocks after a checkpoint have to be connected again.
+ */
+class ChainIndex {
+    private final Map<ByteArrayKey, ChainLocation> transactionIndex;
+    private final Map<ByteArrayKey, ChainLocation> contractIndex;
+    private final Map<OutPoint, ChainLocation> spentIndex;
+    private final Map<ByteArrayKey, ChainLocation> referencingIndex;
+    private final UtxoSet utxoSet;
+    private final AddressIndex addressIndex;
+    private final Map<ByteArrayKey, ContractAggregate> contractAggregates;
+    private volatile long sequence;
+
+    ChainIndex() {
+        this(new UtxoSet(), new AddressIndex(), 0);
+    }
+
+    private ChainIndex(@Nonnull UtxoSet utxoSet, @Nonnull AddressIndex addressIndex, int height) {
+        this.transactionIndex = new ConcurrentHashMap<>();
+        this.contractIndex = new ConcurrentHashMap<>();
+        this.spentIndex = new ConcurrentHashMap<>();
+        this.referencingIndex = new ConcurrentHashMap<>();
+        this.utxoSet = utxoSet;
+        this.addressIndex = addressIndex;
+        this.contractAggregates = new ConcurrentHashMap<>();
+        this.sequence = (long) height << 1;
+    }
+
+    //Number of connected blocks
+    int getHeight() {
+        return (int) (sequence >>> 1);
+    }
+
+    //Only called by the single chain writer
+    void connectBlock(int blockIndex, @Nonnull HashedBlock block) {
+        if(blockIndex != getHeight()) {
+            throw new IllegalStateException("Expected block index " + getHeight() + " got " + blockIndex);
+        }
+
+        sequence++;
+        try {
+            indexBlock(blockIndex, block);
+            connectTipState(blockIndex, block);
+        }
+        finally {
+            sequence++;
+        }
+    }
+
+    //Lookup tables and address history
+    private void indexBlock(int blockIndex, @Nonnull HashedBlock block) {
+        Transaction[] transactions = block.getData().getTransactions();
+        for(int i = 0; i < transactions.length; i++) {
+            ByteArrayKey txId = new ByteArrayKey(transactions[i].getTransactionId());
+            ChainLocation location = new ChainLocation(blockIndex, i);
+
+            //Keep first occurrence, same as a linear search would find
+            transactionIndex.putIfAbsent(txId, location);
+            for(Transaction.Input input : transactions[i].getInputs()) {
+                spentIndex.putIfAbsent(new OutPoint(input.getTxId(), input.getvOut()), location);
+                referencingIndex.putIfAbsent(new ByteArrayKey(input.getTxId()), location);
+            }
+
+            Transaction.Output[] outputs = transactions[i].getOutputs();
+            for(int vOut = 0; vOut < outputs.length; vOut++) {
+                addressIndex.addOutput(new OutPoint(txId, vOut), outputs[vOut], location);
+            }
+        }
+
+        Contract[] contracts = block.getData().getContracts();
+        for(int i = 0; i < contracts.length; i++) {
+            contractIndex.putIfAbsent(
+                    new ByteArrayKey(contracts[i].getContractId()),
+                    new ChainLocation(blockIndex, i));
+        }
+    }
+
+    //UTXO set, balances and contract aggregates
+    private void connectTipState(int blockIndex, @Nonnull HashedBlock block) {
+        for(Contract contract : block.getData().getContracts()) {
+            contractAggregates.putIfAbsent(
+                    new ByteArrayKey(contract.getContractId()), new ContractAggregate(contract.getDeadline()));
+        }
+
+        Transaction[] transactions = block.getData().getTransactions();
+        for(int i = 0; i < transactions.length; i++) {
+            ByteArrayKey txId = new ByteArrayKey(transactions[i].getTransactionId());
+            for(UtxoSet.Entry entry : utxoSet.connectTransaction(txId, transactions[i], new ChainLocation(blockIndex, i))) {
+                addressIndex.spendOutput(entry.getOutput());
+            }
+            for(Transaction.Output output : transactions[i].getOutputs()) {
+                addressIndex.addBalance(output);
+
+                //Investments count until the deadline of the project
+                ContractAggregate aggregate = contractAggregates.get(new ByteArrayKey(output.getPubKey()));
+                if(aggregate != null && transactions[i].getTimestamp() <= aggregate.deadline) {
+                    aggregate.investment.addAndGet(output.getAmount());
+                }
+            }
+        }
+    }
+
+    @Nullable
+    ChainLocation findTransaction(@Nonnull byte[] transactionId, int height) {
+        return visible(transactionIndex.get(new ByteArrayKey(transactionId)), height);
+    }
+
+    @Nullable
+    ChainLocation findContract(@Nonnull byte[] contractId, int height) {
+        return visible(contractIndex.get(new ByteArrayKey(contractId)), height);
+    }
+
+    //Location of the first transaction with an input spending (txId, vOut)
+    @Nullable
+    ChainLocation findSpendingTransaction(@Nonnull OutPoint outPoint, int height) {
+        return visible(spentIndex.get(outPoint), height);
+    }
+
+    //Location of the first transaction with an input referencing any output of txId
+    @Nullable
+    ChainLocation findReferencingTransaction(@Nonnull byte[] txId, int height) {
+        return visible(referencingIndex.get(new ByteArrayKey(txId)), height);
+    }
+
+    //Running balance, only available if height is the indexed tip. Returns null otherwise
+    @Nullable
+    Long getTipBalance(@Nonnull byte[] pubKey, int height) {
+        long before = sequence;
+        if(before != ((long) height << 1)) {
+            return null;
+        }
+        long balance = addressIndex.getBalance(pubKey);
+        return sequence == before ? balance : null;
+    }
+
+    //Lookup in the UTXO set, only available if height is the indexed tip. Returns null otherwise
+    @Nullable
+    Boolean isTipUnspent(@Nonnull OutPoint outPoint, int height) {
+        long before = sequence;
+        if(before != ((long) height << 1)) {
+            return null;
+        }
+        boolean unspent = utxoSet.isUnspent(outPoint);
+        return sequence == before ? unspent : null;
+    }
+
+    //Outputs of pubKey that are in the UTXO set, only available if height is the indexed tip.
+    //Returns null otherwise
+    @Nullable
+    List<AddressIndex.AddressOutput> findTipUnspent(@Nonnull byte[] pubKey, int height) {
+        long before = sequence;
+        if(before != ((long) height << 1)) {
+            return null;
+        }
+        List<AddressIndex.AddressOutput> unspent = new ArrayList<>();
+        for(AddressIndex.AddressOutput output : addressIndex.findOutputs(pubKey, height)) {
+            if(utxoSet.isUnspent(output.getOutPoint())) {
+                unspent.add(output);
+            }
+        }
+        return sequence == before ? unspent : null;
+    }
+
+    //Sum invested into a contract before its deadline, only available if height is the indexed tip.
+    //Returns null otherwise
+    @Nullable
+    Long getTipInvestment(@Nonnull byte[] contractId, int height) {
+        long before = sequence;
+        if(before != ((long) height << 1)) {
+            return null;
+        }
+        ContractAggregate aggregate = contractAggregates.get(new ByteArrayKey(contractId));
+        long investment = aggregate != null ? aggregate.investment.get() : 0;
+        return sequence == before ? investment : null;
+    }
+
+    //Tip state, only consistent for the chain writer
+    @Nonnull
+    UtxoSet getUtxoSet() {
+        return utxoSet;
+    }
+
+    @Nonnull
+    AddressIndex getAddressIndex() {
+        return addressIndex;
+    }
+
+    //Binary dump of the lookup tables and the tip state at height, may run next to the chain writer.
+    //Lookup entries of later blocks are skipped. Returns null if a block was connected meanwhile
+    @Nullable
+    byte[] writeState(int height) throws IOException {
+        long before = sequence;
+        if(before != ((long) height << 1)) {
+            return null;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(height);
+        writeLocations(out, transactionIndex, height);
+        writeLocations(out, contractIndex, height);
+        writeLocations(out, referencingIndex, height);
+        writeSpentLocations(out, height);
+        utxoSet.writeTo(out);
+        addressIndex.writeTo(out, height);
+        out.writeInt(contractAggregates.size());
+        for(Map.Entry<ByteArrayKey, ContractAggregate> aggregate : contractAggregates.entrySet()) {
+            DataIO.writeBytes(out, aggregate.getKey().getBytes());
+            out.writeLong(aggregate.getValue().deadline);
+            out.writeLong(aggregate.getValue().investment.get());
+        }
+        out.flush();
+        return sequence == before ? bytes.toByteArray() : null;
+    }
+
+    //Index of a checkpoint, blocks after its height are connected as usual
+    @Nonnull
+    static ChainIndex readState(@Nonnull DataInput in) throws IOException {
+        int height = in.readInt();
+        Map<ByteArrayKey, ChainLocation> transactionIndex = readLocations(in);
+        Map<ByteArrayKey, ChainLocation> contractIndex = readLocations(in);
+        Map<ByteArrayKey, ChainLocation> referencingIndex = readLocations(in);
+        Map<OutPoint, ChainLocation> spentIndex = readSpentLocations(in);
+        ChainIndex index = new ChainIndex(UtxoSet.readFrom(in), AddressIndex.readFrom(in), height);
+        index.transactionIndex.putAll(transactionIndex);
+        index.contractIndex.putAll(contractIndex);
+        index.referencingIndex.putAll(referencingIndex);
+        index.spentIndex.putAll(spentIndex);
+        int contractCount = DataIO.readCount(in);
+        for(int i = 0; i < contractCount; i++) {
+            ByteArrayKey contractId = new ByteArrayKey(DataIO.readBytes(in));
+            ContractAggregate aggregate = new ContractAggregate(in.readLong());
+            aggregate.investment.set(in.readLong());
+            index.contractAggregates.put(contractId, aggregate);
+        }
+        return index;
+    }
+
+    private static void writeLocations(@Nonnull DataOutput out,
+                                       @Nonnull Map<ByteArrayKey, ChainLocation> locations,
+                                       int height) throws IOException {
+        List<Map.Entry<ByteArrayKey, ChainLocation>> visibleLocations = new ArrayList<>();
+        for(Map.Entry<ByteArrayKey, ChainLocation> location : locations.entrySet()) {
+            if(visible(location.getValue(), height) != null) {
+                visibleLocations.add(location);
+            }
+        }
+        out.writeInt(visibleLocations.size());
+        for(Map.Entry<ByteArrayKey, ChainLocation> location : visibleLocations) {
+            DataIO.writeBytes(out, location.getKey().getBytes());
+            location.getValue().writeTo(out);
+        }
+    }
+
+    @Nonnull
+    private static Map<ByteArrayKey, ChainLocation> readLocations(@Nonnull DataInput in) throws IOException {
+        int count = DataIO.readCount(in);
+        Map<ByteArrayKey, ChainLocation> locations = new HashMap<>();
+        for(int i = 0; i < count; i++) {
+            locations.put(new ByteArrayKey(DataIO.readBytes(in)), ChainLocation.readFrom(in));
+        }
+        return locations;
+    }
+
+    private void writeSpentLocations(@Nonnull DataOutput out, int height) throws IOException {
+        List<Map.Entry<OutPoint, ChainLocation>> visibleLocations = new ArrayList<>();
+        for(Map.Entry<OutPoint, ChainLocation> location : spentIndex.entrySet()) {
+            if(visible(location.getValue(), height) != null) {
+                visibleLocations.add(location);
+            }
+        }
+        out.writeInt(visibleLocations.size());
+        for(Map.Entry<OutPoint, ChainLocation> location : visibleLocations) {
+            location.getKey().writeTo(out);
+            location.getValue().writeTo(out);
+        }
+    }
+
+    @Nonnull
+    private static Map<OutPoint, ChainLocation> readSpentLocations(@Nonnull DataInput in) throws IOException {
+        int count = DataIO.readCount(in);
+        Map<OutPoint, ChainLocation> locations = new HashMap<>();
+        for(int i = 0; i < count; i++) {
+            locations.put(OutPoint.readFrom(in), ChainLocation.readFrom(in));
+        }
+        return locations;
+    }
+
+    @Nullable
+    private static ChainLocation visible(@Nullable ChainLocation location, int height) {
+        if(location == null || location.getBlockIndex() >= height) {
+            return null;
+        }
+        return location;
+    }
+
+    private static class ContractAggregate {
+        private final long deadline;
+        private final AtomicLong investment;
+
+        private ContractAggregate(long deadline) {
+            this.deadline = deadline;
+            this.investment = new AtomicLong();
+        }
+    }
+}
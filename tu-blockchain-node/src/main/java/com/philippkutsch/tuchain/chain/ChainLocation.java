@@ -0,0 +1,40 @@
+package com.philippkutsch.tuchain.chain;
+
+import javax.annotation.Nonnull;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Position of a transaction or contract inside the chain
+ *
+ * blockIndex is the position of the block inside the block list (height),
+ * not the block id. index is the position inside the block body array.
+ */
+public class ChainLocation {
+    private final int blockIndex;
+    private final int index;
+
+    public ChainLocation(int blockIndex, int index) {
+        this.blockIndex = blockIndex;
+        this.index = index;
+    }
+
+    public int getBlockIndex() {
+        return blockIndex;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void writeTo(@Nonnull DataOutput out) throws IOException {
+        out.writeInt(blockIndex);
+        out.writeInt(index);
+    }
+
+    @Nonnull
+    public static ChainLocation readFrom(@Nonnull DataInput in) throws IOException {
+        return new ChainLocation(in.readInt(), in.readInt());
+    }
+}
@@ -0,0 +1,350 @@
+package com.philippkutsch.tuchain.chain;
+
+import com.philippkutsch.tuchain.chain.store.BlockStore;
+import com.philippkutsch.tuchain.chain.utils.ByteArrayKey;
+import com.philippkutsch.tuchain.chain.utils.PersistentVector;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * ChainSnapshot
+ *
+ * Immutable view of a Blockchain at a fixed height.
+ * Taking a snapshot neither copies the block list nor locks. Newer blocks and
+ * index entries added by the chain writer are invisible to the snapshot.
+ * Only headers are held, bodies of stored blocks are loaded from the BlockStore.
+ */
+public class ChainSnapshot implements ChainView {
+    private final PersistentVector<BlockHeader> headers;
+    private final int height;
+    private final ChainIndex index;
+    private final BlockStore blockStore;
+
+    ChainSnapshot(@Nonnull PersistentVector<BlockHeader> headers,
+                  int height,
+                  @Nonnull ChainIndex index,
+                  @Nullable BlockStore blockStore) {
+        this.headers = headers;
+        this.height = height;
+        this.index = index;
+        this.blockStore = blockStore;
+    }
+
+    //Snapshot of the first height blocks of this snapshot
+    @Nonnull
+    public ChainSnapshot pin(int height) {
+        if(height < 0 || height > this.height) {
+            throw new IllegalArgumentException("Height " + height + " not in snapshot of height " + this.height);
+        }
+        return new ChainSnapshot(headers, height, index, blockStore);
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Nonnull
+    @Override
+    public HashedBlock getLastBlock() {
+        return getBlock(height - 1);
+    }
+
+    @Nonnull
+    public HashedBlock getBlock(int blockIndex) {
+        Objects.checkIndex(blockIndex, height);
+        BlockHeader header = headers.get(blockIndex);
+        return header.toHashedBlock(getBody(header, blockIndex));
+    }
+
+    @Nonnull
+    public BlockHeader getHeader(int blockIndex) {
+        Objects.checkIndex(blockIndex, height);
+        return headers.get(blockIndex);
+    }
+
+    //Read only view of all blocks. Bodies of stored blocks are loaded on access
+    @Nonnull
+    @Override
+    public List<HashedBlock> getBlockchain() {
+        return new AbstractList<>() {
+            @Override
+            public HashedBlock get(int index) {
+                return getBlock(index);
+            }
+
+            @Override
+            public int size() {
+                return height;
+            }
+        };
+    }
+
+    @Nonnull
+    @Override
+    public Optional<HashedBlock> findBlock(long id) {
+        if(height == 0) {
+            return Optional.empty();
+        }
+
+        //Ids are usually consecutive, try direct access first
+        long candidate = id - headers.get(0).getId();
+        if(candidate >= 0 && candidate < height && headers.get((int) candidate).getId() == id) {
+            return Optional.of(getBlock((int) candidate));
+        }
+
+        for(int i = 0; i < height; i++) {
+            if(headers.get(i).getId() == id) {
+                return Optional.of(getBlock(i));
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Nonnull
+    @Override
+    public List<Contract> listContracts() {
+        List<Contract> contractList = new ArrayList<>();
+        for(int i = 0; i < height; i++) {
+            contractList.addAll(Arrays.asList(getBody(i).getContracts()));
+        }
+        return contractList;
+    }
+
+    @Nonnull
+    @Override
+    public Optional<Contract> findContract(@Nonnull byte[] contractId) {
+        ChainLocation location = index.findContract(contractId, height);
+        if(location == null) {
+            return Optional.empty();
+        }
+        return Optional.of(getBody(location.getBlockIndex())
+                .getContracts()[location.getIndex()]);
+    }
+
+    @Nonnull
+    @Override
+    public Optional<Transaction> findTransaction(@Nonnull byte[] transactionId) {
+        ChainLocation location = index.findTransaction(transactionId, height);
+        if(location == null) {
+            return Optional.empty();
+        }
+        return Optional.of(getTransaction(location));
+    }
+
+    @Nonnull
+    @Override
+    public Optional<HashedBlock> findTransactionBlock(@Nonnull byte[] transactionId) {
+        ChainLocation location = index.findTransaction(transactionId, height);
+        if(location == null) {
+            return Optional.empty();
+        }
+        return Optional.of(getBlock(location.getBlockIndex()));
+    }
+
+    @Nonnull
+    @Override
+    public Optional<MerkleProof> proveTransaction(@Nonnull byte[] transactionId) {
+        ChainLocation location = index.findTransaction(transactionId, height);
+        if(location == null || headers.get(location.getBlockIndex()).getMerkleRoot() == null) {
+            return Optional.empty();
+        }
+        return Optional.of(MerkleTree.of(getBody(location.getBlockIndex()))
+                .proveTransaction(location.getIndex()));
+    }
+
+    @Nonnull
+    @Override
+    public Optional<MerkleProof> proveContract(@Nonnull byte[] contractId) {
+        ChainLocation location = index.findContract(contractId, height);
+        if(location == null || headers.get(location.getBlockIndex()).getMerkleRoot() == null) {
+            return Optional.empty();
+        }
+        return Optional.of(MerkleTree.of(getBody(location.getBlockIndex()))
+                .proveContract(location.getIndex()));
+    }
+
+    //Search for the first transaction spending any output of transactionId
+    @Nonnull
+    @Override
+    public Optional<Transaction> findReferencingTransaction(@Nonnull byte[] transactionId) {
+        ChainLocation location = index.findReferencingTransaction(transactionId, height);
+        if(location == null) {
+            return Optional.empty();
+        }
+        return Optional.of(getTransaction(location));
+    }
+
+    //Search for the transaction spending output (txId, vOut)
+    @Nonnull
+    @Override
+    public Optional<Transaction> findSpendingTransaction(@Nonnull byte[] txId, int vOut) {
+        ChainLocation location = index.findSpendingTransaction(new OutPoint(txId, vOut), height);
+        if(location == null) {
+            return Optional.empty();
+        }
+        return Optional.of(getTransaction(location));
+    }
+
+    //One entry per output paying publicKey, in chain order
+    @Nonnull
+    @Override
+    public List<Transaction> findTransactionsTo(@Nonnull byte[] publicKey) {
+        List<Transaction> matchingTransactions = new ArrayList<>();
+        for(AddressIndex.AddressOutput output : index.getAddressIndex().findOutputs(publicKey, height)) {
+            matchingTransactions.add(getTransaction(output.getLocation()));
+        }
+        return matchingTransactions;
+    }
+
+    //Search for the input spending output (txId, vOut)
+    @Nonnull
+    @Override
+    public Optional<Transaction.Input> findTransactionInput(@Nonnull byte[] txId, int vOut) {
+        Optional<Transaction> spendingTransaction = findSpendingTransaction(txId, vOut);
+        if(spendingTransaction.isEmpty()) {
+            return Optional.empty();
+        }
+        for(Transaction.Input input : spendingTransaction.get().getInputs()) {
+            if(Arrays.equals(input.getTxId(), txId) && input.getvOut() == vOut) {
+                return Optional.of(input);
+            }
+        }
+        return Optional.empty();
+    }
+
+    //Distinct transactions that have at least one unspent output to pubKey
+    @Nonnull
+    @Override
+    public List<Transaction> findUTXOTransaction(@Nonnull byte[] pubKey) {
+        List<Transaction> uTXOTransactionList = new ArrayList<>();
+        Set<ByteArrayKey> added = new HashSet<>();
+        for(UnspentTransactionOutput uTXO : findUTXO(pubKey)) {
+            if(added.add(new ByteArrayKey(uTXO.getTxId()))) {
+                findTransaction(uTXO.getTxId()).ifPresent(uTXOTransactionList::add);
+            }
+        }
+        return uTXOTransactionList;
+    }
+
+    @Nonnull
+    @Override
+    public List<UnspentTransactionOutput> findUTXO(@Nonnull byte[] pubKey) {
+        List<UnspentTransactionOutput> uTXOList = new ArrayList<>();
+        //Tip snapshots are answered by the UTXO set, older ones by the spent index
+        List<AddressIndex.AddressOutput> tipUnspent = index.findTipUnspent(pubKey, height);
+        if(tipUnspent != null) {
+            for(AddressIndex.AddressOutput output : tipUnspent) {
+                uTXOList.add(new UnspentTransactionOutput(
+                        output.getOutPoint().getTxId(), output.getOutPoint().getvOut(), output.getAmount()));
+            }
+            return uTXOList;
+        }
+
+        for(AddressIndex.AddressOutput output : index.getAddressIndex().findOutputs(pubKey, height)) {
+            OutPoint outPoint = output.getOutPoint();
+            if(index.findSpendingTransaction(outPoint, height) == null) {
+                uTXOList.add(new UnspentTransactionOutput(
+                        outPoint.getTxId(), outPoint.getvOut(), output.getAmount()));
+            }
+        }
+        return uTXOList;
+    }
+
+    //Check if the output exists and is not spent by any transaction in the snapshot
+    @Override
+    public boolean isUnspent(@Nonnull byte[] txId, int vOut) {
+        //Constant time on the tip, the UTXO set only holds existing outputs
+        Boolean tipUnspent = index.isTipUnspent(new OutPoint(txId, vOut), height);
+        if(tipUnspent != null) {
+            return tipUnspent;
+        }
+
+        ChainLocation location = index.findTransaction(txId, height);
+        if(location == null || vOut < 0 || vOut >= getTransaction(location).getOutputs().length) {
+            return false;
+        }
+        return index.findSpendingTransaction(new OutPoint(txId, vOut), height) == null;
+    }
+
+    //Sum of all unspent outputs of pubKey
+    @Override
+    public long getBalance(@Nonnull byte[] pubKey) {
+        Long tipBalance = index.getTipBalance(pubKey, height);
+        if(tipBalance != null) {
+            return tipBalance;
+        }
+
+        long balance = 0;
+        for(UnspentTransactionOutput uTXO : findUTXO(pubKey)) {
+            balance += uTXO.getAmount();
+        }
+        return balance;
+    }
+
+    @Override
+    public long getContractInvestment(@Nonnull byte[] contractId) {
+        Long tipInvestment = index.getTipInvestment(contractId, height);
+        if(tipInvestment != null) {
+            return tipInvestment;
+        }
+
+        Optional<Contract> contract = findContract(contractId);
+        if(contract.isEmpty()) {
+            return 0;
+        }
+        long investment = 0;
+        for(AddressIndex.AddressOutput output : index.getAddressIndex().findOutputs(contractId, height)) {
+            if(getTransaction(output.getLocation()).getTimestamp() <= contract.get().getDeadline()) {
+                investment += output.getAmount();
+            }
+        }
+        return investment;
+    }
+
+    @Nonnull
+    @Override
+    public Block buildNextBlock(
+            @Nonnull List<Transaction> transactionList,
+            @Nonnull List<Contract> contractList) {
+        BlockHeader currentHeader = getHeader(height - 1);
+        BlockBody blockBody = new BlockBody(
+                transactionList.toArray(new Transaction[0]),
+                contractList.toArray(new Contract[0]));
+        return new Block(currentHeader.getId() + 1, currentHeader.getHash(), blockBody,
+                CanonicalEncoding.CURRENT_VERSION, DifficultyAdjustment.nextDifficulty(this));
+    }
+
+    @Nonnull
+    PersistentVector<BlockHeader> getHeaders() {
+        return headers;
+    }
+
+    @Nonnull
+    private Transaction getTransaction(@Nonnull ChainLocation location) {
+        return getBody(location.getBlockIndex()).getTransactions()[location.getIndex()];
+    }
+
+    @Nonnull
+    private BlockBody getBody(int blockIndex) {
+        return getBody(headers.get(blockIndex), blockIndex);
+    }
+
+    @Nonnull
+    private BlockBody getBody(@Nonnull BlockHeader header, int blockIndex) {
+        BlockBody residentBody = header.getResidentBody();
+        if(residentBody != null) {
+            return residentBody;
+        }
+        try {
+            //noinspection ConstantConditions
+            return blockStore.readBody(blockIndex);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load body of block index " + blockIndex, e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.philippkutsch.tuchain.chain;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Read access to a chain
+ *
+ * Implemented by ChainSnapshot (fixed height) and Blockchain (current tip).
+ */
+public interface ChainView {
+    //Number of blocks
+    int getHeight();
+
+    @Nonnull
+    HashedBlock getLastBlock();
+
+    //Read only list of all blocks
+    @Nonnull
+    List<HashedBlock> getBlockchain();
+
+    @Nonnull
+    Optional<HashedBlock> findBlock(long id);
+
+    @Nonnull
+    List<Contract> listContracts();
+
+    @Nonnull
+    Optional<Contract> findContract(@Nonnull byte[] contractId);
+
+    @Nonnull
+    Optional<Transaction> findTransaction(@Nonnull byte[] transactionId);
+
+    @Nonnull
+    Optional<HashedBlock> findTransactionBlock(@Nonnull byte[] transactionId);
+
+    //Inclusion proof against the Merkle root of the blocks header.
+    //Empty if not found or the block has no Merkle root
+    @Nonnull
+    Optional<MerkleProof> proveTransaction(@Nonnull byte[] transactionId);
+
+    @Nonnull
+    Optional<MerkleProof> proveContract(@Nonnull byte[] contractId);
+
+    @Nonnull
+    Optional<Transaction> findReferencingTransaction(@Nonnull byte[] transactionId);
+
+    @Nonnull
+    Optional<Transaction> findSpendingTransaction(@Nonnull byte[] txId, int vOut);
+
+    @Nonnull
+    List<Transaction> findTransactionsTo(@Nonnull byte[] publicKey);
+
+    @Nonnull
+    Optional<Transaction.Input> findTransactionInput(@Nonnull byte[] txId, int vOut);
+
+    @Nonnull
+    List<Transaction> findUTXOTransaction(@Nonnull byte[] pubKey);
+
+    @Nonnull
+    List<UnspentTransactionOutput> findUTXO(@Nonnull byte[] pubKey);
+
+    boolean isUnspent(@Nonnull byte[] txId, int vOut);
+
+    long getBalance(@Nonnull byte[] pubKey);
+
+    //Sum paid to a contract address by transactions up to the contract deadline
+    long getContractInvestment(@Nonnull byte[] contractId);
+
+    @Nonnull
+    Block buildNextBlock(
+            @Nonnull List<Transaction> transactionList,
+            @Nonnull List<Contract> contractList);
+}
@@ -25,7 +25,8 @@ public class Contract extends SignAbleContract {
                 signAbleContract.goal,
                 signAbleContract.ownerPubKey,
                 signAbleContract.title,
-                signAbleContract.description);
+                signAbleContract.description,
+                signAbleContract.version);
         this.signature = signature;
     }
 
@@ -36,7 +37,9 @@ public class Contract extends SignAbleContract {
 
     @Nonnull
     public byte[] getContractId() {
-        byte[] contractBytes = ChainUtils.encodeToBytes(this);
+        byte[] contractBytes = version == null
+                ? ChainUtils.encodeToBytes(this)
+                : CanonicalEncoding.encode(this);
         return Hashing.sha256().hashBytes(contractBytes).asBytes();
     }
 }
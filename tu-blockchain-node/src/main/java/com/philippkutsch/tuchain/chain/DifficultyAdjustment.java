@@ -0,0 +1,62 @@
+package com.philippkutsch.tuchain.chain;
+
+import javax.annotation.Nonnull;
+
+/**
+ * DifficultyAdjustment
+ *
+ * Difficulty is the number of leading zero bits a block hash needs.
+ * Every RETARGET_INTERVAL blocks the time taken by the last window of blocks is
+ * compared with the target block time. Each factor of two the window was too fast
+ * (or too slow) adds (or removes) one bit, at most MAX_STEP bits per retarget.
+ * Between retargets the difficulty of the previous block is kept.
+ *
+ * Only integer arithmetic, so every node computes the same result.
+ * Blocks without difficulty count as INITIAL_DIFFICULTY.
+ */
+public final class DifficultyAdjustment {
+    public static final int INITIAL_DIFFICULTY = 20;
+    public static final int MIN_DIFFICULTY = 1;
+    public static final int MAX_DIFFICULTY = 256;
+    public static final long TARGET_BLOCK_TIME_MS = 10_000;
+    public static final int RETARGET_INTERVAL = 16;
+    public static final int MAX_STEP = 2;
+
+    private DifficultyAdjustment() {
+
+    }
+
+    //Difficulty required for the block following the chain
+    public static int nextDifficulty(@Nonnull ChainSnapshot chain) {
+        int height = chain.getHeight();
+        if(height == 0) {
+            return INITIAL_DIFFICULTY;
+        }
+
+        BlockHeader last = chain.getHeader(height - 1);
+        int previous = difficultyOf(last);
+        if(height % RETARGET_INTERVAL != 0) {
+            return previous;
+        }
+
+        BlockHeader first = chain.getHeader(height - RETARGET_INTERVAL);
+        long actual = Math.max(1, last.getTimestamp() - first.getTimestamp());
+        long expected = (RETARGET_INTERVAL - 1) * TARGET_BLOCK_TIME_MS;
+
+        int step = 0;
+        long scaled = actual;
+        while(step < MAX_STEP && scaled * 2 <= expected) {
+            scaled *= 2;
+            step++;
+        }
+        while(step > -MAX_STEP && scaled >= expected * 2) {
+            scaled /= 2;
+            step--;
+        }
+        return Math.max(MIN_DIFFICULTY, Math.min(MAX_DIFFICULTY, previous + step));
+    }
+
+    private static int difficultyOf(@Nonnull BlockHeader header) {
+        return header.getDifficulty() != null ? header.getDifficulty() : INITIAL_DIFFICULTY;
+    }
+}
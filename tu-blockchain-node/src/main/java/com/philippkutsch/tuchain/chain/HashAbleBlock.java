@@ -4,6 +4,7 @@ import com.google.common.hash.Hashing;
 import com.philippkutsch.tuchain.chain.utils.ChainUtils;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 public class HashAbleBlock extends Block {
     protected long timestamp;
@@ -16,15 +17,33 @@ public class HashAbleBlock extends Block {
         super(id, prevHash, data);
     }
 
+    public HashAbleBlock(
+            long id,
+            @Nonnull byte[] prevHash,
+            @Nonnull BlockBody data,
+            @Nullable Integer version) {
+        super(id, prevHash, data, version);
+    }
+
+    public HashAbleBlock(
+            long id,
+            @Nonnull byte[] prevHash,
+            @Nonnull BlockBody data,
+            @Nullable Integer version,
+            @Nullable Integer difficulty) {
+        super(id, prevHash, data, version, difficulty);
+    }
+
     @Nonnull
     public static HashAbleBlock fromBlock(@Nonnull Block block) {
-        return new HashAbleBlock(block.id, block.prevHash, block.data);
+        return new HashAbleBlock(block.id, block.prevHash, block.data, block.version, block.difficulty);
     }
 
     @Nonnull
     public static HashAbleBlock fromHashedBlock(
             @Nonnull HashedBlock hashedBlock) {
-        HashAbleBlock hashAbleBlock = new HashAbleBlock(hashedBlock.id, hashedBlock.prevHash, hashedBlock.data);
+        HashAbleBlock hashAbleBlock = new HashAbleBlock(
+                hashedBlock.id, hashedBlock.prevHash, hashedBlock.data, hashedBlock.version, hashedBlock.difficulty);
         hashAbleBlock.setTimestamp(hashedBlock.timestamp);
         hashAbleBlock.setNuOnce(hashedBlock.nuOnce);
         return hashAbleBlock;
@@ -40,8 +59,11 @@ public class HashAbleBlock extends Block {
 
     @Nonnull
     public byte[] hash() {
+        byte[] headerBytes = version == null
+                ? ChainUtils.encodeToBytes(this)
+                : CanonicalEncoding.encodeHeader(this);
         return Hashing.sha256()
-                .hashBytes(ChainUtils.encodeToBytes(this))
+                .hashBytes(headerBytes)
                 .asBytes();
     }
 }
\ No newline at end of file
@@ -1,6 +1,9 @@
 package com.philippkutsch.tuchain.chain;
 
+import com.google.common.hash.Hashing;
+
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -9,6 +12,9 @@ public class HashedBlock extends Block {
     protected final long nuOnce;
     protected final byte[] hash;
 
+    //Root of the MerkleTree of the body, only for versions committing to one
+    protected final byte[] merkleRoot;
+
     public HashedBlock(
             long id,
             @Nonnull byte[] prevHash,
@@ -16,13 +22,60 @@ public class HashedBlock extends Block {
             long timestamp,
             long nuOnce,
             @Nonnull byte[] hash) {
-        super(id, prevHash, data);
+        this(id, prevHash, data, timestamp, nuOnce, hash, null);
+    }
+
+    public HashedBlock(
+            long id,
+            @Nonnull byte[] prevHash,
+            @Nonnull BlockBody data,
+            long timestamp,
+            long nuOnce,
+            @Nonnull byte[] hash,
+            @Nullable Integer version) {
+        this(id, prevHash, data, timestamp, nuOnce, hash, version, null);
+    }
+
+    public HashedBlock(
+            long id,
+            @Nonnull byte[] prevHash,
+            @Nonnull BlockBody data,
+            long timestamp,
+            long nuOnce,
+            @Nonnull byte[] hash,
+            @Nullable Integer version,
+            @Nullable byte[] merkleRoot) {
+        this(id, prevHash, data, timestamp, nuOnce, hash, version, merkleRoot, null);
+    }
+
+    public HashedBlock(
+            long id,
+            @Nonnull byte[] prevHash,
+            @Nonnull BlockBody data,
+            long timestamp,
+            long nuOnce,
+            @Nonnull byte[] hash,
+            @Nullable Integer version,
+            @Nullable byte[] merkleRoot,
+            @Nullable Integer difficulty) {
+        super(id, prevHash, data, version, difficulty);
         this.timestamp = timestamp;
         this.nuOnce = nuOnce;
         this.hash = hash;
+        this.merkleRoot = merkleRoot;
     }
 
     public boolean isHeaderValid() {
+        if(CanonicalEncoding.hasMerkleRoot(version)) {
+            //Stored root has to match the body, the header hash only covers the root
+            if(merkleRoot == null || !Arrays.equals(merkleRoot, MerkleTree.of(data).getRoot())) {
+                return false;
+            }
+            byte[] headerHash = Hashing.sha256().hashBytes(CanonicalEncoding.encodeHeader(
+                    version, id, prevHash, merkleRoot, difficulty, timestamp, nuOnce)).asBytes();
+            return Arrays.equals(headerHash, hash);
+        }
+
         HashAbleBlock hashAbleBlock = HashAbleBlock.fromHashedBlock(this);
         byte[] headerHash = hashAbleBlock.hash();
         return Arrays.equals(headerHash, hash);
@@ -40,19 +93,25 @@ public class HashedBlock extends Block {
         return hash;
     }
 
+    @Nullable
+    public byte[] getMerkleRoot() {
+        return merkleRoot;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         if (!super.equals(o)) return false;
         HashedBlock that = (HashedBlock) o;
-        return getTimestamp() == that.getTimestamp() && getNuOnce() == that.getNuOnce() && Arrays.equals(getHash(), that.getHash());
+        return getTimestamp() == that.getTimestamp() && getNuOnce() == that.getNuOnce() && Arrays.equals(getHash(), that.getHash()) && Arrays.equals(getMerkleRoot(), that.getMerkleRoot());
     }
 
     @Override
     public int hashCode() {
         int result = Objects.hash(super.hashCode(), getTimestamp(), getNuOnce());
         result = 31 * result + Arrays.hashCode(getHash());
+        result = 31 * result + Arrays.hashCode(getMerkleRoot());
         return result;
     }
 }
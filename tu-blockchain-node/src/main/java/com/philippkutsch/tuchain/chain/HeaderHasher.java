@@ -0,0 +1,100 @@
+package com.philippkutsch.tuchain.chain;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * HeaderHasher
+ *
+ * Mining kernel hashing the header of one block for changing timestamps and nonces.
+ * For blocks committing their body by digest the header is serialized once into a
+ * preallocated buffer. Every attempt only rewrites the trailing timestamp and nonce
+ * bytes and digests the buffer into a caller provided array, so hashInto allocates
+ * nothing and its cost does not depend on the block body.
+ * The header is at most two SHA-256 blocks, cloning a midstate per attempt would cost
+ * an allocation for saving one of them.
+ * Older block versions fall back to HashAbleBlock.hash().
+ *
+ * Not thread safe, use one instance per mining thread.
+ */
+public final class HeaderHasher {
+    public static final int HASH_LENGTH = 32;
+
+    private final HashAbleBlock block;
+    private final MessageDigest digest;
+    private final byte[] bodyDigest;
+    private final byte[] header;
+    private final int suffixOffset;
+
+    public HeaderHasher(@Nonnull Block block) {
+        this.block = HashAbleBlock.fromBlock(block);
+        if(CanonicalEncoding.hasBodyDigest(block.getVersion())) {
+            this.bodyDigest = CanonicalEncoding.bodyDigest(block.getVersion(), block.getData());
+            this.digest = newSha256();
+            byte[] prefix = CanonicalEncoding.encodeHeaderPrefix(block, bodyDigest);
+            this.suffixOffset = prefix.length;
+            this.header = new byte[prefix.length + CanonicalEncoding.HEADER_SUFFIX_LENGTH];
+            System.arraycopy(prefix, 0, header, 0, prefix.length);
+        }
+        else {
+            this.bodyDigest = null;
+            this.digest = null;
+            this.header = null;
+            this.suffixOffset = 0;
+        }
+    }
+
+    //Merkle root to store in the mined block, null for versions without one
+    @Nullable
+    public byte[] getMerkleRoot() {
+        return CanonicalEncoding.hasMerkleRoot(block.getVersion()) ? bodyDigest : null;
+    }
+
+    @Nonnull
+    public byte[] hash(long timestamp, long nuOnce) {
+        byte[] hash = new byte[HASH_LENGTH];
+        hashInto(timestamp, nuOnce, hash);
+        return hash;
+    }
+
+    //Writes the header hash into the first 32 bytes of out
+    public void hashInto(long timestamp, long nuOnce, @Nonnull byte[] out) {
+        if(digest == null) {
+            block.setTimestamp(timestamp);
+            block.setNuOnce(nuOnce);
+            System.arraycopy(block.hash(), 0, out, 0, HASH_LENGTH);
+            return;
+        }
+
+        writeLong(header, suffixOffset, timestamp);
+        writeLong(header, suffixOffset + 8, nuOnce);
+        digest.update(header);
+        try {
+            //Also resets the digest
+            digest.digest(out, 0, HASH_LENGTH);
+        }
+        catch (DigestException e) {
+            throw new IllegalArgumentException("Hash output buffer too small", e);
+        }
+    }
+
+    private static void writeLong(@Nonnull byte[] buffer, int offset, long value) {
+        for(int i = 7; i >= 0; i--) {
+            buffer[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    @Nonnull
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.philippkutsch.tuchain.chain;
+
+/**
+ * LoadProgress
+ *
+ * Progress callback for long running chain loads.
+ * Units of done and total depend on the source (blocks or bytes).
+ */
+public interface LoadProgress {
+    void onProgress(long done, long total);
+}
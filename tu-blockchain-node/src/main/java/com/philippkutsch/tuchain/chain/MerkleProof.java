@@ -0,0 +1,71 @@
+package com.philippkutsch.tuchain.chain;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * MerkleProof
+ *
+ * Inclusion proof of one transaction or contract in a block. Only the Merkle root
+ * of the block header is needed for verification, not the block body.
+ * Siblings are ordered from the leaf level up, levels where the node has no
+ * sibling are skipped.
+ */
+public final class MerkleProof {
+    private final int leafIndex;
+    private final int leafCount;
+    private final byte[][] siblings;
+
+    public MerkleProof(int leafIndex, int leafCount, @Nonnull byte[][] siblings) {
+        this.leafIndex = leafIndex;
+        this.leafCount = leafCount;
+        this.siblings = siblings;
+    }
+
+    public int getLeafIndex() {
+        return leafIndex;
+    }
+
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    @Nonnull
+    public byte[][] getSiblings() {
+        return siblings;
+    }
+
+    public boolean verifyTransaction(@Nonnull byte[] transactionId, @Nonnull byte[] merkleRoot) {
+        return verify(MerkleTree.hashLeaf(MerkleTree.TRANSACTION_LEAF, transactionId), merkleRoot);
+    }
+
+    public boolean verifyContract(@Nonnull byte[] contractId, @Nonnull byte[] merkleRoot) {
+        return verify(MerkleTree.hashLeaf(MerkleTree.CONTRACT_LEAF, contractId), merkleRoot);
+    }
+
+    private boolean verify(@Nonnull byte[] leaf, @Nonnull byte[] merkleRoot) {
+        if(leafIndex < 0 || leafIndex >= leafCount) {
+            return false;
+        }
+
+        byte[] current = leaf;
+        int index = leafIndex;
+        int count = leafCount;
+        int next = 0;
+        while(count > 1) {
+            boolean hasSibling = (index & 1) == 1 || index + 1 < count;
+            if(hasSibling) {
+                if(next >= siblings.length) {
+                    return false;
+                }
+                current = (index & 1) == 1
+                        ? MerkleTree.hashNode(siblings[next], current)
+                        : MerkleTree.hashNode(current, siblings[next]);
+                next++;
+            }
+            index >>>= 1;
+            count = (count + 1) >>> 1;
+        }
+        return next == siblings.length && Arrays.equals(current, merkleRoot);
+    }
+}
@@ -0,0 +1,119 @@
+package com.philippkutsch.tuchain.chain;
+
+import com.google.common.hash.Hashing;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * MerkleTree
+ *
+ * Binary hash tree over the transaction ids followed by the contract ids of a block body.
+ * Transaction leaves, contract leaves and inner nodes are hashed with different prefixes,
+ * so no id can be passed off as an inner node or as the other kind.
+ * A node without sibling is moved up to the next level unchanged.
+ */
+public final class MerkleTree {
+    static final byte TRANSACTION_LEAF = 0x00;
+    static final byte CONTRACT_LEAF = 0x01;
+    private static final byte NODE = 0x02;
+
+    //Root of a body without transactions and contracts
+    private static final byte[] EMPTY_ROOT = new byte[32];
+
+    //levels.get(0) are the leaves, the last level is the root
+    private final List<byte[][]> levels;
+    private final int transactionCount;
+
+    private MerkleTree(@Nonnull List<byte[][]> levels, int transactionCount) {
+        this.levels = levels;
+        this.transactionCount = transactionCount;
+    }
+
+    @Nonnull
+    public static MerkleTree of(@Nonnull BlockBody body) {
+        Transaction[] transactions = body.getTransactions();
+        Contract[] contracts = body.getContracts();
+        byte[][] leaves = new byte[transactions.length + contracts.length][];
+        for(int i = 0; i < transactions.length; i++) {
+            leaves[i] = hashLeaf(TRANSACTION_LEAF, transactions[i].getTransactionId());
+        }
+        for(int i = 0; i < contracts.length; i++) {
+            leaves[transactions.length + i] = hashLeaf(CONTRACT_LEAF, contracts[i].getContractId());
+        }
+
+        List<byte[][]> levels = new ArrayList<>();
+        levels.add(leaves);
+        byte[][] level = leaves;
+        while(level.length > 1) {
+            byte[][] parent = new byte[(level.length + 1) / 2][];
+            for(int i = 0; i < parent.length; i++) {
+                int left = i * 2;
+                parent[i] = left + 1 < level.length
+                        ? hashNode(level[left], level[left + 1])
+                        : level[left];
+            }
+            levels.add(parent);
+            level = parent;
+        }
+        return new MerkleTree(levels, transactions.length);
+    }
+
+    @Nonnull
+    public byte[] getRoot() {
+        byte[][] top = levels.get(levels.size() - 1);
+        return top.length == 0 ? EMPTY_ROOT.clone() : top[0].clone();
+    }
+
+    public int getLeafCount() {
+        return levels.get(0).length;
+    }
+
+    //Proof for the transaction at transactionIndex of the body
+    @Nonnull
+    public MerkleProof proveTransaction(int transactionIndex) {
+        Objects.checkIndex(transactionIndex, transactionCount);
+        return prove(transactionIndex);
+    }
+
+    //Proof for the contract at contractIndex of the body
+    @Nonnull
+    public MerkleProof proveContract(int contractIndex) {
+        Objects.checkIndex(contractIndex, getLeafCount() - transactionCount);
+        return prove(transactionCount + contractIndex);
+    }
+
+    @Nonnull
+    private MerkleProof prove(int leafIndex) {
+        List<byte[]> siblings = new ArrayList<>();
+        int index = leafIndex;
+        for(int i = 0; i < levels.size() - 1; i++) {
+            byte[][] level = levels.get(i);
+            int sibling = index ^ 1;
+            if(sibling < level.length) {
+                siblings.add(level[sibling]);
+            }
+            index >>>= 1;
+        }
+        return new MerkleProof(leafIndex, getLeafCount(), siblings.toArray(new byte[0][]));
+    }
+
+    @Nonnull
+    static byte[] hashLeaf(byte kind, @Nonnull byte[] id) {
+        return Hashing.sha256().newHasher()
+                .putByte(kind)
+                .putBytes(id)
+                .hash().asBytes();
+    }
+
+    @Nonnull
+    static byte[] hashNode(@Nonnull byte[] left, @Nonnull byte[] right) {
+        return Hashing.sha256().newHasher()
+                .putByte(NODE)
+                .putBytes(left)
+                .putBytes(right)
+                .hash().asBytes();
+    }
+}
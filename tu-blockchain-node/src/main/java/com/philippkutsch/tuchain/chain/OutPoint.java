@@ -0,0 +1,63 @@
+package com.philippkutsch.tuchain.chain;
+
+import com.philippkutsch.tuchain.chain.utils.ByteArrayKey;
+import com.philippkutsch.tuchain.chain.utils.DataIO;
+
+import javax.annotation.Nonnull;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Reference to a single transaction output (txId, vOut)
+ */
+public class OutPoint {
+    private final ByteArrayKey txId;
+    private final int vOut;
+
+    public OutPoint(@Nonnull byte[] txId, int vOut) {
+        this(new ByteArrayKey(txId), vOut);
+    }
+
+    public OutPoint(@Nonnull ByteArrayKey txId, int vOut) {
+        this.txId = txId;
+        this.vOut = vOut;
+    }
+
+    @Nonnull
+    public byte[] getTxId() {
+        return txId.getBytes();
+    }
+
+    public int getvOut() {
+        return vOut;
+    }
+
+    public void writeTo(@Nonnull DataOutput out) throws IOException {
+        DataIO.writeBytes(out, txId.getBytes());
+        out.writeInt(vOut);
+    }
+
+    @Nonnull
+    public static OutPoint readFrom(@Nonnull DataInput in) throws IOException {
+        return new OutPoint(DataIO.readBytes(in), in.readInt());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        OutPoint outPoint = (OutPoint) o;
+        return vOut == outPoint.vOut && txId.equals(outPoint.txId);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * txId.hashCode() + vOut;
+    }
+
+    @Override
+    public String toString() {
+        return txId + " [" + vOut + "]";
+    }
+}
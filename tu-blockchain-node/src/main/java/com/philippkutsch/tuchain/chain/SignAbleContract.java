@@ -1,6 +1,9 @@
 package com.philippkutsch.tuchain.chain;
 
+import com.philippkutsch.tuchain.chain.utils.ChainUtils;
+
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -14,6 +17,9 @@ public class SignAbleContract {
     protected final String title;
     protected final String description;
 
+    //Consensus encoding version, null for legacy JSON encoded contracts
+    protected final Integer version;
+
     public SignAbleContract(
             long timestamp,
             long deadline,
@@ -21,12 +27,24 @@ public class SignAbleContract {
             @Nonnull byte[] ownerPubKey,
             @Nonnull String title,
             @Nonnull String description) {
+        this(timestamp, deadline, goal, ownerPubKey, title, description, null);
+    }
+
+    public SignAbleContract(
+            long timestamp,
+            long deadline,
+            int goal,
+            @Nonnull byte[] ownerPubKey,
+            @Nonnull String title,
+            @Nonnull String description,
+            @Nullable Integer version) {
         this.timestamp = timestamp;
         this.deadline = deadline;
         this.goal = goal;
         this.ownerPubKey = ownerPubKey;
         this.title = title;
         this.description = description;
+        this.version = version;
     }
 
     @Nonnull
@@ -58,17 +76,30 @@ public class SignAbleContract {
         return description;
     }
 
+    @Nullable
+    public Integer getVersion() {
+        return version;
+    }
+
+    //Bytes covered by the owner signature
+    @Nonnull
+    public byte[] toSignBytes() {
+        return version == null
+                ? ChainUtils.encodeToBytes(this)
+                : CanonicalEncoding.encodeSignAble(this);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         SignAbleContract that = (SignAbleContract) o;
-        return getTimestamp() == that.getTimestamp() && getDeadline() == that.getDeadline() && getGoal() == that.getGoal() && Arrays.equals(getOwnerPubKey(), that.getOwnerPubKey()) && getTitle().equals(that.getTitle()) && getDescription().equals(that.getDescription());
+        return getTimestamp() == that.getTimestamp() && getDeadline() == that.getDeadline() && getGoal() == that.getGoal() && Arrays.equals(getOwnerPubKey(), that.getOwnerPubKey()) && getTitle().equals(that.getTitle()) && getDescription().equals(that.getDescription()) && Objects.equals(getVersion(), that.getVersion());
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(getTimestamp(), getDeadline(), getGoal(), getTitle(), getDescription());
+        int result = Objects.hash(getTimestamp(), getDeadline(), getGoal(), getTitle(), getDescription(), getVersion());
         result = 31 * result + Arrays.hashCode(getOwnerPubKey());
         return result;
     }
@@ -1,6 +1,9 @@
 package com.philippkutsch.tuchain.chain;
 
+import com.philippkutsch.tuchain.chain.utils.ChainUtils;
+
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 public class SignAbleTransaction {
     protected final long timestamp;
@@ -9,13 +12,25 @@ public class SignAbleTransaction {
 
     private final Transaction.Output[] outputs;
 
+    //Consensus encoding version, null for legacy JSON encoded transactions
+    private final Integer version;
+
     public SignAbleTransaction(
             long timestamp,
             @Nonnull Transaction.Input[] inputs,
             @Nonnull Transaction.Output[] outputs) {
+        this(timestamp, inputs, outputs, null);
+    }
+
+    public SignAbleTransaction(
+            long timestamp,
+            @Nonnull Transaction.Input[] inputs,
+            @Nonnull Transaction.Output[] outputs,
+            @Nullable Integer version) {
         this.timestamp = timestamp;
         this.inputs = inputs;
         this.outputs = outputs;
+        this.version = version;
     }
 
     public long getTimestamp() {
@@ -31,4 +46,17 @@ public class SignAbleTransaction {
     public Transaction.Output[] getOutputs() {
         return outputs;
     }
+
+    @Nullable
+    public Integer getVersion() {
+        return version;
+    }
+
+    //Bytes covered by the input signatures
+    @Nonnull
+    public byte[] toSignBytes() {
+        return version == null
+                ? ChainUtils.encodeToBytes(this)
+                : CanonicalEncoding.encode(this);
+    }
 }
@@ -4,6 +4,7 @@ import com.google.common.hash.Hashing;
 import com.philippkutsch.tuchain.chain.utils.ChainUtils;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -17,6 +18,9 @@ public class Transaction {
 
     private final Output[] outputs;
 
+    //Consensus encoding version, null for legacy JSON encoded transactions
+    private final Integer version;
+
     @Nonnull
     public static Transaction buildCoinbaseTransaction(
             long timestamp,
@@ -31,15 +35,23 @@ public class Transaction {
         Transaction.Output output = new Transaction.Output(blockReward, targetPublicKey);
         Transaction.SignedInput[] inputs = { signedInput };
         Transaction.Output[] outputs = { output };
-        return new Transaction(timestamp, inputs, outputs);
+        return new Transaction(timestamp, inputs, outputs, CanonicalEncoding.CURRENT_VERSION);
     }
 
     public Transaction(long timestamp,
                        @Nonnull SignedInput[] inputs,
                        @Nonnull Output[] outputs) {
+        this(timestamp, inputs, outputs, null);
+    }
+
+    public Transaction(long timestamp,
+                       @Nonnull SignedInput[] inputs,
+                       @Nonnull Output[] outputs,
+                       @Nullable Integer version) {
         this.timestamp = timestamp;
         this.inputs = inputs;
         this.outputs = outputs;
+        this.version = version;
     }
 
     public long getTimestamp() {
@@ -56,18 +68,25 @@ public class Transaction {
         return outputs;
     }
 
+    @Nullable
+    public Integer getVersion() {
+        return version;
+    }
+
     @Nonnull
     public SignAbleTransaction toSignAbleTransaction() {
         Input[] unSignedInputs = new Input[inputs.length];
         for(int i = 0; i < inputs.length; i++) {
             unSignedInputs[i] = inputs[i].toInput();
         }
-        return new SignAbleTransaction(timestamp, unSignedInputs, outputs);
+        return new SignAbleTransaction(timestamp, unSignedInputs, outputs, version);
     }
 
     @Nonnull
     public byte[] getTransactionId() {
-        byte[] transactionBytes = ChainUtils.encodeToBytes(this);
+        byte[] transactionBytes = version == null
+                ? ChainUtils.encodeToBytes(this)
+                : CanonicalEncoding.encode(this);
         return Hashing.sha256().hashBytes(transactionBytes).asBytes();
     }
 
@@ -88,12 +107,12 @@ public class Transaction {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Transaction that = (Transaction) o;
-        return getTimestamp() == that.getTimestamp() && Arrays.equals(getInputs(), that.getInputs()) && Arrays.equals(getOutputs(), that.getOutputs());
+        return getTimestamp() == that.getTimestamp() && Arrays.equals(getInputs(), that.getInputs()) && Arrays.equals(getOutputs(), that.getOutputs()) && Objects.equals(getVersion(), that.getVersion());
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(getTimestamp());
+        int result = Objects.hash(getTimestamp(), getVersion());
         result = 31 * result + Arrays.hashCode(getInputs());
         result = 31 * result + Arrays.hashCode(getOutputs());
         return result;
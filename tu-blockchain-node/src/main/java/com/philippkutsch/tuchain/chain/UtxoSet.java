@@ -0,0 +1,144 @@
+package com.philippkutsch.tuchain.chain;
+
+import com.philippkutsch.tuchain.chain.utils.ByteArrayKey;
+import com.philippkutsch.tuchain.chain.utils.DataIO;
+
+import javax.annotation.Nonnull;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * UtxoSet
+ *
+ * Set of all unspent transaction outputs, keyed by (txId, vOut).
+ * Updated incrementally for every connected block: inputs remove the outputs
+ * they spend, outputs of the transaction are added.
+ * Answers isUnspent and findUTXO of tip snapshots.
+ */
+public class UtxoSet {
+    private final Map<OutPoint, Entry> unspent;
+
+    public UtxoSet() {
+        this.unspent = new ConcurrentHashMap<>();
+    }
+
+    //Build a new set from scratch by connecting all blocks
+    @Nonnull
+    public static UtxoSet rebuild(@Nonnull List<HashedBlock> blockList) {
+        UtxoSet utxoSet = new UtxoSet();
+        for(int blockIndex = 0; blockIndex < blockList.size(); blockIndex++) {
+            Transaction[] transactions = blockList.get(blockIndex).getData().getTransactions();
+            for(int i = 0; i < transactions.length; i++) {
+                utxoSet.connectTransaction(
+                        new ByteArrayKey(transactions[i].getTransactionId()),
+                        transactions[i],
+                        new ChainLocation(blockIndex, i));
+            }
+        }
+        return utxoSet;
+    }
+
+    //Returns the entries that were spent by the transaction
+    @Nonnull
+    public List<Entry> connectTransaction(
+            @Nonnull ByteArrayKey txId,
+            @Nonnull Transaction transaction,
+            @Nonnull ChainLocation location) {
+        //Spend referenced outputs
+        List<Entry> spent = new ArrayList<>();
+        for(Transaction.Input input : transaction.getInputs()) {
+            Entry entry = unspent.remove(new OutPoint(input.getTxId(), input.getvOut()));
+            if(entry != null) {
+                spent.add(entry);
+            }
+        }
+
+        //Create new outputs
+        Transaction.Output[] outputs = transaction.getOutputs();
+        for(int vOut = 0; vOut < outputs.length; vOut++) {
+            unspent.put(new OutPoint(txId, vOut), new Entry(outputs[vOut], location));
+        }
+        return spent;
+    }
+
+    public boolean isUnspent(@Nonnull byte[] txId, int vOut) {
+        return isUnspent(new OutPoint(txId, vOut));
+    }
+
+    public boolean isUnspent(@Nonnull OutPoint outPoint) {
+        return unspent.containsKey(outPoint);
+    }
+
+    public int size() {
+        return unspent.size();
+    }
+
+    //Compare with another set, returns a description for every mismatch
+    @Nonnull
+    public List<String> diff(@Nonnull UtxoSet other) {
+        List<String> differences = new ArrayList<>();
+        for(Map.Entry<OutPoint, Entry> utxo : unspent.entrySet()) {
+            Entry otherEntry = other.unspent.get(utxo.getKey());
+            if(otherEntry == null) {
+                differences.add("Unexpected " + utxo.getKey());
+            }
+            else if(!otherEntry.getOutput().equals(utxo.getValue().getOutput())) {
+                differences.add("Output mismatch " + utxo.getKey());
+            }
+        }
+        for(OutPoint outPoint : other.unspent.keySet()) {
+            if(!unspent.containsKey(outPoint)) {
+                differences.add("Missing " + outPoint);
+            }
+        }
+        return differences;
+    }
+
+    public void writeTo(@Nonnull DataOutput out) throws IOException {
+        out.writeInt(unspent.size());
+        for(Map.Entry<OutPoint, Entry> utxo : unspent.entrySet()) {
+            utxo.getKey().writeTo(out);
+            out.writeInt(utxo.getValue().getOutput().getAmount());
+            DataIO.writeBytes(out, utxo.getValue().getOutput().getPubKey());
+            utxo.getValue().getLocation().writeTo(out);
+        }
+    }
+
+    @Nonnull
+    public static UtxoSet readFrom(@Nonnull DataInput in) throws IOException {
+        UtxoSet utxoSet = new UtxoSet();
+        int count = DataIO.readCount(in);
+        for(int i = 0; i < count; i++) {
+            OutPoint outPoint = OutPoint.readFrom(in);
+            Transaction.Output output = new Transaction.Output(in.readInt(), DataIO.readBytes(in));
+            utxoSet.unspent.put(outPoint, new Entry(output, ChainLocation.readFrom(in)));
+        }
+        return utxoSet;
+    }
+
+    public static class Entry {
+        private final Transaction.Output output;
+        private final ChainLocation location;
+
+        public Entry(@Nonnull Transaction.Output output,
+                     @Nonnull ChainLocation location) {
+            this.output = output;
+            this.location = location;
+        }
+
+        @Nonnull
+        public Transaction.Output getOutput() {
+            return output;
+        }
+
+        @Nonnull
+        public ChainLocation getLocation() {
+            return location;
+        }
+    }
+}
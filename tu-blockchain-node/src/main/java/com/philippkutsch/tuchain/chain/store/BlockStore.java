@@ -0,0 +1,390 @@
+package com.philippkutsch.tuchain.chain.store;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.philippkutsch.tuchain.chain.BlockBody;
+import com.philippkutsch.tuchain.chain.HashedBlock;
+import com.philippkutsch.tuchain.chain.utils.ChainUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * BlockStore
+ *
+ * Append only block storage on disk.
+ * Blocks are written as records [length][crc32][payload] into segment files blkNNNNN.dat.
+ * A new segment is started once the current one would exceed the segment size.
+ * index.dat holds one fixed size entry [segment][offset][length] per block, so every block
+ * can be read without scanning the segments.
+ *
+ * Only the index is kept on heap. Records are read through memory mapped segments and
+ * recently used bodies are kept in an LRU cache.
+ *
+ * Records are written before their index entry. On open, index entries pointing to missing
+ * or corrupt records are dropped, complete records behind the last index entry are re-indexed
+ * and a torn final record is truncated.
+ */
+public class BlockStore implements Closeable {
+    private static final Logger logger
+            = LoggerFactory.getLogger(BlockStore.class);
+
+    public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+    public static final int DEFAULT_BODY_CACHE_SIZE = 256;
+
+    private static final String INDEX_FILE = "index.dat";
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int INDEX_ENTRY_SIZE = 16;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final List<Location> locations;
+    private final FileChannel indexChannel;
+    private final Map<Integer, FileChannel> readChannels;
+    private final Map<Integer, MappedByteBuffer> mappedSegments;
+    private final Cache<Integer, BlockBody> bodyCache;
+    private FileChannel segmentChannel;
+    private int segment;
+
+    private BlockStore(@Nonnull Path directory, long segmentSize, int bodyCacheSize) throws IOException {
+        if(segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segments larger than 2GB can not be mapped");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.locations = new ArrayList<>();
+        this.readChannels = new HashMap<>();
+        this.mappedSegments = new ConcurrentHashMap<>();
+        this.bodyCache = CacheBuilder.newBuilder()
+                .maximumSize(bodyCacheSize)
+                .build();
+
+        Files.createDirectories(directory);
+        this.indexChannel = FileChannel.open(directory.resolve(INDEX_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+        closeReadChannels();
+        this.segmentChannel = openSegment(segment);
+    }
+
+    @Nonnull
+    public static BlockStore open(@Nonnull Path directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_BODY_CACHE_SIZE);
+    }
+
+    @Nonnull
+    public static BlockStore open(@Nonnull Path directory, long segmentSize, int bodyCacheSize) throws IOException {
+        return new BlockStore(directory, segmentSize, bodyCacheSize);
+    }
+
+    //Number of stored blocks
+    public synchronized int size() {
+        return locations.size();
+    }
+
+    public synchronized void append(@Nonnull HashedBlock block) throws IOException {
+        byte[] payload = ChainUtils.encodeToBytes(block);
+
+        //Start new segment if the record does not fit
+        long offset = segmentChannel.size();
+        if(offset > 0 && offset + RECORD_HEADER_SIZE + payload.length > segmentSize) {
+            segmentChannel.force(false);
+            segmentChannel.close();
+            segment++;
+            segmentChannel = openSegment(segment);
+            offset = 0;
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        record.putInt(payload.length);
+        record.putInt(checksum(payload));
+        record.put(payload);
+        record.flip();
+        writeFully(segmentChannel, record, offset);
+
+        Location location = new Location(segment, offset, payload.length);
+        writeIndexEntry(locations.size(), location);
+        locations.add(location);
+    }
+
+    @Nonnull
+    public HashedBlock read(int blockIndex) throws IOException {
+        Location location;
+        synchronized (this) {
+            location = locations.get(blockIndex);
+        }
+        return ChainUtils.decodeFromBytes(readMapped(location), HashedBlock.class);
+    }
+
+    //Body of a stored block, recently used bodies are served from the cache
+    @Nonnull
+    public BlockBody readBody(int blockIndex) throws IOException {
+        BlockBody body = bodyCache.getIfPresent(blockIndex);
+        if(body == null) {
+            body = read(blockIndex).getData();
+            bodyCache.put(blockIndex, body);
+        }
+        return body;
+    }
+
+    @Nonnull
+    public List<HashedBlock> readAll() throws IOException {
+        int size = size();
+        List<HashedBlock> blockList = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+            blockList.add(read(i));
+        }
+        return blockList;
+    }
+
+    //Flush all written blocks to the storage device
+    public synchronized void sync() throws IOException {
+        segmentChannel.force(false);
+        indexChannel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        mappedSegments.clear();
+        bodyCache.invalidateAll();
+        closeReadChannels();
+        segmentChannel.close();
+        indexChannel.close();
+    }
+
+    private void recover() throws IOException {
+        //Load index, ignore a partially written entry
+        long entryCount = indexChannel.size() / INDEX_ENTRY_SIZE;
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+        for(long i = 0; i < entryCount; i++) {
+            entry.clear();
+            readFully(indexChannel, entry, i * INDEX_ENTRY_SIZE);
+            entry.flip();
+            locations.add(new Location(entry.getInt(), entry.getLong(), entry.getInt()));
+        }
+
+        //Drop index entries without a valid record
+        while(!locations.isEmpty() && readRecord(locations.get(locations.size() - 1)) == null) {
+            logger.warn("Dropping index entry of missing block " + (locations.size() - 1));
+            locations.remove(locations.size() - 1);
+        }
+        int indexedCount = locations.size();
+
+        //Re-index complete records written after the last index entry
+        Location last = locations.isEmpty() ? null : locations.get(locations.size() - 1);
+        segment = last == null ? 0 : last.segment;
+        long position = last == null ? 0 : last.end();
+        while(Files.exists(segmentPath(segment))) {
+            try(FileChannel channel = FileChannel.open(segmentPath(segment),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                position = scanSegment(channel, position);
+                if(position < channel.size()) {
+                    logger.warn("Truncating torn record in segment " + segment + " at " + position);
+                    channel.truncate(position);
+                    channel.force(false);
+                    deleteSegmentsAfter(segment);
+                    break;
+                }
+            }
+            if(!Files.exists(segmentPath(segment + 1))) {
+                break;
+            }
+            segment++;
+            position = 0;
+        }
+
+        //Rewrite index tail
+        indexChannel.truncate((long) indexedCount * INDEX_ENTRY_SIZE);
+        for(int i = indexedCount; i < locations.size(); i++) {
+            writeIndexEntry(i, locations.get(i));
+        }
+        indexChannel.force(false);
+    }
+
+    //Index all complete records from position on, returns the end of the last valid record
+    private long scanSegment(@Nonnull FileChannel channel, long position) throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        while(position + RECORD_HEADER_SIZE <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            header.flip();
+            int length = header.getInt();
+            int crc = header.getInt();
+            if(length < 0 || position + RECORD_HEADER_SIZE + length > size) {
+                break;
+            }
+
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(channel, payload, position + RECORD_HEADER_SIZE);
+            if(checksum(payload.array()) != crc) {
+                break;
+            }
+
+            locations.add(new Location(segment, position, length));
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    private void closeReadChannels() throws IOException {
+        for(FileChannel channel : readChannels.values()) {
+            channel.close();
+        }
+        readChannels.clear();
+    }
+
+    private void deleteSegmentsAfter(int lastSegment) throws IOException {
+        for(int i = lastSegment + 1; Files.exists(segmentPath(i)); i++) {
+            logger.warn("Deleting segment " + i + " after torn record");
+            Files.delete(segmentPath(i));
+        }
+    }
+
+    //Read a record through the memory mapped segment
+    @Nonnull
+    private byte[] readMapped(@Nonnull Location location) throws IOException {
+        MappedByteBuffer mapped = mappedSegments.get(location.segment);
+        if(mapped == null || mapped.capacity() < location.end()) {
+            synchronized (this) {
+                mapped = mappedSegments.get(location.segment);
+                if(mapped == null || mapped.capacity() < location.end()) {
+                    //Map the whole segment, the active segment is remapped once it grew
+                    FileChannel channel = channelFor(location.segment);
+                    if(channel == null) {
+                        throw new IOException("Missing segment " + location.segment);
+                    }
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    mappedSegments.put(location.segment, mapped);
+                }
+            }
+        }
+
+        int offset = (int) location.offset;
+        if(mapped.getInt(offset) != location.length) {
+            throw new IOException("Corrupt record in segment " + location.segment + " at " + offset);
+        }
+        byte[] payload = new byte[location.length];
+        mapped.get(offset + RECORD_HEADER_SIZE, payload);
+        if(checksum(payload) != mapped.getInt(offset + 4)) {
+            throw new IOException("Checksum mismatch in segment " + location.segment + " at " + offset);
+        }
+        return payload;
+    }
+
+    //Returns null if the record is missing or corrupt
+    @Nullable
+    private byte[] readRecord(@Nonnull Location location) throws IOException {
+        FileChannel channel = channelFor(location.segment);
+        if(channel == null || location.end() > channel.size()) {
+            return null;
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + location.length);
+        readFully(channel, record, location.offset);
+        record.flip();
+        if(record.getInt() != location.length) {
+            return null;
+        }
+        int crc = record.getInt();
+        byte[] payload = new byte[location.length];
+        record.get(payload);
+        return checksum(payload) == crc ? payload : null;
+    }
+
+    //Channel of the segment for reading, null if the segment does not exist
+    @Nullable
+    private FileChannel channelFor(int segment) throws IOException {
+        if(segment == this.segment && segmentChannel != null) {
+            return segmentChannel;
+        }
+        FileChannel channel = readChannels.get(segment);
+        if(channel == null) {
+            Path path = segmentPath(segment);
+            if(!Files.exists(path)) {
+                return null;
+            }
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            readChannels.put(segment, channel);
+        }
+        return channel;
+    }
+
+    private void writeIndexEntry(int blockIndex, @Nonnull Location location) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+        entry.putInt(location.segment);
+        entry.putLong(location.offset);
+        entry.putInt(location.length);
+        entry.flip();
+        writeFully(indexChannel, entry, (long) blockIndex * INDEX_ENTRY_SIZE);
+    }
+
+    @Nonnull
+    private FileChannel openSegment(int segment) throws IOException {
+        return FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    @Nonnull
+    private Path segmentPath(int segment) {
+        return directory.resolve(String.format("blk%05d.dat", segment));
+    }
+
+    private static int checksum(@Nonnull byte[] data) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(data);
+        return (int) crc32.getValue();
+    }
+
+    private static void readFully(@Nonnull FileChannel channel,
+                                  @Nonnull ByteBuffer buffer,
+                                  long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if(read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(@Nonnull FileChannel channel,
+                                   @Nonnull ByteBuffer buffer,
+                                   long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static class Location {
+        private final int segment;
+        private final long offset;
+        private final int length;
+
+        private Location(int segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        private long end() {
+            return offset + RECORD_HEADER_SIZE + length;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.philippkutsch.tuchain.chain.store;
+
+import com.philippkutsch.tuchain.chain.utils.DataIO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * CheckpointStore
+ *
+ * Binary snapshots of the chain index, block headers and tip state, written every interval blocks.
+ * File layout: [magic][version][height][tip hash][state][crc32 of everything before].
+ * Files are written to a temporary file and renamed, only the newest ones are kept.
+ * On restart the newest checkpoint matching the stored chain is loaded and only the
+ * blocks after it have to be replayed.
+ */
+public class CheckpointStore {
+    private static final Logger logger
+            = LoggerFactory.getLogger(CheckpointStore.class);
+
+    public static final int DEFAULT_INTERVAL = 1000;
+
+    private static final int MAGIC = 0x54554350;
+    private static final int VERSION = 6;
+    private static final int KEEP_CHECKPOINTS = 2;
+    private static final String PREFIX = "checkpoint-";
+    private static final String SUFFIX = ".bin";
+
+    private final Path directory;
+    private final int interval;
+
+    public CheckpointStore(@Nonnull Path directory, int interval) throws IOException {
+        this.directory = directory;
+        this.interval = interval;
+        Files.createDirectories(directory);
+    }
+
+    //Interval 0 disables checkpoints
+    public boolean isDue(int height) {
+        return interval > 0 && height > 0 && height % interval == 0;
+    }
+
+    public void write(int height,
+                      @Nonnull byte[] tipHash,
+                      @Nonnull StateWriter stateWriter) throws IOException {
+        Path target = checkpointPath(height);
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        try(FileOutputStream fileStream = new FileOutputStream(temporary.toFile())) {
+            BufferedOutputStream bufferedStream = new BufferedOutputStream(fileStream);
+            CheckedOutputStream checkedStream = new CheckedOutputStream(bufferedStream, new CRC32());
+            DataOutputStream out = new DataOutputStream(checkedStream);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(height);
+            DataIO.writeBytes(out, tipHash);
+            stateWriter.write(out);
+            out.flush();
+
+            new DataOutputStream(bufferedStream).writeLong(checkedStream.getChecksum().getValue());
+            bufferedStream.flush();
+            fileStream.getChannel().force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        //Remove old checkpoints
+        List<Path> checkpoints = listCheckpoints();
+        for(int i = KEEP_CHECKPOINTS; i < checkpoints.size(); i++) {
+            Files.deleteIfExists(checkpoints.get(i));
+        }
+    }
+
+    //Read the newest checkpoint accepted by the validator. Returns null if there is none
+    @Nullable
+    public <T> T readLatest(
+            @Nonnull Validator validator,
+            @Nonnull StateReader<T> stateReader) throws IOException {
+        for(Path checkpoint : listCheckpoints()) {
+            try(BufferedInputStream bufferedStream = new BufferedInputStream(Files.newInputStream(checkpoint))) {
+                CheckedInputStream checkedStream = new CheckedInputStream(bufferedStream, new CRC32());
+                DataInputStream in = new DataInputStream(checkedStream);
+                if(in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    logger.warn("Ignoring checkpoint " + checkpoint.getFileName() + " with unknown format");
+                    continue;
+                }
+                int height = in.readInt();
+                byte[] tipHash = DataIO.readBytes(in);
+                if(!validator.isValid(height, tipHash)) {
+                    logger.warn("Ignoring checkpoint " + checkpoint.getFileName() + " not matching the chain");
+                    continue;
+                }
+
+                T state = stateReader.read(in);
+                long checksum = checkedStream.getChecksum().getValue();
+                if(new DataInputStream(bufferedStream).readLong() != checksum) {
+                    logger.warn("Ignoring checkpoint " + checkpoint.getFileName() + " with checksum mismatch");
+                    continue;
+                }
+                return state;
+            }
+            catch (IOException | RuntimeException e) {
+                logger.warn("Ignoring unreadable checkpoint " + checkpoint.getFileName(), e);
+            }
+        }
+        return null;
+    }
+
+    //Checkpoint files, newest first
+    @Nonnull
+    private List<Path> listCheckpoints() throws IOException {
+        List<Path> checkpoints = new ArrayList<>();
+        try(Stream<Path> files = Files.list(directory)) {
+            files.filter((path) -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).forEach(checkpoints::add);
+        }
+        checkpoints.sort(Comparator.comparing((Path path) -> path.getFileName().toString()).reversed());
+        return checkpoints;
+    }
+
+    @Nonnull
+    private Path checkpointPath(int height) {
+        //Zero padded, so name order is height order
+        return directory.resolve(String.format(PREFIX + "%010d" + SUFFIX, height));
+    }
+
+    public interface StateWriter {
+        void write(@Nonnull DataOutput out) throws IOException;
+    }
+
+    public interface StateReader<T> {
+        @Nonnull
+        T read(@Nonnull DataInput in) throws IOException;
+    }
+
+    public interface Validator {
+        boolean isValid(int height, @Nonnull byte[] tipHash) throws IOException;
+    }
+}
@@ -2,6 +2,7 @@ package com.philippkutsch.tuchain.chain.utils;
 
 import com.google.gson.TypeAdapter;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
@@ -15,10 +16,19 @@ import java.util.Base64;
 public class Base64TypeAdapter extends TypeAdapter<byte[]> {
     @Override
     public void write(JsonWriter out, byte[] value) throws IOException {
+        //Optional fields (e.g. merkleRoot) are omitted
+        if(value == null) {
+            out.nullValue();
+            return;
+        }
         out.value(Base64.getEncoder().withoutPadding().encodeToString(value));
     }
     @Override
     public byte[] read(JsonReader in) throws IOException {
+        if(in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
         return Base64.getDecoder().decode(in.nextString());
     }
 }
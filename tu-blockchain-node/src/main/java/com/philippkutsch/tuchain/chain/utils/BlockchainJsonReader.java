@@ -0,0 +1,77 @@
+package com.philippkutsch.tuchain.chain.utils;
+
+import com.google.common.io.CountingInputStream;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.philippkutsch.tuchain.chain.HashedBlock;
+import com.philippkutsch.tuchain.chain.LoadProgress;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * BlockchainJsonReader
+ *
+ * Streams the blocks of a {"blockList":[...]} document one by one,
+ * so only a single decoded block has to be held at a time.
+ */
+public final class BlockchainJsonReader {
+    static final String BLOCK_LIST = "blockList";
+
+    private BlockchainJsonReader() {
+
+    }
+
+    //Stream all blocks of the blockchain object at the current reader position, returns the block count
+    public static int readBlocks(
+            @Nonnull JsonReader in,
+            @Nonnull TypeAdapter<HashedBlock> blockAdapter,
+            @Nonnull BlockConsumer consumer) throws IOException {
+        int count = 0;
+        in.beginObject();
+        while(in.hasNext()) {
+            if(BLOCK_LIST.equals(in.nextName())) {
+                in.beginArray();
+                while(in.hasNext()) {
+                    consumer.accept(blockAdapter.read(in));
+                    count++;
+                }
+                in.endArray();
+            }
+            else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return count;
+    }
+
+    //Stream all blocks of a blockchain file. Progress is reported in bytes read
+    public static int readFile(
+            @Nonnull Path file,
+            @Nonnull BlockConsumer consumer,
+            @Nullable LoadProgress progress) throws IOException {
+        long totalBytes = Files.size(file);
+        TypeAdapter<HashedBlock> blockAdapter = ChainUtils.GSON.getAdapter(HashedBlock.class);
+        try(CountingInputStream countingStream = new CountingInputStream(
+                new BufferedInputStream(Files.newInputStream(file)));
+            JsonReader in = new JsonReader(new InputStreamReader(countingStream, StandardCharsets.UTF_8))) {
+            return readBlocks(in, blockAdapter, (block) -> {
+                consumer.accept(block);
+                if(progress != null) {
+                    progress.onProgress(countingStream.getCount(), totalBytes);
+                }
+            });
+        }
+    }
+
+    public interface BlockConsumer {
+        void accept(@Nonnull HashedBlock block) throws IOException;
+    }
+}
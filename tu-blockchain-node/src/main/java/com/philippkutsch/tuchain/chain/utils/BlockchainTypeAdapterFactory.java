@@ -0,0 +1,58 @@
+package com.philippkutsch.tuchain.chain.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.philippkutsch.tuchain.chain.Blockchain;
+import com.philippkutsch.tuchain.chain.HashedBlock;
+
+import java.io.IOException;
+
+/**
+ * BlockchainTypeAdapterFactory
+ *
+ * Streams a Blockchain as {"blockList":[...]}, the format of the former blockList field.
+ * Blocks are read and written one by one and indexed while reading, the chain is never copied.
+ */
+public class BlockchainTypeAdapterFactory implements TypeAdapterFactory {
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if(!Blockchain.class.isAssignableFrom(type.getRawType())) {
+            return null;
+        }
+        TypeAdapter<HashedBlock> blockAdapter = gson.getAdapter(HashedBlock.class);
+        return (TypeAdapter<T>) new TypeAdapter<Blockchain>() {
+            @Override
+            public void write(JsonWriter out, Blockchain blockchain) throws IOException {
+                if(blockchain == null) {
+                    out.nullValue();
+                    return;
+                }
+                out.beginObject();
+                out.name(BlockchainJsonReader.BLOCK_LIST);
+                out.beginArray();
+                for(HashedBlock block : blockchain.getBlockchain()) {
+                    blockAdapter.write(out, block);
+                }
+                out.endArray();
+                out.endObject();
+            }
+
+            @Override
+            public Blockchain read(JsonReader in) throws IOException {
+                if(in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    return null;
+                }
+                Blockchain blockchain = new Blockchain();
+                BlockchainJsonReader.readBlocks(in, blockAdapter, blockchain::addBlock);
+                return blockchain;
+            }
+        };
+    }
+}
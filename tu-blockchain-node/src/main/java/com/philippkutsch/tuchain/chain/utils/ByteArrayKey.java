@@ -0,0 +1,43 @@
+package com.philippkutsch.tuchain.chain.utils;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * ByteArrayKey
+ *
+ * Wraps a byte array (hash, public key, ...) so it can be used as a map key.
+ * The wrapped array must not be modified afterwards.
+ */
+public final class ByteArrayKey {
+    private final byte[] bytes;
+    private final int hashCode;
+
+    public ByteArrayKey(@Nonnull byte[] bytes) {
+        this.bytes = bytes;
+        this.hashCode = Arrays.hashCode(bytes);
+    }
+
+    @Nonnull
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ByteArrayKey that = (ByteArrayKey) o;
+        return hashCode == that.hashCode && Arrays.equals(bytes, that.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return ChainUtils.bytesToBase64(bytes);
+    }
+}
@@ -0,0 +1,45 @@
+package com.philippkutsch.tuchain.chain.utils;
+
+import javax.annotation.Nonnull;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * DataIO
+ *
+ * Length prefixed byte array helpers for the binary formats.
+ */
+public final class DataIO {
+    //Upper bound for a single length prefixed field, protects against corrupt input
+    public static final int MAX_BYTES_LENGTH = 16 * 1024 * 1024;
+
+    private DataIO() {
+
+    }
+
+    public static void writeBytes(@Nonnull DataOutput out, @Nonnull byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @Nonnull
+    public static byte[] readBytes(@Nonnull DataInput in) throws IOException {
+        int length = in.readInt();
+        if(length < 0 || length > MAX_BYTES_LENGTH) {
+            throw new IOException("Invalid length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    //Count prefix of a collection, validated against corrupt input
+    public static int readCount(@Nonnull DataInput in) throws IOException {
+        int count = in.readInt();
+        if(count < 0) {
+            throw new IOException("Invalid count " + count);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,152 @@
+package com.philippkutsch.tuchain.chain.utils;
+
+import javax.annotation.Nonnull;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * PersistentVector
+ *
+ * Immutable, append only vector. Elements are stored in a 32-way trie of chunks,
+ * so append only copies the path to the last chunk and all previous versions
+ * stay valid and share their chunks with newer versions.
+ */
+public final class PersistentVector<T> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final PersistentVector<?> EMPTY =
+            new PersistentVector<>(0, BITS, new Object[WIDTH], new Object[0]);
+
+    private final int size;
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+
+    private PersistentVector(int size, int shift, @Nonnull Object[] root, @Nonnull Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nonnull
+    public static <T> PersistentVector<T> empty() {
+        return (PersistentVector<T>) EMPTY;
+    }
+
+    @Nonnull
+    public static <T> PersistentVector<T> of(@Nonnull List<T> values) {
+        PersistentVector<T> vector = empty();
+        for(T value : values) {
+            vector = vector.append(value);
+        }
+        return vector;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        Objects.checkIndex(index, size);
+        return (T) chunkFor(index)[index & MASK];
+    }
+
+    @Nonnull
+    public PersistentVector<T> append(T value) {
+        //Room left in tail
+        if(size - tailOffset() < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = value;
+            return new PersistentVector<>(size + 1, shift, root, newTail);
+        }
+
+        //Tail is full, push it into the trie
+        Object[] newRoot;
+        int newShift = shift;
+        if((size >>> BITS) > (1 << shift)) {
+            //Root overflow
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        }
+        else {
+            newRoot = pushTail(shift, root, tail);
+        }
+        return new PersistentVector<>(size + 1, newShift, newRoot, new Object[]{value});
+    }
+
+    //Read only list view of the first length elements
+    @Nonnull
+    public List<T> asList(int length) {
+        Objects.checkFromIndexSize(0, length, size);
+        return new AbstractList<>() {
+            @Override
+            public T get(int index) {
+                Objects.checkIndex(index, length);
+                return PersistentVector.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return length;
+            }
+        };
+    }
+
+    @Nonnull
+    public List<T> asList() {
+        return asList(size);
+    }
+
+    private int tailOffset() {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    @Nonnull
+    private Object[] chunkFor(int index) {
+        if(index >= tailOffset()) {
+            return tail;
+        }
+        Object[] node = root;
+        for(int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    @Nonnull
+    private Object[] pushTail(int level, @Nonnull Object[] parent, @Nonnull Object[] tailNode) {
+        int subIndex = ((size - 1) >>> level) & MASK;
+        Object[] result = parent.clone();
+        Object[] nodeToInsert;
+        if(level == BITS) {
+            nodeToInsert = tailNode;
+        }
+        else {
+            Object[] child = (Object[]) parent[subIndex];
+            nodeToInsert = child != null
+                    ? pushTail(level - BITS, child, tailNode)
+                    : newPath(level - BITS, tailNode);
+        }
+        result[subIndex] = nodeToInsert;
+        return result;
+    }
+
+    @Nonnull
+    private static Object[] newPath(int level, @Nonnull Object[] node) {
+        if(level == 0) {
+            return node;
+        }
+        Object[] result = new Object[WIDTH];
+        result[0] = newPath(level - BITS, node);
+        return result;
+    }
+}
@@ -1,5 +1,9 @@
 package com.philippkutsch.tuchain.config;
 
+import com.philippkutsch.tuchain.chain.store.CheckpointStore;
+import com.philippkutsch.tuchain.modules.mining.HashEngines;
+import com.philippkutsch.tuchain.modules.mining.MiningEngines;
+
 import java.util.List;
 
 public class Config {
@@ -7,13 +11,29 @@ public class Config {
     private final int port;
     private final String walletFilePath;
     private final String blockchainFilePath;
+    private final String blockStorePath;
+    private final Integer checkpointInterval;
+    private final Integer miningThreads;
+    private final Integer templateRefreshMillis;
+    private final String miningEngine;
+    private final String hashEngine;
+    private final String miningWorkAddress;
+    private final Integer miningWorkPort;
     private final List<Peer> knownPeers;
 
-    public Config(String name, int port, String walletFilePath, String blockchainFilePath, List<Peer> knownPeers) {
+    public Config(String name, int port, String walletFilePath, String blockchainFilePath, String blockStorePath, Integer checkpointInterval, Integer miningThreads, Integer templateRefreshMillis, String miningEngine, String hashEngine, String miningWorkAddress, Integer miningWorkPort, List<Peer> knownPeers) {
         this.name = name;
         this.port = port;
         this.walletFilePath = walletFilePath;
         this.blockchainFilePath = blockchainFilePath;
+        this.blockStorePath = blockStorePath;
+        this.checkpointInterval = checkpointInterval;
+        this.miningThreads = miningThreads;
+        this.templateRefreshMillis = templateRefreshMillis;
+        this.miningEngine = miningEngine;
+        this.hashEngine = hashEngine;
+        this.miningWorkAddress = miningWorkAddress;
+        this.miningWorkPort = miningWorkPort;
         this.knownPeers = knownPeers;
     }
 
@@ -33,6 +53,46 @@ public class Config {
         return blockchainFilePath;
     }
 
+    //Block store directory, defaults to "blocks" for older config files
+    public String getBlockStorePath() {
+        return blockStorePath != null ? blockStorePath : "blocks";
+    }
+
+    //Blocks between two state checkpoints, 0 disables checkpoints
+    public int getCheckpointInterval() {
+        return checkpointInterval != null ? checkpointInterval : CheckpointStore.DEFAULT_INTERVAL;
+    }
+
+    //Nonce search threads, defaults to one per available core
+    public int getMiningThreads() {
+        return miningThreads != null ? miningThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    //Interval for adding queued transactions to the mined block, 0 disables it
+    public int getTemplateRefreshMillis() {
+        return templateRefreshMillis != null ? templateRefreshMillis : 1000;
+    }
+
+    //Mining engine provider name, "threads", "forkjoin" or "getwork"
+    public String getMiningEngine() {
+        return miningEngine != null ? miningEngine : MiningEngines.THREADS;
+    }
+
+    //Hashing engine of the miner, "scalar" or "vector"
+    public String getHashEngine() {
+        return hashEngine != null ? hashEngine : HashEngines.SCALAR;
+    }
+
+    //Listen address of the getwork engine, loopback by default
+    public String getMiningWorkAddress() {
+        return miningWorkAddress != null ? miningWorkAddress : "127.0.0.1";
+    }
+
+    //Listen port of the getwork engine, defaults to the node port + 1000
+    public int getMiningWorkPort() {
+        return miningWorkPort != null ? miningWorkPort : port + 1000;
+    }
+
     public List<Peer> getKnownPeers() {
         return knownPeers;
     }
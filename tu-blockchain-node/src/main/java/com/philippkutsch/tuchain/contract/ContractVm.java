@@ -1,6 +1,6 @@
 package com.philippkutsch.tuchain.contract;
 
-import com.philippkutsch.tuchain.chain.Blockchain;
+import com.philippkutsch.tuchain.chain.ChainView;
 import com.philippkutsch.tuchain.chain.Contract;
 import com.philippkutsch.tuchain.chain.Transaction;
 
@@ -16,7 +16,7 @@ import java.util.Optional;
 public class ContractVm {
     @Nonnull
     public static byte[] findSendingPubKey(
-            @Nonnull Blockchain blockchain,
+            @Nonnull ChainView blockchain,
             @Nonnull Transaction transaction) {
         //Find target public key
         //Limitation: contract transaction work only with one input and one output
@@ -31,7 +31,7 @@ public class ContractVm {
 
     @Nonnull
     public static List<Transaction> findInvestorIncomingTransactions(
-            @Nonnull Blockchain blockchain,
+            @Nonnull ChainView blockchain,
             @Nonnull List<Transaction> investmentTransactions,
             @Nonnull byte[] investorPublicKey) {
         List<Transaction> investorInvestments = new ArrayList<>();
@@ -46,7 +46,7 @@ public class ContractVm {
 
     @Nonnull
     public static List<Transaction> findInvestorOutgoingTransactions(
-            @Nonnull Blockchain blockchain,
+            @Nonnull ChainView blockchain,
             @Nonnull List<Transaction> incomingTransactions) {
         List<Transaction> outgoingTransactions = new ArrayList<>();
         //Check if incoming transactions are spent
@@ -63,7 +63,7 @@ public class ContractVm {
     @Nonnull
     public static Optional<Transaction> findOwnerOutgoingTransaction(
             @Nonnull Contract contract,
-            @Nonnull Blockchain blockchain,
+            @Nonnull ChainView blockchain,
             @Nonnull byte[] ownerPublicKey,
             int investmentSum) {
         List<Transaction> transactionsToOwner = blockchain.findTransactionsTo(ownerPublicKey);
@@ -97,7 +97,7 @@ public class ContractVm {
             @Nonnull Contract contract,
             @Nonnull Transaction transaction,
             int vOut,
-            @Nonnull Blockchain blockchain)
+            @Nonnull ChainView blockchain)
             throws ProjectRunningException,
             ProjectSuccessOwnerOnlyException,
             NotAInvestorException,
@@ -162,7 +162,7 @@ public class ContractVm {
 
                 //Transaction.SignedInput input = new Transaction.SignedInput(transaction.getTransactionId(), vOut, new byte[0]);
                 Transaction.Output output = new Transaction.Output(investmentSum, targetPubKey);
-                Transaction returnTransaction = new Transaction(0, signedInputList.toArray(new Transaction.SignedInput[0]), new Transaction.Output[]{output});
+                Transaction returnTransaction = new Transaction(0, signedInputList.toArray(new Transaction.SignedInput[0]), new Transaction.Output[]{output}, transaction.getVersion());
                 generatedTransactionList.add(returnTransaction);
                 return generatedTransactionList;
             }
@@ -188,7 +188,7 @@ public class ContractVm {
                 }
 
                 Transaction.Output output = new Transaction.Output(investorInvestmentSum, targetPubKey);
-                Transaction returnTransaction = new Transaction(0, signedInputList.toArray(new Transaction.SignedInput[0]), new Transaction.Output[]{output});
+                Transaction returnTransaction = new Transaction(0, signedInputList.toArray(new Transaction.SignedInput[0]), new Transaction.Output[]{output}, transaction.getVersion());
                 generatedTransactionList.add(returnTransaction);
                 return generatedTransactionList;
             }
@@ -207,7 +207,7 @@ public class ContractVm {
             //Create transaction back to investor
             Transaction.SignedInput input = new Transaction.SignedInput(transaction.getTransactionId(), vOut, new byte[0]);
             Transaction.Output output = new Transaction.Output(transaction.getOutputs()[vOut].getAmount(), targetPubKey);
-            Transaction returnTransaction = new Transaction(0, new Transaction.SignedInput[]{input}, new Transaction.Output[]{output});
+            Transaction returnTransaction = new Transaction(0, new Transaction.SignedInput[]{input}, new Transaction.Output[]{output}, transaction.getVersion());
             generatedTransactionList.add(returnTransaction);
             return generatedTransactionList;
         }
@@ -2,6 +2,7 @@ package com.philippkutsch.tuchain.modules;
 
 import com.philippkutsch.tuchain.Node;
 import com.philippkutsch.tuchain.chain.Blockchain;
+import com.philippkutsch.tuchain.chain.ChainSnapshot;
 import com.philippkutsch.tuchain.chain.Contract;
 import com.philippkutsch.tuchain.chain.HashedBlock;
 import com.philippkutsch.tuchain.chain.Transaction;
@@ -13,6 +14,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -153,91 +155,78 @@ public class BlockchainSyncModule extends NodeModule {
             @Nonnull HashedBlock hashedBlock) {
         MiningModule miningModule = node.requireModule(MiningModule.class);
 
-        //Lock chain
-        node.getBlockchain().beginWriteAccess();
-        try {
-            //Validate
-            List<HashedBlock> futureChain = node.getBlockchain().getBlockchain();
-            futureChain.add(hashedBlock);
-            Blockchain newTargetChain = new Blockchain(futureChain);
-
-            //TODO read block reward from config?
-            BlockchainVerificationUtils.VerificationResult verificationResult
-                    = BlockchainVerificationUtils.validateBlockchain(newTargetChain, 100);
-            if(!verificationResult.isSuccess()) {
-                logger.debug("Blockchain with new block #" + hashedBlock.getId() + " verification error\n"
-                        + verificationResult.errorString());
-                return false;
-            }
-
-            //Add to chain
-            miningModule.stopMining();
-            miningModule.removeTransactionsFromQueue(hashedBlock.getData().getTransactions());
-            miningModule.removeContractsFromQueue(hashedBlock.getData().getContracts());
-
-            node.getBlockchain().addBlock(hashedBlock);
-            miningModule.revalidateQueues();
-            miningModule.startMining();
-            return true;
+        //Validate only the new block against the current tip and append it,
+        //fails if the tip changed in the meantime
+        //TODO read block reward from config?
+        BlockchainVerificationUtils.VerificationResult verificationResult
+                = BlockchainVerificationUtils.connectBlock(node.getBlockchain(), hashedBlock, 100);
+        if(verificationResult.getError() == BlockchainVerificationUtils.VerificationError.TipChanged) {
+            //Checked against a tip that is no longer the tip, the block can not extend the new one
+            logger.debug("New block #" + hashedBlock.getId() + " ignored, tip changed meanwhile");
+            return false;
         }
-        //Unlock chain
-        finally {
-            node.getBlockchain().endWriteAccess();
+        if(!verificationResult.isSuccess()) {
+            logger.debug("New block #" + hashedBlock.getId() + " verification error\n"
+                    + verificationResult.errorString());
+            return false;
         }
+
+        //Workers switch to the new tip without being restarted
+        miningModule.onNewTip(hashedBlock, System.nanoTime());
+        return true;
     }
 
     private boolean tryBlockchainSync(
             @Nonnull Blockchain remoteBlockChain) {
         MiningModule miningModule = node.requireModule(MiningModule.class);
 
-        //Lock chain
-        node.getBlockchain().beginWriteAccess();
-        try {
-            List<HashedBlock> ownChain = node.getBlockchain().getBlockchain();
-            List<HashedBlock> remoteChain = remoteBlockChain.getBlockchain();
-
-            //Check if the blockchain is valid
-            //TODO read block reward from config?
-            BlockchainVerificationUtils.VerificationResult verificationResult
-                    = BlockchainVerificationUtils.validateBlockchain(remoteBlockChain, 100);
-            if(!verificationResult.isSuccess()) {
-                logger.debug("Remote chain verification error\n"
-                        + verificationResult.errorString());
-                return false;
-            }
+        List<HashedBlock> ownChain = node.getBlockchain().snapshot().getBlockchain();
+        List<HashedBlock> remoteChain = remoteBlockChain.getBlockchain();
+
+        //Check if the blockchain is valid
+        //TODO read block reward from config?
+        BlockchainVerificationUtils.VerificationResult verificationResult
+                = BlockchainVerificationUtils.validateBlockchain(remoteBlockChain, 100);
+        if(!verificationResult.isSuccess()) {
+            logger.debug("Remote chain verification error\n"
+                    + verificationResult.errorString());
+            return false;
+        }
 
-            //Check if the genesis block is equal
-            if(!ownChain.get(0).equals(remoteChain.get(0))) {
-                logger.debug("Genesis block mismatch");
-                return false;
-            }
+        //Check if the genesis block is equal
+        if(!ownChain.get(0).equals(remoteChain.get(0))) {
+            logger.debug("Genesis block mismatch");
+            return false;
+        }
+
+        //Check if the target chain is longer than ours
+        if(ownChain.size() >= remoteChain.size()) {
+            logger.debug("Chains have equal size");
+            return true;
+        }
 
-            //Check if the target chain is longer than ours
-            if(ownChain.size() < remoteChain.size()) {
-                logger.debug("Remote chain is longer than ours");
-                miningModule.stopMining();
-
-                int additionalBlocks = remoteChain.size() - ownChain.size();
-                List<HashedBlock> newBlocks = remoteChain.subList(
-                        (remoteChain.size() - additionalBlocks),
-                        remoteChain.size());
-                logger.debug("Forwarding chain " + newBlocks.size() + " blocks");
-                for(HashedBlock newBlock : newBlocks) {
-                    logger.debug("Adding block #" + newBlock.getId());
-                    miningModule.removeTransactionsFromQueue(newBlock.getData().getTransactions());
-                    node.getBlockchain().addBlock(newBlock);
+        logger.debug("Remote chain is longer than ours");
+        miningModule.stopMining();
+        try {
+            List<HashedBlock> newBlocks = remoteChain.subList(ownChain.size(), remoteChain.size());
+            logger.debug("Forwarding chain " + newBlocks.size() + " blocks");
+            for(HashedBlock newBlock : newBlocks) {
+                //Every block has to extend the current tip, stop if another
+                //block was appended since the sync started
+                ChainSnapshot tip = node.getBlockchain().snapshot();
+                if(!Arrays.equals(newBlock.getPrevHash(), tip.getHeader(tip.getHeight() - 1).getHash())
+                        || !node.getBlockchain().compareAndAppend(tip, newBlock)) {
+                    logger.debug("Chain changed while forwarding, stopped at block #" + newBlock.getId());
+                    return false;
                 }
-                miningModule.revalidateQueues();
-                miningModule.startMining();
-            }
-            else {
-                logger.debug("Chains have equal size");
+                logger.debug("Added block #" + newBlock.getId());
+                miningModule.removeTransactionsFromQueue(newBlock.getData().getTransactions());
             }
             return true;
         }
-        //Unlock chain
         finally {
-            node.getBlockchain().endWriteAccess();
+            miningModule.revalidateQueues();
+            miningModule.startMining();
         }
     }
 }
@@ -0,0 +1,75 @@
+package com.philippkutsch.tuchain.modules.mining;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.philippkutsch.tuchain.Node;
+import com.philippkutsch.tuchain.chain.HashedBlock;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ForkJoinMiningEngine
+ *
+ * Mining on a dedicated ForkJoinPool, so hashing never competes with the node
+ * executor for threads. Task k tries the nonces k, k + n, k + 2n, ...
+ * The first task meeting the target completes the future and cancels the others.
+ */
+public class ForkJoinMiningEngine implements MiningEngine {
+    private final int threads;
+    private final ForkJoinPool pool;
+
+    public ForkJoinMiningEngine(int threads) {
+        this.threads = Math.max(1, threads);
+        this.pool = new ForkJoinPool(this.threads);
+    }
+
+    @Nonnull
+    @Override
+    public ListenableFuture<HashedBlock> mine(@Nonnull Miner miner, @Nonnull AtomicBoolean cancelled) {
+        SettableFuture<HashedBlock> result = SettableFuture.create();
+        result.addListener(() -> cancelled.set(true), MoreExecutors.directExecutor());
+        for(int i = 0; i < threads; i++) {
+            long startNonce = i;
+            pool.execute(ForkJoinTask.adapt(() -> {
+                try {
+                    HashedBlock hashedBlock = miner.search(startNonce, threads, cancelled);
+                    if(hashedBlock != null) {
+                        //Stop the other tasks before waiting callers see the result
+                        cancelled.set(true);
+                        result.set(hashedBlock);
+                    }
+                }
+                catch (InterruptedException e) {
+                    result.cancel(false);
+                }
+                catch (RuntimeException e) {
+                    result.setException(e);
+                }
+            }));
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    public static class Provider implements MiningEngineProvider {
+        @Nonnull
+        @Override
+        public String getName() {
+            return MiningEngines.FORK_JOIN;
+        }
+
+        @Nonnull
+        @Override
+        public MiningEngine create(@Nonnull Node node) {
+            return new ForkJoinMiningEngine(node.getConfig().getMiningThreads());
+        }
+    }
+}
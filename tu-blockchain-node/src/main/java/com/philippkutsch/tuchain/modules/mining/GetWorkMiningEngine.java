@@ -0,0 +1,260 @@
+package com.philippkutsch.tuchain.modules.mining;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.philippkutsch.tuchain.Node;
+import com.philippkutsch.tuchain.chain.Block;
+import com.philippkutsch.tuchain.chain.HashedBlock;
+import com.philippkutsch.tuchain.chain.HeaderHasher;
+import com.philippkutsch.tuchain.chain.utils.ChainUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GetWorkMiningEngine
+ *
+ * Hands the block template out to external worker processes (GetWorkWorker)
+ * over a line based socket protocol, see GetWorkProtocol.
+ * The node does not hash itself, it only verifies submitted solutions.
+ * Solutions for a job of an older template are rejected as stale.
+ */
+public class GetWorkMiningEngine implements MiningEngine {
+    private static final Logger logger
+            = LoggerFactory.getLogger(GetWorkMiningEngine.class);
+
+    //Nonces handed out per getwork request, about a second of scalar hashing
+    public static final long WORK_NONCES = 1L << 21;
+
+    private final ServerSocket serverSocket;
+    private final Executor executor;
+    private final Set<Socket> connections;
+    private final AtomicLong nextJobId;
+    private volatile Round round;
+
+    public GetWorkMiningEngine(@Nonnull InetAddress address, int port, @Nonnull Executor executor)
+            throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, address);
+        this.executor = executor;
+        this.connections = ConcurrentHashMap.newKeySet();
+        this.nextJobId = new AtomicLong();
+        executor.execute(this::accept);
+        logger.info("Waiting for mining workers on " + address.getHostAddress() + ":" + getPort());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Nonnull
+    @Override
+    public ListenableFuture<HashedBlock> mine(@Nonnull Miner miner, @Nonnull AtomicBoolean cancelled) {
+        Round newRound = new Round(miner, cancelled);
+        newRound.result.addListener(() -> cancelled.set(true), MoreExecutors.directExecutor());
+        round = newRound;
+        return newRound.result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for(Socket socket : connections) {
+            socket.close();
+        }
+    }
+
+    private void accept() {
+        while(!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.add(socket);
+                logger.debug("Mining worker connected " + socket.getInetAddress() + ":" + socket.getPort());
+                executor.execute(() -> serve(socket));
+            }
+            catch (IOException e) {
+                if(!serverSocket.isClosed()) {
+                    logger.error("Failed to accept mining worker", e);
+                }
+            }
+        }
+    }
+
+    private void serve(@Nonnull Socket socket) {
+        Connection connection = new Connection(
+                socket.getInetAddress().getHostAddress() + ":" + socket.getPort());
+        try (socket;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(
+                     socket.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                     socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                writer.write(handle(line, connection));
+                writer.newLine();
+                writer.flush();
+            }
+        }
+        catch (IOException e) {
+            logger.debug("Mining worker disconnected", e);
+        }
+        finally {
+            connections.remove(socket);
+            connection.close(round);
+        }
+    }
+
+    @Nonnull
+    private String handle(@Nonnull String line, @Nonnull Connection connection) {
+        String[] parts = line.trim().split(" ");
+        switch (parts[0]) {
+            case GetWorkProtocol.GET_WORK:
+                return getWork(connection);
+            case GetWorkProtocol.SUBMIT:
+                if(parts.length != 4) {
+                    return GetWorkProtocol.REJECTED + " malformed";
+                }
+                try {
+                    return submit(connection,
+                            Long.parseLong(parts[1]), Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+                }
+                catch (NumberFormatException e) {
+                    return GetWorkProtocol.REJECTED + " malformed";
+                }
+            default:
+                return GetWorkProtocol.REJECTED + " unknown command";
+        }
+    }
+
+    @Nonnull
+    private String getWork(@Nonnull Connection connection) {
+        Round current = round;
+        //Asking for more work means the previous range was hashed
+        connection.countOutstanding(current);
+        if(current == null || !current.isActive()) {
+            return GetWorkProtocol.NO_WORK;
+        }
+
+        //Workers always get the latest template of the running miner,
+        //block and target come from the same template
+        Miner.Template template = current.miner.getTemplate();
+        Block block = template.getBlock();
+        long jobId = nextJobId.incrementAndGet();
+        current.jobs.put(jobId, template);
+        long firstNonce = current.nextNonce.getAndAdd(WORK_NONCES);
+        connection.outstanding = WORK_NONCES;
+        return GetWorkProtocol.WORK + " " + jobId + " " + template.getHashTargetBits() + " "
+                + firstNonce + " " + WORK_NONCES + " " + ChainUtils.encodeToString(block);
+    }
+
+    @Nonnull
+    private String submit(@Nonnull Connection connection, long jobId, long timestamp, long nuOnce) {
+        Round current = round;
+        connection.countOutstanding(current);
+        Miner.Template job = current != null ? current.jobs.get(jobId) : null;
+        //Only the latest template is accepted, the module requeues its entries by that template
+        if(job == null || !current.isActive() || job != current.miner.getTemplate()) {
+            if(current != null && current.miner.getMetrics() != null) {
+                current.miner.getMetrics().onStaleSubmission();
+            }
+            return GetWorkProtocol.REJECTED + " stale";
+        }
+
+        //Checked against the target handed out with the job
+        Block block = job.getBlock();
+        HeaderHasher headerHasher = new HeaderHasher(block);
+        byte[] hash = headerHasher.hash(timestamp, nuOnce);
+        if(Miner.calculateZeroPrefix(hash) < job.getHashTargetBits()) {
+            return GetWorkProtocol.REJECTED + " target";
+        }
+
+        HashedBlock hashedBlock = new HashedBlock(
+                block.getId(), block.getPrevHash(), block.getData(), timestamp, nuOnce, hash,
+                block.getVersion(), headerHasher.getMerkleRoot(), block.getDifficulty());
+        //Stop handing out work before waiting callers see the result
+        current.cancelled.set(true);
+        if(!current.result.set(hashedBlock)) {
+            return GetWorkProtocol.REJECTED + " stale";
+        }
+        return GetWorkProtocol.ACCEPTED;
+    }
+
+    //Hash count of one worker connection, estimated from the nonce ranges it finished
+    private static class Connection {
+        private final String name;
+        private long outstanding;
+
+        private Connection(@Nonnull String name) {
+            this.name = name;
+        }
+
+        private void countOutstanding(@Nullable Round round) {
+            if(outstanding > 0 && round != null && round.miner.getMetrics() != null) {
+                round.miner.getMetrics().worker(name).addHashes(outstanding);
+            }
+            outstanding = 0;
+        }
+
+        //Reconnects use a new port, so the entry of this connection is never reused
+        private void close(@Nullable Round round) {
+            if(round != null && round.miner.getMetrics() != null) {
+                round.miner.getMetrics().removeWorker(name);
+            }
+        }
+    }
+
+    //Jobs handed out for one Miner
+    private static class Round {
+        private final Miner miner;
+        private final AtomicBoolean cancelled;
+        private final SettableFuture<HashedBlock> result;
+        private final Map<Long, Miner.Template> jobs;
+        private final AtomicLong nextNonce;
+
+        private Round(@Nonnull Miner miner, @Nonnull AtomicBoolean cancelled) {
+            this.miner = miner;
+            this.cancelled = cancelled;
+            this.result = SettableFuture.create();
+            this.jobs = new ConcurrentHashMap<>();
+            this.nextNonce = new AtomicLong();
+        }
+
+        private boolean isActive() {
+            return !cancelled.get() && !result.isDone();
+        }
+    }
+
+    public static class Provider implements MiningEngineProvider {
+        @Nonnull
+        @Override
+        public String getName() {
+            return MiningEngines.GET_WORK;
+        }
+
+        @Nonnull
+        @Override
+        public MiningEngine create(@Nonnull Node node) throws IOException {
+            return new GetWorkMiningEngine(
+                    InetAddress.getByName(node.getConfig().getMiningWorkAddress()),
+                    node.getConfig().getMiningWorkPort(),
+                    node.getService());
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.philippkutsch.tuchain.modules.mining;
+
+/**
+ * GetWorkProtocol
+ *
+ * Line based protocol between GetWorkMiningEngine and GetWorkWorker, one request
+ * and one response line per exchange:
+ *
+ * getwork
+ *   -> work jobId targetBits firstNonce nonceCount blockJson
+ *   -> nowork
+ * submit jobId timestamp nuOnce
+ *   -> accepted
+ *   -> rejected reason
+ *
+ * blockJson is the Gson encoded block template. Every getwork hands out a fresh
+ * range of nonceCount nonces, so workers never repeat each others work.
+ */
+public final class GetWorkProtocol {
+    public static final String GET_WORK = "getwork";
+    public static final String WORK = "work";
+    public static final String NO_WORK = "nowork";
+    public static final String SUBMIT = "submit";
+    public static final String ACCEPTED = "accepted";
+    public static final String REJECTED = "rejected";
+
+    private GetWorkProtocol() {
+    }
+}
@@ -0,0 +1,126 @@
+package com.philippkutsch.tuchain.modules.mining;
+
+import com.philippkutsch.tuchain.chain.Block;
+import com.philippkutsch.tuchain.chain.HeaderHasher;
+import com.philippkutsch.tuchain.chain.utils.ChainUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * GetWorkWorker
+ *
+ * External miner for a node running the getwork mining engine.
+ * Requests nonce ranges, hashes them and submits the first hash meeting the target.
+ * Reconnects until interrupted.
+ */
+public class GetWorkWorker implements Runnable {
+    private static final Logger logger
+            = LoggerFactory.getLogger(GetWorkWorker.class);
+
+    private static final long RETRY_MILLIS = 1000;
+
+    private final String host;
+    private final int port;
+    private final HashEngine.Factory engineFactory;
+
+    public GetWorkWorker(@Nonnull String host, int port, @Nonnull HashEngine.Factory engineFactory) {
+        this.host = host;
+        this.port = port;
+        this.engineFactory = engineFactory;
+    }
+
+    @Override
+    public void run() {
+        while(!Thread.currentThread().isInterrupted()) {
+            try (Socket socket = new Socket(host, port);
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(
+                         socket.getInputStream(), StandardCharsets.UTF_8));
+                 BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                         socket.getOutputStream(), StandardCharsets.UTF_8))) {
+                logger.info("Connected to " + host + ":" + port);
+                work(reader, writer);
+            }
+            catch (IOException e) {
+                logger.warn("Connection to " + host + ":" + port + " failed: " + e.getMessage());
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                Thread.sleep(RETRY_MILLIS);
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void work(@Nonnull BufferedReader reader, @Nonnull BufferedWriter writer)
+            throws IOException, InterruptedException {
+        while(!Thread.currentThread().isInterrupted()) {
+            String response = request(reader, writer, GetWorkProtocol.GET_WORK);
+            if(!response.startsWith(GetWorkProtocol.WORK + " ")) {
+                Thread.sleep(RETRY_MILLIS);
+                continue;
+            }
+
+            //work jobId targetBits firstNonce nonceCount blockJson
+            String[] parts = response.split(" ", 6);
+            if(parts.length != 6) {
+                throw new IOException("Malformed work " + response);
+            }
+            long jobId = Long.parseLong(parts[1]);
+            int targetBits = Integer.parseInt(parts[2]);
+            long firstNonce = Long.parseLong(parts[3]);
+            long nonceCount = Long.parseLong(parts[4]);
+            Block block = ChainUtils.decodeFromString(parts[5], Block.class);
+
+            HashEngine engine = engineFactory.create(block);
+            int lanes = engine.getLanes();
+            byte[] hashes = new byte[lanes * HeaderHasher.HASH_LENGTH];
+            byte[] hash = new byte[HeaderHasher.HASH_LENGTH];
+            search:
+            for(long nuOnce = firstNonce; nuOnce < firstNonce + nonceCount; nuOnce += lanes) {
+                long timestamp = System.currentTimeMillis();
+                engine.hash(timestamp, nuOnce, 1, hashes);
+                for(int lane = 0; lane < lanes; lane++) {
+                    System.arraycopy(hashes, lane * HeaderHasher.HASH_LENGTH, hash, 0, HeaderHasher.HASH_LENGTH);
+                    if(Miner.calculateZeroPrefix(hash) >= targetBits) {
+                        String result = request(reader, writer, GetWorkProtocol.SUBMIT + " "
+                                + jobId + " " + timestamp + " " + (nuOnce + lane));
+                        logger.info("Block #" + block.getId() + " submitted: " + result);
+                        break search;
+                    }
+                }
+                if(Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        }
+    }
+
+    @Nonnull
+    private static String request(
+            @Nonnull BufferedReader reader,
+            @Nonnull BufferedWriter writer,
+            @Nonnull String line) throws IOException {
+        writer.write(line);
+        writer.newLine();
+        writer.flush();
+        String response = reader.readLine();
+        if(response == null) {
+            throw new IOException("Connection closed");
+        }
+        return response;
+    }
+}
@@ -0,0 +1,31 @@
+package com.philippkutsch.tuchain.modules.mining;
+
+import com.philippkutsch.tuchain.chain.Block;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * HashEngine
+ *
+ * Hashes the header of one block for a batch of nonces.
+ * Each call hashes getLanes() nonces, firstNonce, firstNonce + stride, ...
+ * with the same timestamp. Engines are not thread safe, use one per mining thread.
+ */
+public interface HashEngine {
+    //Number of nonces hashed per call
+    int getLanes();
+
+    //Merkle root to store in the mined block, null for versions without one
+    @Nullable
+    byte[] getMerkleRoot();
+
+    //Writes the hash of nonce firstNonce + lane * stride to out[lane * 32],
+    //out has to hold getLanes() * 32 bytes
+    void hash(long timestamp, long firstNonce, long stride, @Nonnull byte[] out);
+
+    interface Factory {
+        @Nonnull
+        HashEngine create(@Nonnull Block block);
+    }
+}
@@ -0,0 +1,50 @@
+package com.philippkutsch.tuchain.modules.mining;
+
+import com.philippkutsch.tuchain.chain.Block;
+import com.philippkutsch.tuchain.chain.CanonicalEncoding;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * HashEngines
+ *
+ * Selects the HashEngine used by the Miner.
+ * The vector engine needs the incubator module (--add-modules jdk.incubator.vector)
+ * and falls back to the scalar engine if it is missing or the block version
+ * has no fixed size header.
+ */
+public final class HashEngines {
+    public static final String SCALAR = "scalar";
+    public static final String VECTOR = "vector";
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private HashEngines() {
+    }
+
+    //True if the JVM was started with the vector incubator module
+    public static boolean isVectorAvailable() {
+        return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+    }
+
+    @Nonnull
+    public static HashEngine.Factory forName(@Nonnull String name) {
+        switch (name) {
+            case SCALAR:
+                return ScalarHashEngine::new;
+            case VECTOR:
+                return isVectorAvailable() ? HashEngines::vectorOrScalar : ScalarHashEngine::new;
+            default:
+                throw new IllegalArgumentException("Unknown hash engine " + name + ", available " + List.of(SCALAR, VECTOR));
+        }
+    }
+
+    @Nonnull
+    private static HashEngine vectorOrScalar(@Nonnull Block block) {
+        if(CanonicalEncoding.hasBodyDigest(block.getVersion())) {
+            return new VectorHashEngine(block);
+        }
+        return new ScalarHashEngine(block);
+    }
+}
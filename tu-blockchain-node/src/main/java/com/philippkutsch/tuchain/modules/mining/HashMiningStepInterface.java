@@ -1,5 +1,6 @@
 package com.philippkutsch.tuchain.modules.mining;
 
 public interface HashMiningStepInterface {
+    //hash is reused by the miner, copy it to keep it
     void onHashCreated(long number, byte[] hash);
 }
@@ -1,12 +1,17 @@
 package com.philippkutsch.tuchain.modules.mining;
 
 import com.philippkutsch.tuchain.chain.Block;
-import com.philippkutsch.tuchain.chain.HashAbleBlock;
 import com.philippkutsch.tuchain.chain.HashedBlock;
+import com.philippkutsch.tuchain.chain.HeaderHasher;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Miner
@@ -14,21 +19,32 @@ import java.util.concurrent.Callable;
  * Customizable PoW calculation
  */
 public class Miner implements Callable<HashedBlock> {
-    private final int hashTargetBits;
     private final int maxHashPerSecond;
-    private final Block block;
+    private volatile Template template;
     private final HashMiningStepInterface hashInterface;
+    private final HashEngine.Factory engineFactory;
+    private final MiningMetrics metrics;
 
+    private static final VarHandle LONG_VIEW =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    //Leading zero bits, compared 64 bits at a time
     public static int calculateZeroPrefix(byte[] hash) {
         int numberOfZeroBits = 0;
-        for(byte hashByte : hash) {
-            for (int bitIndex = 7; bitIndex >= 0; bitIndex--) {
-                int bit = (hashByte >> bitIndex) & 1;
-                if(bit == 1) {
-                    return numberOfZeroBits;
-                }
-                numberOfZeroBits++;
+        int offset = 0;
+        for(; offset + Long.BYTES <= hash.length; offset += Long.BYTES) {
+            long word = (long) LONG_VIEW.get(hash, offset);
+            if(word != 0) {
+                return numberOfZeroBits + Long.numberOfLeadingZeros(word);
+            }
+            numberOfZeroBits += Long.SIZE;
+        }
+        for(; offset < hash.length; offset++) {
+            int hashByte = hash[offset] & 0xff;
+            if(hashByte != 0) {
+                return numberOfZeroBits + Integer.numberOfLeadingZeros(hashByte) - 24;
             }
+            numberOfZeroBits += Byte.SIZE;
         }
         return numberOfZeroBits;
     }
@@ -37,49 +53,175 @@ public class Miner implements Callable<HashedBlock> {
                  int maxHashPerSecond,
                  @Nonnull Block block,
                  @Nullable HashMiningStepInterface hashInterface) {
-        this.hashTargetBits = hashTargetBits;
+        this(hashTargetBits, maxHashPerSecond, block, hashInterface, ScalarHashEngine::new, null);
+    }
+
+    public Miner(int hashTargetBits,
+                 int maxHashPerSecond,
+                 @Nonnull Block block,
+                 @Nullable HashMiningStepInterface hashInterface,
+                 @Nonnull HashEngine.Factory engineFactory) {
+        this(hashTargetBits, maxHashPerSecond, block, hashInterface, engineFactory, null);
+    }
+
+    public Miner(int hashTargetBits,
+                 int maxHashPerSecond,
+                 @Nonnull Block block,
+                 @Nullable HashMiningStepInterface hashInterface,
+                 @Nonnull HashEngine.Factory engineFactory,
+                 @Nullable MiningMetrics metrics) {
         this.maxHashPerSecond = maxHashPerSecond;
-        this.block = block;
+        this.template = new Template(block, hashTargetBits);
         this.hashInterface = hashInterface;
+        this.engineFactory = engineFactory;
+        this.metrics = metrics;
+    }
+
+    @Nullable
+    public MiningMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int getHashTargetBits() {
+        return template.hashTargetBits;
+    }
+
+    //Block and target of one template, read together
+    @Nonnull
+    Template getTemplate() {
+        return template;
+    }
+
+    //Latest block template
+    @Nonnull
+    public Block getBlock() {
+        return template.block;
+    }
+
+    //Replaces the block being mined, e.g. with more transactions. Searching threads
+    //switch with their next attempt and keep their nonce sequence.
+    //The block has to extend the same chain tip with the same difficulty
+    public void updateBlock(@Nonnull Block block) {
+        this.template = new Template(block, template.hashTargetBits);
+    }
+
+    //Moves all searching threads to a block on a new chain tip, without restarting them
+    public void switchTip(@Nonnull Block block, int hashTargetBits) {
+        this.template = new Template(block, hashTargetBits);
     }
 
     @Override
     public HashedBlock call() throws Exception {
-        HashAbleBlock hashAbleBlock = new HashAbleBlock(
-                block.getId(), block.getPrevHash(), block.getData());
-        long nuOnce = 0;
-        for (long i = 0; i < Long.MAX_VALUE; i++) {
-            long timestamp = System.currentTimeMillis();
-            hashAbleBlock.setTimestamp(timestamp);
-            hashAbleBlock.setNuOnce(nuOnce);
-            byte[] hash = hashAbleBlock.hash();
-
-            if (hashInterface != null) {
-                hashInterface.onHashCreated(i, hash);
-            }
+        HashedBlock hashedBlock = search(0, 1, null);
+        if (hashedBlock == null) {
+            throw new Exception("Failed to hash block");
+        }
+        return hashedBlock;
+    }
 
-            //Iterate over byte array and count number of unset bits
-            int numberOfZeroBits = calculateZeroPrefix(hash);
+    //Tries the nonces startNonce, startNonce + stride, ... until the target is met.
+    //Engines with several lanes hash startNonce + lane * stride per call.
+    //Returns null once interrupted or cancelled
+    @Nullable
+    public HashedBlock search(long startNonce, long stride, @Nullable AtomicBoolean cancelled)
+            throws InterruptedException {
+        //Hashes are counted per thread and published in batches
+        MiningMetrics.Worker worker = metrics != null
+                ? metrics.worker(Thread.currentThread().getName())
+                : null;
+        long published = 0;
 
-            //Difficulty target met
-            if (numberOfZeroBits == hashTargetBits) {
-                return new HashedBlock(
-                        block.getId(), block.getPrevHash(), block.getData(), timestamp, nuOnce, hash);
-            }
+        //Body is committed once, attempts only change timestamp and nonce
+        Template current = template;
+        HashEngine engine = engineFactory.create(current.block);
+        //Reused for every attempt, nothing is allocated until the target is met
+        byte[] hashes = new byte[engine.getLanes() * HeaderHasher.HASH_LENGTH];
+        byte[] hash = new byte[HeaderHasher.HASH_LENGTH];
+        long nuOnce = startNonce;
+        long i = 0;
+        try {
+            while (i < Long.MAX_VALUE) {
+                Template latest = template;
+                if (latest != current) {
+                    if (metrics != null && !Arrays.equals(latest.block.getPrevHash(), current.block.getPrevHash())) {
+                        metrics.onWorkerSwitchedTip(worker, System.nanoTime() - latest.createdNanos);
+                    }
+                    current = latest;
+                    engine = engineFactory.create(current.block);
+                    if (hashes.length != engine.getLanes() * HeaderHasher.HASH_LENGTH) {
+                        hashes = new byte[engine.getLanes() * HeaderHasher.HASH_LENGTH];
+                    }
+                }
 
-            if (Thread.interrupted()) {
-                break;
-            }
+                long timestamp = System.currentTimeMillis();
+                engine.hash(timestamp, nuOnce, stride, hashes);
+
+                for (int lane = 0; lane < engine.getLanes(); lane++) {
+                    System.arraycopy(hashes, lane * HeaderHasher.HASH_LENGTH, hash, 0, HeaderHasher.HASH_LENGTH);
+                    if (hashInterface != null) {
+                        hashInterface.onHashCreated(i, hash);
+                    }
+                    i++;
 
-            nuOnce++;
+                    //Iterate over byte array and count number of unset bits
+                    int numberOfZeroBits = calculateZeroPrefix(hash);
+
+                    //Difficulty target met, more zero bits are valid too
+                    if (numberOfZeroBits >= current.hashTargetBits) {
+                        Block mined = current.block;
+                        return new HashedBlock(
+                                mined.getId(), mined.getPrevHash(), mined.getData(), timestamp,
+                                nuOnce + lane * stride, hash.clone(),
+                                mined.getVersion(), engine.getMerkleRoot(), mined.getDifficulty());
+                    }
+                }
+
+                if (worker != null && i - published >= MiningMetrics.PUBLISH_HASHES) {
+                    worker.addHashes(i - published);
+                    published = i;
+                }
+
+                if (Thread.interrupted() || (cancelled != null && cancelled.get())) {
+                    return null;
+                }
 
-            //Rate limit hashing for testing purpose
-            //Basically we can assume hashing is done instantly (very low overhead)
-            if(maxHashPerSecond > 0) {
-                Thread.sleep(1000 / maxHashPerSecond);
+                nuOnce += stride * engine.getLanes();
+
+                //Rate limit hashing for testing purpose
+                //Basically we can assume hashing is done instantly (very low overhead)
+                if(maxHashPerSecond > 0) {
+                    Thread.sleep(1000 / maxHashPerSecond);
+                }
+            }
+        }
+        finally {
+            if (worker != null) {
+                worker.addHashes(i - published);
             }
         }
 
-        throw new Exception("Failed to hash block");
+        return null;
+    }
+
+    //Block and target are replaced together, so a thread never pairs a block with another target
+    static final class Template {
+        private final Block block;
+        private final int hashTargetBits;
+        private final long createdNanos;
+
+        private Template(@Nonnull Block block, int hashTargetBits) {
+            this.block = block;
+            this.hashTargetBits = hashTargetBits;
+            this.createdNanos = System.nanoTime();
+        }
+
+        @Nonnull
+        Block getBlock() {
+            return block;
+        }
+
+        int getHashTargetBits() {
+            return hashTargetBits;
+        }
     }
 }
@@ -0,0 +1,27 @@
+package com.philippkutsch.tuchain.modules.mining;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.philippkutsch.tuchain.chain.HashedBlock;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * MiningEngine
+ *
+ * Runs the nonce search for the block of a Miner.
+ * Implementations are discovered with ServiceLoader through MiningEngineProvider
+ * and selected by name with the miningEngine config option.
+ */
+public interface MiningEngine extends Closeable {
+    //Starts searching, the future completes with the mined block.
+    //Setting cancelled or cancelling the future stops the search
+    @Nonnull
+    ListenableFuture<HashedBlock> mine(@Nonnull Miner miner, @Nonnull AtomicBoolean cancelled);
+
+    //Releases threads and sockets owned by the engine
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,21 @@
+package com.philippkutsch.tuchain.modules.mining;
+
+import com.philippkutsch.tuchain.Node;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+
+/**
+ * MiningEngineProvider
+ *
+ * Service interface for MiningEngine implementations, registered in
+ * META-INF/services/com.philippkutsch.tuchain.modules.mining.MiningEngineProvider
+ */
+public interface MiningEngineProvider {
+    //Name used in the miningEngine config option
+    @Nonnull
+    String getName();
+
+    @Nonnull
+    MiningEngine create(@Nonnull Node node) throws IOException;
+}
@@ -0,0 +1,43 @@
+package com.philippkutsch.tuchain.modules.mining;
+
+import com.philippkutsch.tuchain.Node;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * MiningEngines
+ *
+ * Looks up MiningEngineProvider services by name.
+ */
+public final class MiningEngines {
+    public static final String THREADS = "threads";
+    public static final String FORK_JOIN = "forkjoin";
+    public static final String GET_WORK = "getwork";
+
+    private MiningEngines() {
+    }
+
+    //Names of all providers on the class path
+    @Nonnull
+    public static List<String> names() {
+        List<String> names = new ArrayList<>();
+        for(MiningEngineProvider provider : ServiceLoader.load(MiningEngineProvider.class)) {
+            names.add(provider.getName());
+        }
+        return names;
+    }
+
+    @Nonnull
+    public static MiningEngine create(@Nonnull String name, @Nonnull Node node) throws IOException {
+        for(MiningEngineProvider provider : ServiceLoader.load(MiningEngineProvider.class)) {
+            if(provider.getName().equals(name)) {
+                return provider.create(node);
+            }
+        }
+        throw new IllegalArgumentException("Unknown mining engine " + name + ", available " + names());
+    }
+}
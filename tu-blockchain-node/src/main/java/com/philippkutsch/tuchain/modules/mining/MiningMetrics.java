@@ -0,0 +1,327 @@
+package com.philippkutsch.tuchain.modules.mining;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * MiningMetrics
+ *
+ * Hashrate per worker, attempts per template, template age, stale work and
+ * time to block. Workers publish their hash count in batches of PUBLISH_HASHES,
+ * rates are only computed by sample(), so the hashing loop never calls into
+ * the metrics per hash.
+ * Workers without new hashes for workerExpiryMillis are dropped by sample(),
+ * their hashes stay in the totals.
+ */
+public class MiningMetrics implements MiningMetricsMXBean {
+    //Hashes a worker counts locally before publishing them
+    public static final int PUBLISH_HASHES = 1 << 12;
+    //Idle time after which a worker is no longer reported
+    public static final long WORKER_EXPIRY_MILLIS = 5 * 60 * 1000;
+
+    //Upper bounds of the time to block buckets, the last bucket counts all slower blocks
+    private static final long[] TIME_TO_BLOCK_BUCKETS_MILLIS = {
+            1000, 2000, 5000, 10000, 20000, 40000, 80000, 160000
+    };
+
+    private final Map<String, Worker> workers;
+    private final long workerExpiryMillis;
+    private final AtomicLong totalHashes;
+    private final AtomicLongArray timeToBlock;
+    private final AtomicLong blocksMined;
+    private final AtomicLong staleRounds;
+    private final AtomicLong staleHashes;
+    private final AtomicLong staleSubmissions;
+    private final AtomicLong tipSwitches;
+    private final AtomicLong wastedHashes;
+
+    private volatile long roundStartMillis;
+    private volatile long roundStartHashes;
+    private volatile long templateStartMillis;
+    private volatile long templateStartHashes;
+    private volatile long lastTemplateAttempts;
+    private volatile double hashrate;
+    private volatile long lastTipSwitchMicros;
+    private final AtomicLong lastWorkerPickupMicros;
+    private long lastSampleNanos;
+
+    public MiningMetrics() {
+        this(WORKER_EXPIRY_MILLIS);
+    }
+
+    public MiningMetrics(long workerExpiryMillis) {
+        this.workers = new ConcurrentHashMap<>();
+        this.workerExpiryMillis = workerExpiryMillis;
+        this.totalHashes = new AtomicLong();
+        this.timeToBlock = new AtomicLongArray(TIME_TO_BLOCK_BUCKETS_MILLIS.length + 1);
+        this.blocksMined = new AtomicLong();
+        this.staleRounds = new AtomicLong();
+        this.staleHashes = new AtomicLong();
+        this.staleSubmissions = new AtomicLong();
+        this.tipSwitches = new AtomicLong();
+        this.wastedHashes = new AtomicLong();
+        this.lastWorkerPickupMicros = new AtomicLong();
+        this.roundStartMillis = System.currentTimeMillis();
+        this.templateStartMillis = roundStartMillis;
+        this.lastSampleNanos = System.nanoTime();
+    }
+
+    //Counter of one hashing thread or external worker connection
+    @Nonnull
+    public Worker worker(@Nonnull String name) {
+        return workers.computeIfAbsent(name, (key) -> new Worker(totalHashes));
+    }
+
+    //Worker connection or thread stopped, its hashes stay in the totals
+    public void removeWorker(@Nonnull String name) {
+        workers.remove(name);
+    }
+
+    //Updates the hashrates from the published hash counts, called periodically
+    public synchronized void sample() {
+        long now = System.nanoTime();
+        double seconds = (now - lastSampleNanos) / 1e9;
+        lastSampleNanos = now;
+        if(seconds <= 0) {
+            return;
+        }
+
+        long nowMillis = System.currentTimeMillis();
+        double total = 0;
+        Iterator<Map.Entry<String, Worker>> iterator = workers.entrySet().iterator();
+        while(iterator.hasNext()) {
+            Worker worker = iterator.next().getValue();
+            long hashes = worker.hashes.get();
+            if(hashes != worker.sampledHashes) {
+                worker.activeMillis = nowMillis;
+            }
+            else if(nowMillis - worker.activeMillis >= workerExpiryMillis) {
+                iterator.remove();
+                continue;
+            }
+            worker.hashrate = (hashes - worker.sampledHashes) / seconds;
+            worker.sampledHashes = hashes;
+            total += worker.hashrate;
+        }
+        hashrate = total;
+    }
+
+    //A new block template on a new chain tip
+    public void onRoundStarted() {
+        long hashes = getTotalHashes();
+        long now = System.currentTimeMillis();
+        roundStartHashes = hashes;
+        roundStartMillis = now;
+        templateStartHashes = hashes;
+        templateStartMillis = now;
+    }
+
+    //Template of the running round replaced with more transactions
+    public void onTemplateUpdated() {
+        long hashes = getTotalHashes();
+        lastTemplateAttempts = hashes - templateStartHashes;
+        templateStartHashes = hashes;
+        templateStartMillis = System.currentTimeMillis();
+    }
+
+    public void onBlockMined() {
+        long millis = System.currentTimeMillis() - roundStartMillis;
+        int bucket = 0;
+        while(bucket < TIME_TO_BLOCK_BUCKETS_MILLIS.length && millis >= TIME_TO_BLOCK_BUCKETS_MILLIS[bucket]) {
+            bucket++;
+        }
+        timeToBlock.incrementAndGet(bucket);
+        blocksMined.incrementAndGet();
+        lastTemplateAttempts = getTotalHashes() - templateStartHashes;
+    }
+
+    //Round stopped without a block, e.g. because another node found one first
+    public void onRoundAbandoned() {
+        long hashes = getTotalHashes();
+        staleRounds.incrementAndGet();
+        staleHashes.addAndGet(hashes - roundStartHashes);
+        lastTemplateAttempts = hashes - templateStartHashes;
+    }
+
+    //Workers were moved to a template on a new chain tip, switchNanos after the tip was accepted.
+    //Until then all workers hashed on the old parent
+    public void onTipSwitched(long switchNanos) {
+        tipSwitches.incrementAndGet();
+        lastTipSwitchMicros = switchNanos / 1000;
+        lastWorkerPickupMicros.set(0);
+        wastedHashes.addAndGet((long) (hashrate * switchNanos / 1e9));
+    }
+
+    //A worker started hashing the new tip template pickupNanos after it was published
+    public void onWorkerSwitchedTip(@Nullable Worker worker, long pickupNanos) {
+        lastWorkerPickupMicros.accumulateAndGet(pickupNanos / 1000, Math::max);
+        if(worker != null) {
+            wastedHashes.addAndGet((long) (worker.hashrate * pickupNanos / 1e9));
+        }
+    }
+
+    public void onStaleSubmission() {
+        staleSubmissions.incrementAndGet();
+    }
+
+    @Override
+    public double getHashrate() {
+        return hashrate;
+    }
+
+    @Override
+    public Map<String, Double> getWorkerHashrates() {
+        Map<String, Double> hashrates = new TreeMap<>();
+        for(Map.Entry<String, Worker> worker : workers.entrySet()) {
+            hashrates.put(worker.getKey(), worker.getValue().hashrate);
+        }
+        return hashrates;
+    }
+
+    @Override
+    public long getTotalHashes() {
+        return totalHashes.get();
+    }
+
+    @Override
+    public long getCurrentTemplateAttempts() {
+        return getTotalHashes() - templateStartHashes;
+    }
+
+    @Override
+    public long getLastTemplateAttempts() {
+        return lastTemplateAttempts;
+    }
+
+    @Override
+    public long getTemplateAgeMillis() {
+        return System.currentTimeMillis() - templateStartMillis;
+    }
+
+    @Override
+    public long getBlocksMined() {
+        return blocksMined.get();
+    }
+
+    @Override
+    public long getStaleRounds() {
+        return staleRounds.get();
+    }
+
+    @Override
+    public long getStaleHashes() {
+        return staleHashes.get();
+    }
+
+    @Override
+    public long getStaleSubmissions() {
+        return staleSubmissions.get();
+    }
+
+    @Override
+    public long getTipSwitches() {
+        return tipSwitches.get();
+    }
+
+    @Override
+    public long getLastTipSwitchMicros() {
+        return lastTipSwitchMicros;
+    }
+
+    @Override
+    public long getLastWorkerPickupMicros() {
+        return lastWorkerPickupMicros.get();
+    }
+
+    @Override
+    public long getWastedHashes() {
+        return wastedHashes.get();
+    }
+
+    @Override
+    public long[] getTimeToBlockBucketsMillis() {
+        return TIME_TO_BLOCK_BUCKETS_MILLIS.clone();
+    }
+
+    @Override
+    public long[] getTimeToBlockHistogram() {
+        long[] histogram = new long[timeToBlock.length()];
+        for(int i = 0; i < histogram.length; i++) {
+            histogram[i] = timeToBlock.get(i);
+        }
+        return histogram;
+    }
+
+    //Human readable summary for the CLI
+    @Nonnull
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("Hashrate: %.1f kh/s, %d hashes total", hashrate / 1000, getTotalHashes()));
+        for(Map.Entry<String, Double> worker : getWorkerHashrates().entrySet()) {
+            lines.add(String.format("  %s: %.1f kh/s", worker.getKey(), worker.getValue() / 1000));
+        }
+        lines.add("Template: " + getCurrentTemplateAttempts() + " attempts, " + getTemplateAgeMillis()
+                + " ms old, last template " + lastTemplateAttempts + " attempts");
+        lines.add("Blocks mined: " + getBlocksMined() + ", stale rounds: " + getStaleRounds()
+                + " (" + getStaleHashes() + " hashes), stale submissions: " + getStaleSubmissions());
+        lines.add("Tip switches: " + getTipSwitches() + ", last switch " + lastTipSwitchMicros
+                + " us, worker pickup " + getLastWorkerPickupMicros() + " us, wasted hashes: " + getWastedHashes());
+
+        StringBuilder histogram = new StringBuilder("Time to block:");
+        long[] counts = getTimeToBlockHistogram();
+        for(int i = 0; i < counts.length; i++) {
+            histogram.append(i < TIME_TO_BLOCK_BUCKETS_MILLIS.length
+                    ? " <" + TIME_TO_BLOCK_BUCKETS_MILLIS[i] / 1000 + "s=" : " more=");
+            histogram.append(counts[i]);
+        }
+        lines.add(histogram.toString());
+        return lines;
+    }
+
+    @Nonnull
+    public ObjectName registerMBean(@Nonnull String nodeName) throws JMException {
+        ObjectName name = new ObjectName("com.philippkutsch.tuchain:type=MiningMetrics,node="
+                + ObjectName.quote(nodeName));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(this, name);
+        return name;
+    }
+
+    public static void unregisterMBean(@Nonnull ObjectName name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    }
+
+    public static final class Worker {
+        private final AtomicLong hashes = new AtomicLong();
+        private final AtomicLong totalHashes;
+        //Only accessed by sample()
+        private long sampledHashes;
+        private long activeMillis = System.currentTimeMillis();
+        private volatile double hashrate;
+
+        private Worker(@Nonnull AtomicLong totalHashes) {
+            this.totalHashes = totalHashes;
+        }
+
+        public void addHashes(long count) {
+            hashes.addAndGet(count);
+            totalHashes.addAndGet(count);
+        }
+
+        public long getHashes() {
+            return hashes.get();
+        }
+    }
+}
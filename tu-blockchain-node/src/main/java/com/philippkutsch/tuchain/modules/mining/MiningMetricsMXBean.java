@@ -0,0 +1,49 @@
+package com.philippkutsch.tuchain.modules.mining;
+
+import java.util.Map;
+
+/**
+ * MiningMetricsMXBean
+ *
+ * JMX view of MiningMetrics, registered as
+ * com.philippkutsch.tuchain:type=MiningMetrics,node=[node name]
+ */
+public interface MiningMetricsMXBean {
+    //Hashes per second of all workers, updated by sample()
+    double getHashrate();
+
+    Map<String, Double> getWorkerHashrates();
+
+    long getTotalHashes();
+
+    long getCurrentTemplateAttempts();
+
+    long getLastTemplateAttempts();
+
+    long getTemplateAgeMillis();
+
+    long getBlocksMined();
+
+    //Rounds abandoned for a new chain tip and the hashes spent on them
+    long getStaleRounds();
+
+    long getStaleHashes();
+
+    //getwork submissions for templates that were already replaced
+    long getStaleSubmissions();
+
+    long getTipSwitches();
+
+    //From accepting a peer block to publishing the new tip template
+    long getLastTipSwitchMicros();
+
+    //From publishing the new tip template to the slowest worker hashing it
+    long getLastWorkerPickupMicros();
+
+    //Estimated hashes spent on the old parent after a new tip was accepted
+    long getWastedHashes();
+
+    long[] getTimeToBlockBucketsMillis();
+
+    long[] getTimeToBlockHistogram();
+}
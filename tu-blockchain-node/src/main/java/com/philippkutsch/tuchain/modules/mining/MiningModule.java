@@ -3,6 +3,7 @@ package com.philippkutsch.tuchain.modules.mining;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.philippkutsch.tuchain.Node;
 import com.philippkutsch.tuchain.chain.*;
 import com.philippkutsch.tuchain.chain.utils.ChainUtils;
@@ -17,29 +18,97 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * MiningModule
  *
  * Handles mining process
+ *
+ * Transactions submitted while a block is mined are added to the running miner
+ * every templateRefreshMillis or as soon as TEMPLATE_REFRESH_TRANSACTIONS are queued.
+ * A new tip from a peer switches the running workers to an empty template on the new
+ * parent first, its transactions are filled in asynchronously. A block the workers
+ * still found on the old parent is dropped instead of appended.
+ * Mining metrics are sampled every METRICS_SAMPLE_MILLIS and exposed over JMX.
  */
 public class MiningModule extends NodeModule implements FutureCallback<HashedBlock>  {
     private static final Logger logger
             = LoggerFactory.getLogger(MiningModule.class);
 
+    private static final int TEMPLATE_REFRESH_TRANSACTIONS = 16;
+    private static final long METRICS_SAMPLE_MILLIS = 1000;
+
     private final Queue<Transaction> transactionQueue;
     private final Queue<Contract> contractQueue;
+    private final HashEngine.Factory hashEngineFactory;
+    private final MiningEngine miningEngine;
+    private final ScheduledExecutorService scheduler;
+    private final MiningMetrics metrics;
+    private ObjectName metricsName;
+    //Set while the template on a new tip still waits for revalidated transactions
+    private boolean templatePending;
+    private long tipGeneration;
     private ListenableFuture<HashedBlock> miningFuture;
+    private AtomicBoolean miningCancelled;
+
+    //Block template of the running miner
+    private Miner miner;
+    private ChainSnapshot miningSnapshot;
+    private final List<Transaction> miningTransactions;
+    private final List<Contract> miningContracts;
 
     public MiningModule(@Nonnull Node node)
             throws ModuleLoadException {
         super(node);
         this.transactionQueue = new ConcurrentLinkedQueue<>();
         this.contractQueue = new ConcurrentLinkedQueue<>();
+        String hashEngine = node.getConfig().getHashEngine();
+        try {
+            this.hashEngineFactory = HashEngines.forName(hashEngine);
+            this.miningEngine = MiningEngines.create(node.getConfig().getMiningEngine(), node);
+        }
+        catch (IllegalArgumentException e) {
+            throw new ModuleLoadException(e.getMessage());
+        }
+        catch (IOException e) {
+            throw new ModuleLoadException(e);
+        }
+        if(HashEngines.VECTOR.equals(hashEngine) && !HashEngines.isVectorAvailable()) {
+            logger.warn("Vector hash engine needs --add-modules jdk.incubator.vector, using scalar engine");
+        }
+        this.miningTransactions = new ArrayList<>();
+        this.miningContracts = new ArrayList<>();
+
+        this.metrics = new MiningMetrics();
+        try {
+            this.metricsName = metrics.registerMBean(node.getConfig().getName());
+        }
+        catch (JMException e) {
+            logger.warn("Failed to register mining metrics MBean", e);
+        }
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("mining-scheduler")
+                .setDaemon(true)
+                .build());
+        this.scheduler.scheduleAtFixedRate(metrics::sample,
+                METRICS_SAMPLE_MILLIS, METRICS_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+        int templateRefreshMillis = node.getConfig().getTemplateRefreshMillis();
+        if(templateRefreshMillis > 0) {
+            this.scheduler.scheduleWithFixedDelay(this::refreshTemplate,
+                    templateRefreshMillis, templateRefreshMillis, TimeUnit.MILLISECONDS);
+        }
 
         startMining();
     }
@@ -53,13 +122,44 @@ public class MiningModule extends NodeModule implements FutureCallback<HashedBlo
             return;
         }
 
-        miningFuture = null;
+        List<Transaction> transactions;
+        List<Contract> contracts;
+        synchronized (this) {
+            miningFuture = null;
+            miner = null;
+            transactions = new ArrayList<>(miningTransactions);
+            contracts = new ArrayList<>(miningContracts);
+            miningTransactions.clear();
+            miningContracts.clear();
+        }
 
-        //Add to blockchain
-        node.getBlockchain().addBlock(hashedBlock);
+        //Add to blockchain, never while holding the monitor.
+        //Workers switched to a new tip can still return a block of the old parent,
+        //it is only appended if its parent is the tip
+        ChainSnapshot parent = node.getBlockchain().snapshot();
+        boolean appended = Arrays.equals(hashedBlock.getPrevHash(), parent.getHeader(parent.getHeight() - 1).getHash())
+                && node.getBlockchain().compareAndAppend(parent, hashedBlock);
+        //The block can come from an older template than the last refresh, so every
+        //template entry is requeued and revalidateQueues drops the confirmed ones
+        synchronized (this) {
+            if(appended) {
+                metrics.onBlockMined();
+            }
+            else {
+                metrics.onRoundAbandoned();
+            }
+            transactionQueue.addAll(transactions);
+            contractQueue.addAll(contracts);
+        }
+        revalidateQueues();
 
-        logger.debug("Block #" + hashedBlock.getId() + " mined: " + ChainUtils.encodeToString(hashedBlock));
-        node.getNetwork().broadcast(new NewBlockMessage(hashedBlock).encode());
+        if(appended) {
+            logger.debug("Block #" + hashedBlock.getId() + " mined: " + ChainUtils.encodeToString(hashedBlock));
+            node.getNetwork().broadcast(new NewBlockMessage(hashedBlock).encode());
+        }
+        else {
+            logger.debug("Block #" + hashedBlock.getId() + " mined on an old tip, dropped");
+        }
 
         //Start mining again
         startMining();
@@ -69,19 +169,31 @@ public class MiningModule extends NodeModule implements FutureCallback<HashedBlo
      * Block mining exception
      */
     @Override
-    public void onFailure(@Nonnull Throwable throwable) {
+    public synchronized void onFailure(@Nonnull Throwable throwable) {
         if(throwable instanceof CancellationException) {
             logger.debug("Block mining failed (cancellation)");
         }
         else {
             logger.error("Block mining failed", throwable);
+            miningFuture = null;
+            requeueTemplate();
             startMining();
         }
     }
 
     @Override
     public void shutdown() throws Exception {
+        scheduler.shutdownNow();
         stopMining();
+        miningEngine.close();
+        if(metricsName != null) {
+            MiningMetrics.unregisterMBean(metricsName);
+        }
+    }
+
+    @Nonnull
+    public MiningMetrics getMetrics() {
+        return metrics;
     }
 
     public boolean submitTransaction(@Nonnull Transaction transaction) {
@@ -108,6 +220,9 @@ public class MiningModule extends NodeModule implements FutureCallback<HashedBlo
         //TODO: Remove if double contract transaction
 
         transactionQueue.add(transaction);
+        if(transactionQueue.size() >= TEMPLATE_REFRESH_TRANSACTIONS) {
+            refreshTemplate();
+        }
 
         return true;
     }
@@ -150,25 +265,26 @@ public class MiningModule extends NodeModule implements FutureCallback<HashedBlo
 
     //Called after a new block was added. Check for invalid transactions inside queue
     public void revalidateQueues() {
+        ChainSnapshot blockchain = node.getBlockchain().snapshot();
         transactionQueue.removeIf((t -> {
             //TODO: Consider current queue for verification
             //TODO: Remove if double contract transaction
             TransactionVerificationUtils.VerificationResult result =
                     TransactionVerificationUtils.verifyTransaction(
-                            node.getBlockchain(),
+                            blockchain,
                             t,
                             true);
             return !result.isSuccess();
         }));
 
         transactionQueue.removeIf(t ->
-                node.getBlockchain().findTransaction(t.getTransactionId()).isPresent());
+                blockchain.findTransaction(t.getTransactionId()).isPresent());
         contractQueue.removeIf((c ->
-            node.getBlockchain().findContract(c.getContractId()).isPresent()
+            blockchain.findContract(c.getContractId()).isPresent()
         ));
     }
 
-    public void startMining() {
+    public synchronized void startMining() {
         if(miningFuture != null) {
             logger.warn("Block mining already running");
             return;
@@ -177,17 +293,108 @@ public class MiningModule extends NodeModule implements FutureCallback<HashedBlo
         logger.debug("Block mining starting");
 
         //Collect transactions and contracts
-        List<Transaction> transactionList = new ArrayList<>(transactionQueue.stream().toList());
-        List<Contract> contractList = new ArrayList<>(contractQueue.stream().toList());
+        miningSnapshot = node.getBlockchain().snapshot();
+        drainQueues();
+
+        Block nextBlock = buildTemplate();
+        //Target comes from the difficulty retargeting of the chain
+        //noinspection ConstantConditions
+        miner = new Miner(nextBlock.getDifficulty(), 0, nextBlock, null, hashEngineFactory, metrics);
+        metrics.onRoundStarted();
+        //Fresh token per block, so late workers of an old block never see a reset flag
+        miningCancelled = new AtomicBoolean();
+        miningFuture = miningEngine.mine(miner, miningCancelled);
+        Futures.addCallback(miningFuture, this, node.getService());
+    }
+
+    //Adds transactions and contracts queued since mining started to the running miner
+    public synchronized void refreshTemplate() {
+        if(miningFuture == null || miner == null || templatePending
+                || (transactionQueue.isEmpty() && contractQueue.isEmpty())) {
+            return;
+        }
+
+        drainQueues();
+        Block nextBlock = buildTemplate();
+        miner.updateBlock(nextBlock);
+        metrics.onTemplateUpdated();
+        logger.debug("Block template refreshed with " + nextBlock.getData().getTransactions().length
+                + " transactions and " + nextBlock.getData().getContracts().length + " contracts");
+    }
+
+    //Called by the chain writer after a peer block became the new tip, acceptedNanos is the
+    //System.nanoTime() it was added at. Running workers move to a coinbase only template on
+    //the new parent right away, queued transactions are revalidated and added by fillTemplate
+    public synchronized void onNewTip(@Nonnull HashedBlock tip, long acceptedNanos) {
+        transactionQueue.addAll(miningTransactions);
+        contractQueue.addAll(miningContracts);
+        miningTransactions.clear();
+        miningContracts.clear();
+        removeTransactionsFromQueue(tip.getData().getTransactions());
+        removeContractsFromQueue(tip.getData().getContracts());
+
+        if(miningFuture == null || miner == null) {
+            revalidateQueues();
+            startMining();
+            return;
+        }
+
+        metrics.onRoundAbandoned();
+        miningSnapshot = node.getBlockchain().snapshot();
+        Block emptyBlock = buildTemplate();
+        //noinspection ConstantConditions
+        miner.switchTip(emptyBlock, emptyBlock.getDifficulty());
+        metrics.onTipSwitched(System.nanoTime() - acceptedNanos);
+        metrics.onRoundStarted();
+
+        templatePending = true;
+        long generation = ++tipGeneration;
+        scheduler.execute(() -> fillTemplate(generation));
+    }
+
+    //Revalidates the queues against the new tip, then adds them to the running template.
+    //Only the latest tip clears templatePending
+    private void fillTemplate(long generation) {
+        revalidateQueues();
+        synchronized (this) {
+            if(generation != tipGeneration) {
+                return;
+            }
+            templatePending = false;
+        }
+        refreshTemplate();
+    }
 
-        //Purge transactions and contract
-        transactionQueue.clear();
-        contractQueue.clear();
+    //Move queued transactions and contracts into the template
+    private void drainQueues() {
+        Transaction transaction;
+        while((transaction = transactionQueue.poll()) != null) {
+            miningTransactions.add(transaction);
+        }
+        Contract contract;
+        while((contract = contractQueue.poll()) != null) {
+            miningContracts.add(contract);
+        }
+    }
+
+    //Template transactions go back to the queue if their block is not mined
+    private void requeueTemplate() {
+        transactionQueue.addAll(miningTransactions);
+        contractQueue.addAll(miningContracts);
+        miningTransactions.clear();
+        miningContracts.clear();
+        miner = null;
+    }
+
+    @Nonnull
+    private Block buildTemplate() {
+        List<Transaction> transactionList = new ArrayList<>(miningTransactions);
+        List<Contract> contractList = new ArrayList<>(miningContracts);
 
         //Run scvm for all contract transactions.
         //Contract transactions are required to have only one input and one output
         //TODO: check if there is only one transaction per contract and pubKey in queue
-        Blockchain blockchain = node.getBlockchain();
+        ChainSnapshot blockchain = miningSnapshot;
         List<Transaction> contractOutputTransactions = new ArrayList<>();
         for(Transaction transaction : transactionList) {
             if(transaction.getInputs().length == 1
@@ -222,7 +429,7 @@ public class MiningModule extends NodeModule implements FutureCallback<HashedBlo
                 //TODO read from config
                 100,
                 "PK coinbase transaction".getBytes(StandardCharsets.UTF_8),
-                node.getRsaKeys().getPublicKeyBytes());
+                node.getKeys().getPublicKeyBytes());
 
         //combine and order by timestamp descending
         transactionList.sort(Comparator.comparing(Transaction::getTimestamp));
@@ -230,13 +437,19 @@ public class MiningModule extends NodeModule implements FutureCallback<HashedBlo
 
         contractList.sort(Comparator.comparing(Contract::getTimestamp));
 
-        miningFuture = node.getService().submit(new Miner(20,0, node.getBlockchain()
-                .buildNextBlock(transactionList, contractList), null));
-        Futures.addCallback(miningFuture, this, node.getService());
+        return blockchain.buildNextBlock(transactionList, contractList);
     }
 
-    public void stopMining() {
+    public synchronized void stopMining() {
         logger.debug("Block mining stopping");
+        if(miningFuture != null) {
+            metrics.onRoundAbandoned();
+        }
+        requeueTemplate();
+        if(miningCancelled != null) {
+            miningCancelled.set(true);
+            miningCancelled = null;
+        }
         if(miningFuture != null) {
             miningFuture.cancel(true);
             miningFuture = null;
@@ -0,0 +1,68 @@
+package com.philippkutsch.tuchain.modules.mining;
+
+import com.philippkutsch.tuchain.chain.HashedBlock;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ParallelMiner
+ *
+ * Runs a Miner on multiple worker threads. Worker k tries the nonces k, k + n, k + 2n, ...
+ * so the stripes never overlap. The first worker meeting the target sets the shared
+ * cancellation token, which stops all other workers.
+ */
+public class ParallelMiner implements Callable<HashedBlock> {
+    private final Miner miner;
+    private final int threads;
+    private final Executor executor;
+    private final AtomicBoolean cancelled;
+
+    public ParallelMiner(@Nonnull Miner miner,
+                         int threads,
+                         @Nonnull Executor executor,
+                         @Nonnull AtomicBoolean cancelled) {
+        if(threads < 1) {
+            throw new IllegalArgumentException("At least one mining thread required");
+        }
+        this.miner = miner;
+        this.threads = threads;
+        this.executor = executor;
+        this.cancelled = cancelled;
+    }
+
+    @Override
+    public HashedBlock call() throws Exception {
+        CompletionService<HashedBlock> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<HashedBlock>> workers = new ArrayList<>();
+        try {
+            for(int i = 0; i < threads; i++) {
+                long startNonce = i;
+                workers.add(completionService.submit(() -> miner.search(startNonce, threads, cancelled)));
+            }
+
+            //Workers only return null if they were cancelled
+            for(int i = 0; i < threads; i++) {
+                HashedBlock hashedBlock = completionService.take().get();
+                if(hashedBlock != null) {
+                    return hashedBlock;
+                }
+            }
+        }
+        finally {
+            cancelled.set(true);
+            for(Future<HashedBlock> worker : workers) {
+                worker.cancel(true);
+            }
+        }
+
+        throw new Exception("Failed to hash block");
+    }
+}
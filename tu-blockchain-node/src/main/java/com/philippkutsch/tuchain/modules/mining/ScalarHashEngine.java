@@ -0,0 +1,37 @@
+package com.philippkutsch.tuchain.modules.mining;
+
+import com.philippkutsch.tuchain.chain.Block;
+import com.philippkutsch.tuchain.chain.HeaderHasher;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * ScalarHashEngine
+ *
+ * One nonce per call, hashed by HeaderHasher with the JDK MessageDigest.
+ * Supports all block versions.
+ */
+public final class ScalarHashEngine implements HashEngine {
+    private final HeaderHasher headerHasher;
+
+    public ScalarHashEngine(@Nonnull Block block) {
+        this.headerHasher = new HeaderHasher(block);
+    }
+
+    @Override
+    public int getLanes() {
+        return 1;
+    }
+
+    @Nullable
+    @Override
+    public byte[] getMerkleRoot() {
+        return headerHasher.getMerkleRoot();
+    }
+
+    @Override
+    public void hash(long timestamp, long firstNonce, long stride, @Nonnull byte[] out) {
+        headerHasher.hashInto(timestamp, firstNonce, out);
+    }
+}
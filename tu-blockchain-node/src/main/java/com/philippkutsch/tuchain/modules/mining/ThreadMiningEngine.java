@@ -0,0 +1,61 @@
+package com.philippkutsch.tuchain.modules.mining;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.philippkutsch.tuchain.Node;
+import com.philippkutsch.tuchain.chain.HashedBlock;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ThreadMiningEngine
+ *
+ * In process mining on the node executor, one ParallelMiner worker per thread.
+ */
+public class ThreadMiningEngine implements MiningEngine {
+    private final int threads;
+    private final ListeningExecutorService service;
+
+    public ThreadMiningEngine(int threads, @Nonnull ListeningExecutorService service) {
+        this.threads = Math.max(1, threads);
+        this.service = service;
+    }
+
+    @Nonnull
+    @Override
+    public ListenableFuture<HashedBlock> mine(@Nonnull Miner miner, @Nonnull AtomicBoolean cancelled) {
+        if(threads > 1) {
+            return service.submit(new ParallelMiner(miner, threads, service, cancelled));
+        }
+        //Single worker searches with the token too, so cancelling stops it like the parallel workers
+        return service.submit(() -> {
+            HashedBlock hashedBlock = miner.search(0, 1, cancelled);
+            if(hashedBlock == null) {
+                throw new CancellationException("Block mining cancelled");
+            }
+            cancelled.set(true);
+            return hashedBlock;
+        });
+    }
+
+    //Executor belongs to the node
+    @Override
+    public void close() {
+    }
+
+    public static class Provider implements MiningEngineProvider {
+        @Nonnull
+        @Override
+        public String getName() {
+            return MiningEngines.THREADS;
+        }
+
+        @Nonnull
+        @Override
+        public MiningEngine create(@Nonnull Node node) {
+            return new ThreadMiningEngine(node.getConfig().getMiningThreads(), node.getService());
+        }
+    }
+}
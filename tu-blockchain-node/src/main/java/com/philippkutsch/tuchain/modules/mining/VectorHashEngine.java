@@ -0,0 +1,265 @@
+package com.philippkutsch.tuchain.modules.mining;
+
+import com.philippkutsch.tuchain.chain.Block;
+import com.philippkutsch.tuchain.chain.CanonicalEncoding;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * VectorHashEngine
+ *
+ * Multi lane SHA-256 on jdk.incubator.vector, every SIMD lane hashes the header
+ * with a different nonce. The SHA-256 blocks before the timestamp are compressed
+ * once per template into a midstate, only the remaining one or two blocks are
+ * compressed per call. Message words overlapping the nonce differ per lane,
+ * all other words are broadcast.
+ *
+ * Only supports headers with a body digest. Only referenced by HashEngines once the
+ * incubator module is present, otherwise loading this class would fail.
+ */
+final class VectorHashEngine implements HashEngine {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private static final int[] IV = {
+            0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a,
+            0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+
+    private static final int[] K = {
+            0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+            0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+            0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+            0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+            0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+            0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+            0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+            0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+
+    private final int lanes;
+    private final byte[] merkleRoot;
+    private final int[] midstate;
+    //Padded message words after the constant blocks, timestamp and nonce left zero
+    private final int[] message;
+    private final int[] words;
+    private final int timestampOffset;
+    private final int nonceWord;
+    private final int nonceShift;
+    private final int nonceWordCount;
+    //Per lane nonce words, [word * lanes + lane]
+    private final int[] laneWords;
+    private final int[] schedule;
+    private final int[] state;
+
+    VectorHashEngine(@Nonnull Block block) {
+        if(!CanonicalEncoding.hasBodyDigest(block.getVersion())) {
+            throw new IllegalArgumentException("Block version " + block.getVersion() + " has no body digest");
+        }
+        this.lanes = SPECIES.length();
+
+        byte[] bodyDigest = CanonicalEncoding.bodyDigest(block.getVersion(), block.getData());
+        this.merkleRoot = CanonicalEncoding.hasMerkleRoot(block.getVersion()) ? bodyDigest : null;
+        byte[] prefix = CanonicalEncoding.encodeHeaderPrefix(block, bodyDigest);
+
+        //SHA-256 padding: 0x80, zeros and the message length in bits
+        int length = prefix.length + CanonicalEncoding.HEADER_SUFFIX_LENGTH;
+        byte[] padded = new byte[(length + 8) / 64 * 64 + 64];
+        System.arraycopy(prefix, 0, padded, 0, prefix.length);
+        padded[length] = (byte) 0x80;
+        long bitLength = (long) length * Byte.SIZE;
+        for(int i = 0; i < Long.BYTES; i++) {
+            padded[padded.length - 1 - i] = (byte) (bitLength >>> (8 * i));
+        }
+
+        //Blocks before the timestamp are the same for every attempt
+        int constantBlocks = prefix.length / 64;
+        this.midstate = IV.clone();
+        int[] scratch = new int[64];
+        for(int i = 0; i < constantBlocks; i++) {
+            compress(midstate, padded, i * 64, scratch);
+        }
+
+        int offset = constantBlocks * 64;
+        this.message = new int[(padded.length - offset) / 4];
+        for(int i = 0; i < message.length; i++) {
+            message[i] = readInt(padded, offset + i * 4);
+        }
+        this.words = new int[message.length];
+        this.timestampOffset = prefix.length - offset;
+
+        int nonceOffset = timestampOffset + Long.BYTES;
+        this.nonceWord = nonceOffset / 4;
+        this.nonceShift = 8 * (nonceOffset % 4);
+        this.nonceWordCount = nonceShift == 0 ? 2 : 3;
+        this.laneWords = new int[nonceWordCount * lanes];
+        this.schedule = new int[64 * lanes];
+        this.state = new int[8 * lanes];
+    }
+
+    @Override
+    public int getLanes() {
+        return lanes;
+    }
+
+    @Nullable
+    @Override
+    public byte[] getMerkleRoot() {
+        return merkleRoot;
+    }
+
+    @Override
+    public void hash(long timestamp, long firstNonce, long stride, @Nonnull byte[] out) {
+        System.arraycopy(message, 0, words, 0, message.length);
+        int timestampShift = 8 * (timestampOffset % 4);
+        int timestampWord = timestampOffset / 4;
+        words[timestampWord] |= (int) (timestamp >>> (32 + timestampShift));
+        words[timestampWord + 1] |= (int) (timestamp >>> timestampShift);
+        if(timestampShift != 0) {
+            words[timestampWord + 2] |= (int) (timestamp << (32 - timestampShift));
+        }
+
+        for(int lane = 0; lane < lanes; lane++) {
+            long nuOnce = firstNonce + lane * stride;
+            laneWords[lane] = words[nonceWord] | (int) (nuOnce >>> (32 + nonceShift));
+            laneWords[lanes + lane] = words[nonceWord + 1] | (int) (nuOnce >>> nonceShift);
+            if(nonceShift != 0) {
+                laneWords[2 * lanes + lane] = words[nonceWord + 2] | (int) (nuOnce << (32 - nonceShift));
+            }
+        }
+
+        IntVector h0 = IntVector.broadcast(SPECIES, midstate[0]);
+        IntVector h1 = IntVector.broadcast(SPECIES, midstate[1]);
+        IntVector h2 = IntVector.broadcast(SPECIES, midstate[2]);
+        IntVector h3 = IntVector.broadcast(SPECIES, midstate[3]);
+        IntVector h4 = IntVector.broadcast(SPECIES, midstate[4]);
+        IntVector h5 = IntVector.broadcast(SPECIES, midstate[5]);
+        IntVector h6 = IntVector.broadcast(SPECIES, midstate[6]);
+        IntVector h7 = IntVector.broadcast(SPECIES, midstate[7]);
+
+        for(int blockOffset = 0; blockOffset < words.length; blockOffset += 16) {
+            for(int j = 0; j < 16; j++) {
+                int word = blockOffset + j - nonceWord;
+                IntVector w = word >= 0 && word < nonceWordCount
+                        ? IntVector.fromArray(SPECIES, laneWords, word * lanes)
+                        : IntVector.broadcast(SPECIES, words[blockOffset + j]);
+                w.intoArray(schedule, j * lanes);
+            }
+            for(int j = 16; j < 64; j++) {
+                IntVector w2 = IntVector.fromArray(SPECIES, schedule, (j - 2) * lanes);
+                IntVector w15 = IntVector.fromArray(SPECIES, schedule, (j - 15) * lanes);
+                IntVector s0 = ror(w15, 7).lanewise(VectorOperators.XOR, ror(w15, 18))
+                        .lanewise(VectorOperators.XOR, w15.lanewise(VectorOperators.LSHR, 3));
+                IntVector s1 = ror(w2, 17).lanewise(VectorOperators.XOR, ror(w2, 19))
+                        .lanewise(VectorOperators.XOR, w2.lanewise(VectorOperators.LSHR, 10));
+                IntVector.fromArray(SPECIES, schedule, (j - 16) * lanes)
+                        .add(s0)
+                        .add(IntVector.fromArray(SPECIES, schedule, (j - 7) * lanes))
+                        .add(s1)
+                        .intoArray(schedule, j * lanes);
+            }
+
+            IntVector a = h0, b = h1, c = h2, d = h3, e = h4, f = h5, g = h6, h = h7;
+            for(int j = 0; j < 64; j++) {
+                IntVector sigma1 = ror(e, 6).lanewise(VectorOperators.XOR, ror(e, 11))
+                        .lanewise(VectorOperators.XOR, ror(e, 25));
+                IntVector choose = e.and(f).lanewise(VectorOperators.XOR, e.not().and(g));
+                IntVector t1 = h.add(sigma1).add(choose).add(K[j])
+                        .add(IntVector.fromArray(SPECIES, schedule, j * lanes));
+                IntVector sigma0 = ror(a, 2).lanewise(VectorOperators.XOR, ror(a, 13))
+                        .lanewise(VectorOperators.XOR, ror(a, 22));
+                IntVector majority = a.and(b).lanewise(VectorOperators.XOR, a.and(c))
+                        .lanewise(VectorOperators.XOR, b.and(c));
+                h = g;
+                g = f;
+                f = e;
+                e = d.add(t1);
+                d = c;
+                c = b;
+                b = a;
+                a = t1.add(sigma0).add(majority);
+            }
+            h0 = h0.add(a);
+            h1 = h1.add(b);
+            h2 = h2.add(c);
+            h3 = h3.add(d);
+            h4 = h4.add(e);
+            h5 = h5.add(f);
+            h6 = h6.add(g);
+            h7 = h7.add(h);
+        }
+
+        h0.intoArray(state, 0);
+        h1.intoArray(state, lanes);
+        h2.intoArray(state, 2 * lanes);
+        h3.intoArray(state, 3 * lanes);
+        h4.intoArray(state, 4 * lanes);
+        h5.intoArray(state, 5 * lanes);
+        h6.intoArray(state, 6 * lanes);
+        h7.intoArray(state, 7 * lanes);
+        for(int lane = 0; lane < lanes; lane++) {
+            for(int i = 0; i < 8; i++) {
+                writeInt(out, lane * 32 + i * 4, state[i * lanes + lane]);
+            }
+        }
+    }
+
+    @Nonnull
+    private static IntVector ror(@Nonnull IntVector vector, int distance) {
+        return vector.lanewise(VectorOperators.ROR, distance);
+    }
+
+    //Plain SHA-256 compression of one 64 byte block, only used for the midstate
+    private static void compress(@Nonnull int[] state, @Nonnull byte[] data, int offset, @Nonnull int[] w) {
+        for(int j = 0; j < 16; j++) {
+            w[j] = readInt(data, offset + j * 4);
+        }
+        for(int j = 16; j < 64; j++) {
+            int s0 = Integer.rotateRight(w[j - 15], 7) ^ Integer.rotateRight(w[j - 15], 18) ^ (w[j - 15] >>> 3);
+            int s1 = Integer.rotateRight(w[j - 2], 17) ^ Integer.rotateRight(w[j - 2], 19) ^ (w[j - 2] >>> 10);
+            w[j] = w[j - 16] + s0 + w[j - 7] + s1;
+        }
+
+        int a = state[0], b = state[1], c = state[2], d = state[3];
+        int e = state[4], f = state[5], g = state[6], h = state[7];
+        for(int j = 0; j < 64; j++) {
+            int sigma1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+            int t1 = h + sigma1 + ((e & f) ^ (~e & g)) + K[j] + w[j];
+            int sigma0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+            int t2 = sigma0 + ((a & b) ^ (a & c) ^ (b & c));
+            h = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+        state[4] += e;
+        state[5] += f;
+        state[6] += g;
+        state[7] += h;
+    }
+
+    private static int readInt(@Nonnull byte[] data, int offset) {
+        return ((data[offset] & 0xff) << 24)
+                | ((data[offset + 1] & 0xff) << 16)
+                | ((data[offset + 2] & 0xff) << 8)
+                | (data[offset + 3] & 0xff);
+    }
+
+    private static void writeInt(@Nonnull byte[] out, int offset, int value) {
+        out[offset] = (byte) (value >>> 24);
+        out[offset + 1] = (byte) (value >>> 16);
+        out[offset + 2] = (byte) (value >>> 8);
+        out[offset + 3] = (byte) value;
+    }
+}
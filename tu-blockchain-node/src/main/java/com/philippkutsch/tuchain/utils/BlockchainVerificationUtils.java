@@ -1,15 +1,22 @@
 package com.philippkutsch.tuchain.utils;
 
 import com.philippkutsch.tuchain.chain.Blockchain;
+import com.philippkutsch.tuchain.chain.CanonicalEncoding;
+import com.philippkutsch.tuchain.chain.ChainSnapshot;
+import com.philippkutsch.tuchain.chain.ChainView;
 import com.philippkutsch.tuchain.chain.Contract;
+import com.philippkutsch.tuchain.chain.DifficultyAdjustment;
 import com.philippkutsch.tuchain.chain.HashedBlock;
 import com.philippkutsch.tuchain.chain.Transaction;
 import com.philippkutsch.tuchain.contract.ContractException;
 import com.philippkutsch.tuchain.contract.ContractVm;
+import com.philippkutsch.tuchain.modules.mining.Miner;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Utility class for blockchain verification
@@ -19,177 +26,336 @@ public class BlockchainVerificationUtils {
 
     }
 
+    //Blocks checked by one verification task
+    private static final int BLOCKS_PER_TASK = 8;
+
+    //Full audit, validates every block from genesis
     @Nonnull
     public static VerificationResult validateBlockchain(
             @Nonnull Blockchain blockchain,
             int blockReward) {
-        try {
-            blockchain.beginReadAccess();
+        return validateBlockchain(blockchain, blockReward, ForkJoinPool.commonPool());
+    }
 
-            //Empty chain is valid
-            List<HashedBlock> copyList = blockchain.getBlockchain();
-            if(copyList.isEmpty()) {
-                return VerificationResult.success();
+    //Blocks are checked in two phases. Signatures, sums and headers do not depend on
+    //each other and are checked in parallel on the pool, then ids, hashes, ordering,
+    //difficulty and contracts are checked block after block.
+    //Like connectBlock, every block only sees the chain before it
+    @Nonnull
+    public static VerificationResult validateBlockchain(
+            @Nonnull Blockchain blockchain,
+            int blockReward,
+            @Nonnull ForkJoinPool pool) {
+        //Validate a fixed snapshot, blocks added meanwhile are not affected
+        ChainSnapshot chain = blockchain.snapshot();
+
+        //Empty chain is valid
+        List<HashedBlock> blockList = chain.getBlockchain();
+        VerificationResult[] blockResults = new VerificationResult[blockList.size()];
+        pool.invoke(new BlockCheckTask(chain, blockList, blockReward, blockResults, 0, blockList.size()));
+
+        //Report the first invalid block, like a sequential validation would
+        for (int blockIndex = 0; blockIndex < blockList.size(); blockIndex++) {
+            if (blockResults[blockIndex] != null) {
+                return blockResults[blockIndex];
+            }
+            VerificationResult result = checkConnection(
+                    chain.pin(blockIndex), blockList.get(blockIndex));
+            if (!result.isSuccess()) {
+                return result;
             }
+        }
 
-            //Iterate over chain and validate blocks
-            HashedBlock prevBlock = null;
-            for (HashedBlock currentBlock : copyList) {
-                //Genesis block only validate header
-                if (prevBlock == null) {
-                    if (!currentBlock.isHeaderValid()) {
-                        return VerificationResult.error(
-                                VerificationError.GenesisInvalidHeader,
-                                currentBlock,
-                                null);
-                    }
-                } else {
-                    //Verify header
-                    if (!currentBlock.isHeaderValid()) {
-                        return VerificationResult.error(
-                                VerificationError.InvalidHeader,
-                                currentBlock,
-                                null);
-                    }
+        return VerificationResult.success();
+    }
 
-                    //Check block ids
-                    if (prevBlock.getId() + 1 != currentBlock.getId()) {
-                        return VerificationResult.error(
-                                VerificationError.InvalidId,
-                                currentBlock,
-                                null);
-                    }
+    //Validates block as the next block of the tip and appends it.
+    //Only the cached tip state is used, so the cost does not grow with the chain.
+    //No lock is held while validating, compareAndAppend only appends if the tip is unchanged
+    @Nonnull
+    public static VerificationResult connectBlock(
+            @Nonnull Blockchain blockchain,
+            @Nonnull HashedBlock block,
+            int blockReward) {
+        ChainSnapshot tip = blockchain.snapshot();
+        VerificationResult result = checkBlock(tip, block, blockReward, tip.getHeight() == 0);
+        if (result.isSuccess()) {
+            result = checkConnection(tip, block);
+        }
+        if (result.isSuccess() && !blockchain.compareAndAppend(tip, block)) {
+            return VerificationResult.error(VerificationError.TipChanged, block, null);
+        }
+        return result;
+    }
 
-                    //Check block hashes
-                    if (!Arrays.equals(prevBlock.getHash(), currentBlock.getPrevHash())) {
-                        return VerificationResult.error(
-                                VerificationError.InvalidPrevHash,
-                                currentBlock,
-                                null);
-                    }
+    //Checks that only depend on the block itself and the outputs it spends:
+    //versions, header hash, coinbase, signatures and sums.
+    //Spent outputs are looked up in the parent of the block, outputs of the same block can not be spent.
+    //Lookups only read the immutable snapshot, so blocks can be checked concurrently
+    @Nonnull
+    private static VerificationResult checkBlock(
+            @Nonnull ChainView lookup,
+            @Nonnull HashedBlock currentBlock,
+            int blockReward,
+            boolean genesis) {
+        if (!hasSupportedVersions(currentBlock)) {
+            return VerificationResult.error(
+                    VerificationError.InvalidVersion,
+                    currentBlock,
+                    null);
+        }
 
-                    //Check timestamp order
-                    if (prevBlock.getTimestamp() >= currentBlock.getTimestamp()) {
-                        return VerificationResult.error(
-                                VerificationError.InvalidTimestampOrder,
-                                currentBlock,
-                                null);
-                    }
+        //Genesis block only validate header
+        if (!currentBlock.isHeaderValid()) {
+            return VerificationResult.error(
+                    genesis ? VerificationError.GenesisInvalidHeader : VerificationError.InvalidHeader,
+                    currentBlock,
+                    null);
+        }
+        if (genesis) {
+            return VerificationResult.success();
+        }
 
-                    //unpack contract outgoing transactions
-                    //collect contract incoming transactions
-                    List<Transaction> transactionList = new ArrayList<>(Arrays.asList(currentBlock.getData().getTransactions()));
-                    List<Transaction> contractInvokingTransactions = new ArrayList<>();
-                    List<Transaction> contractGeneratedTransactions = new ArrayList<>();
-                    Iterator<Transaction> transactionIterator = transactionList.iterator();
-                    while (transactionIterator.hasNext()) {
-                        Transaction transaction = transactionIterator.next();
-                        if(transaction.getInputs().length == 1
-                                && transaction.getOutputs().length >= 1
-                                && transaction.getOutputs()[0].getPubKey().length == 32) {
-                            //Search contract
-                            byte[] contractAddress = transaction.getOutputs()[0].getPubKey();
-                            Optional<Contract> contractOptional = blockchain.findContract(contractAddress);
-                            if (contractOptional.isEmpty()) {
-                                continue;
-                            }
+        //Verify transactions
+        List<Transaction> transactionList = verifiedTransactions(currentBlock);
+        for (int transactionId = 0; transactionId < transactionList.size(); transactionId++) {
+            //Coinbase
+            TransactionVerificationUtils.VerificationResult result;
+            if(transactionId == 0) {
+                result = TransactionVerificationUtils.verifyCoinbaseTransaction(
+                        transactionList.get(transactionId), blockReward);
+            }
+            //Normal transaction
+            else {
+                result = TransactionVerificationUtils.verifyTransaction(
+                        lookup, transactionList.get(transactionId), false);
+            }
+            if (!result.isSuccess()) {
+                return VerificationResult.error(
+                        VerificationError.InvalidTransaction,
+                        currentBlock,
+                        result);
+            }
+        }
 
-                            contractInvokingTransactions.add(transaction);
-                        }
-                        else if(transaction.isContractFormatted()) {
-                            contractGeneratedTransactions.add(transaction);
-                            transactionIterator.remove();
-                        }
-                    }
+        return VerificationResult.success();
+    }
 
-                    //Verify transactions
-                    Transaction prevTransaction = null;
-                    for (int transactionId = 0; transactionId < transactionList.size(); transactionId++) {
-                        //Coinbase
-                        TransactionVerificationUtils.VerificationResult result;
-                        if(transactionId == 0) {
-                            result = TransactionVerificationUtils.verifyCoinbaseTransaction(
-                                    transactionList.get(transactionId), blockReward);
-                        }
-                        //Normal transaction
-                        else {
-                            result = TransactionVerificationUtils.verifyTransaction(
-                                    blockchain, transactionList.get(transactionId), false);
-                        }
-                        if (!result.isSuccess()) {
-                            return VerificationResult.error(
-                                    VerificationError.InvalidTransaction,
-                                    currentBlock,
-                                    result);
-                        }
+    //Checks currentBlock on top of parent: difficulty, ids, hashes, ordering and contracts.
+    //Contracts are looked up in parent, a contract of the same block is not invoked yet
+    @Nonnull
+    private static VerificationResult checkConnection(
+            @Nonnull ChainSnapshot parent,
+            @Nonnull HashedBlock currentBlock) {
+        HashedBlock prevBlock = parent.getHeight() == 0 ? null : parent.getLastBlock();
+
+        //Versions never go back, otherwise a block could opt out of newer rules like the difficulty
+        if (prevBlock != null && CanonicalEncoding.versionOrder(currentBlock.getVersion())
+                < CanonicalEncoding.versionOrder(prevBlock.getVersion())) {
+            return VerificationResult.error(
+                    VerificationError.InvalidVersion,
+                    currentBlock,
+                    null);
+        }
 
-                        //Check timestamp order only for non coinbase transactions
-                        if(prevTransaction != null && transactionId > 1) {
-                            if(prevTransaction.getTimestamp() >= transactionList.get(transactionId).getTimestamp()) {
-                                return VerificationResult.error(
-                                        VerificationError.InvalidTransactionTimestampOrder,
-                                        currentBlock,
-                                        null);
-                            }
-                        }
+        //Proof of work against the retargeted difficulty, required for every block
+        //once the parent has the difficulty version
+        if (CanonicalEncoding.hasDifficulty(currentBlock.getVersion())
+                || (prevBlock != null && CanonicalEncoding.hasDifficulty(prevBlock.getVersion()))) {
+            Integer difficulty = currentBlock.getDifficulty();
+            if (difficulty == null
+                    || difficulty != DifficultyAdjustment.nextDifficulty(parent)
+                    || Miner.calculateZeroPrefix(currentBlock.getHash()) < difficulty) {
+                return VerificationResult.error(
+                        VerificationError.InvalidDifficulty,
+                        currentBlock,
+                        null);
+            }
+        }
 
-                        prevTransaction = transactionList.get(transactionId);
-                    }
+        //Genesis block has no predecessor
+        if (prevBlock == null) {
+            return VerificationResult.success();
+        }
 
-                    //Verify contract transactions
-                    for(Transaction transaction : contractInvokingTransactions) {
-                        //Search contract
-                        byte[] contractAddress = transaction.getOutputs()[0].getPubKey();
-                        Optional<Contract> contractOptional = blockchain.findContract(contractAddress);
-                        if(contractOptional.isEmpty()) {
-                            continue;
-                        }
+        //Check block ids
+        if (prevBlock.getId() + 1 != currentBlock.getId()) {
+            return VerificationResult.error(
+                    VerificationError.InvalidId,
+                    currentBlock,
+                    null);
+        }
+
+        //Check block hashes
+        if (!Arrays.equals(prevBlock.getHash(), currentBlock.getPrevHash())) {
+            return VerificationResult.error(
+                    VerificationError.InvalidPrevHash,
+                    currentBlock,
+                    null);
+        }
+
+        //Check timestamp order
+        if (prevBlock.getTimestamp() >= currentBlock.getTimestamp()) {
+            return VerificationResult.error(
+                    VerificationError.InvalidTimestampOrder,
+                    currentBlock,
+                    null);
+        }
+
+        //Check timestamp order only for non coinbase transactions
+        List<Transaction> transactionList = verifiedTransactions(currentBlock);
+        for (int transactionId = 2; transactionId < transactionList.size(); transactionId++) {
+            if(transactionList.get(transactionId - 1).getTimestamp()
+                    >= transactionList.get(transactionId).getTimestamp()) {
+                return VerificationResult.error(
+                        VerificationError.InvalidTransactionTimestampOrder,
+                        currentBlock,
+                        null);
+            }
+        }
+
+        //unpack contract outgoing transactions
+        //collect contract incoming transactions
+        List<Transaction> contractInvokingTransactions = new ArrayList<>();
+        List<Transaction> contractGeneratedTransactions = new ArrayList<>();
+        for (Transaction transaction : currentBlock.getData().getTransactions()) {
+            if(mayInvokeContract(transaction)) {
+                //Search contract
+                byte[] contractAddress = transaction.getOutputs()[0].getPubKey();
+                Optional<Contract> contractOptional = parent.findContract(contractAddress);
+                if (contractOptional.isEmpty()) {
+                    continue;
+                }
 
-                        try {
-                            //Run contract in context of blockchain before current block
-                            List<HashedBlock> blockchainCopy = blockchain.getBlockchain();
-                            List<HashedBlock> chain = blockchainCopy.subList(0, blockchainCopy.indexOf(currentBlock));
-                            Blockchain subChain = new Blockchain(chain);
-
-                            //Run contract
-                            List<Transaction> contractResult = ContractVm
-                                    .run(contractOptional.get(), transaction, 0, subChain);
-
-                            //Check if output is available in contractGeneratedTransactions
-                            if(contractResult.size() > 0) {
-                                //Remove transaction from contractGeneratedTransactions if present
-                                for(Transaction created : contractResult) {
-                                    boolean found = false;
-                                    for(Transaction present : contractGeneratedTransactions) {
-                                        if(Arrays.equals(created.getTransactionId(), present.getTransactionId())) {
-                                            found = true;
-                                            contractGeneratedTransactions.remove(present);
-                                            break;
-                                        }
-                                    }
-                                    //If generated transactions are not inside contractGeneratedTransactions, fail
-                                    if(!found) {
-                                        return VerificationResult.error(VerificationError.InvalidContractResult, currentBlock, null);
-                                    }
-                                }
+                contractInvokingTransactions.add(transaction);
+            }
+            else if(transaction.isContractFormatted()) {
+                contractGeneratedTransactions.add(transaction);
+            }
+        }
+
+        //Verify contract transactions
+        for(Transaction transaction : contractInvokingTransactions) {
+            //Search contract
+            byte[] contractAddress = transaction.getOutputs()[0].getPubKey();
+            Optional<Contract> contractOptional = parent.findContract(contractAddress);
+            if(contractOptional.isEmpty()) {
+                continue;
+            }
+
+            try {
+                //Run contract in context of blockchain before current block
+                List<Transaction> contractResult = ContractVm
+                        .run(contractOptional.get(), transaction, 0, parent);
+
+                //Check if output is available in contractGeneratedTransactions
+                if(contractResult.size() > 0) {
+                    //Remove transaction from contractGeneratedTransactions if present
+                    for(Transaction created : contractResult) {
+                        boolean found = false;
+                        for(Transaction present : contractGeneratedTransactions) {
+                            if(Arrays.equals(created.getTransactionId(), present.getTransactionId())) {
+                                found = true;
+                                contractGeneratedTransactions.remove(present);
+                                break;
                             }
                         }
-                        catch (ContractException e) {}
-                    }
-
-                    //Check if there are some transactions remaining
-                    if(contractGeneratedTransactions.size() > 0) {
-                        return VerificationResult.error(VerificationError.InvalidContractTransactions, currentBlock, null);
+                        //If generated transactions are not inside contractGeneratedTransactions, fail
+                        if(!found) {
+                            return VerificationResult.error(VerificationError.InvalidContractResult, currentBlock, null);
+                        }
                     }
                 }
+            }
+            catch (ContractException e) {}
+        }
 
-                prevBlock = currentBlock;
+        //Check if there are some transactions remaining
+        if(contractGeneratedTransactions.size() > 0) {
+            return VerificationResult.error(VerificationError.InvalidContractTransactions, currentBlock, null);
+        }
+
+        return VerificationResult.success();
+    }
+
+    //Transactions of the block without the ones generated by contracts,
+    //the coinbase transaction comes first
+    @Nonnull
+    private static List<Transaction> verifiedTransactions(@Nonnull HashedBlock block) {
+        List<Transaction> transactionList = new ArrayList<>();
+        for (Transaction transaction : block.getData().getTransactions()) {
+            if (mayInvokeContract(transaction) || !transaction.isContractFormatted()) {
+                transactionList.add(transaction);
             }
+        }
+        return transactionList;
+    }
 
-            return VerificationResult.success();
+    //Single input paying a 32 byte contract address
+    private static boolean mayInvokeContract(@Nonnull Transaction transaction) {
+        return transaction.getInputs().length == 1
+                && transaction.getOutputs().length >= 1
+                && transaction.getOutputs()[0].getPubKey().length == 32;
+    }
+
+    //Encoding versions of the block and everything inside it
+    private static boolean hasSupportedVersions(@Nonnull HashedBlock block) {
+        if (!CanonicalEncoding.isSupportedVersion(block.getVersion())) {
+            return false;
+        }
+        for (Transaction transaction : block.getData().getTransactions()) {
+            if (!CanonicalEncoding.isSupportedVersion(transaction.getVersion())) {
+                return false;
+            }
+        }
+        for (Contract contract : block.getData().getContracts()) {
+            if (!CanonicalEncoding.isSupportedVersion(contract.getVersion())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //Runs checkBlock for a range of blocks, failed blocks store their result
+    private static class BlockCheckTask extends RecursiveAction {
+        private final ChainSnapshot chain;
+        private final List<HashedBlock> blockList;
+        private final int blockReward;
+        private final VerificationResult[] blockResults;
+        private final int from;
+        private final int to;
+
+        private BlockCheckTask(
+                @Nonnull ChainSnapshot chain,
+                @Nonnull List<HashedBlock> blockList,
+                int blockReward,
+                @Nonnull VerificationResult[] blockResults,
+                int from,
+                int to) {
+            this.chain = chain;
+            this.blockList = blockList;
+            this.blockReward = blockReward;
+            this.blockResults = blockResults;
+            this.from = from;
+            this.to = to;
         }
-        finally {
-            blockchain.endReadAccess();
+
+        @Override
+        protected void compute() {
+            if (to - from <= BLOCKS_PER_TASK) {
+                for (int blockIndex = from; blockIndex < to; blockIndex++) {
+                    VerificationResult result = checkBlock(
+                            chain.pin(blockIndex), blockList.get(blockIndex), blockReward, blockIndex == 0);
+                    if (!result.isSuccess()) {
+                        blockResults[blockIndex] = result;
+                    }
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new BlockCheckTask(chain, blockList, blockReward, blockResults, from, middle),
+                    new BlockCheckTask(chain, blockList, blockReward, blockResults, middle, to));
         }
     }
 
@@ -202,7 +368,11 @@ public class BlockchainVerificationUtils {
         InvalidTransaction,
         InvalidTransactionTimestampOrder,
         InvalidContractResult,
-        InvalidContractTransactions
+        InvalidContractTransactions,
+        InvalidVersion,
+        InvalidDifficulty,
+        //Block was valid, but another block became the tip before it was appended
+        TipChanged
     }
 
     public static class VerificationResult {
@@ -0,0 +1,108 @@
+package com.philippkutsch.tuchain.utils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.philippkutsch.tuchain.chain.utils.ByteArrayKey;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SignatureCache
+ *
+ * Bounded set of signatures that were already verified successfully.
+ * An entry is the SHA-256 of (sighash, public key, signature), so a transaction admitted
+ * to the queue is not verified again once its block arrives or the chain is audited.
+ * Only valid signatures are stored, a miss always falls back to a full verification.
+ * Thread safe, the shared instance is used by all transaction verifications.
+ */
+public final class SignatureCache {
+    public static final int DEFAULT_SIZE = 100_000;
+
+    private static final SignatureCache SHARED = new SignatureCache(DEFAULT_SIZE);
+
+    private final Cache<ByteArrayKey, Boolean> validSignatures;
+
+    public SignatureCache(int maximumSize) {
+        this.validSignatures = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    @Nonnull
+    public static SignatureCache shared() {
+        return SHARED;
+    }
+
+    //Hash of the signed transaction bytes, computed once per transaction
+    @Nonnull
+    public static byte[] sighash(@Nonnull byte[] signedBytes) {
+        return newSha256().digest(signedBytes);
+    }
+
+    public boolean contains(
+            @Nonnull byte[] sighash,
+            @Nonnull byte[] publicKey,
+            @Nonnull byte[] signature) {
+        return validSignatures.getIfPresent(key(sighash, publicKey, signature)) != null;
+    }
+
+    public void addValid(
+            @Nonnull byte[] sighash,
+            @Nonnull byte[] publicKey,
+            @Nonnull byte[] signature) {
+        validSignatures.put(key(sighash, publicKey, signature), Boolean.TRUE);
+    }
+
+    public long size() {
+        return validSignatures.size();
+    }
+
+    public long getHits() {
+        return validSignatures.stats().hitCount();
+    }
+
+    public long getMisses() {
+        return validSignatures.stats().missCount();
+    }
+
+    //1.0 if there were no lookups yet
+    public double getHitRate() {
+        return validSignatures.stats().hitRate();
+    }
+
+    @Nonnull
+    public String describe() {
+        CacheStats stats = validSignatures.stats();
+        return String.format("Signature cache: %d entries, %d hits, %d misses, hit rate %.1f%%",
+                validSignatures.size(), stats.hitCount(), stats.missCount(), stats.hitRate() * 100);
+    }
+
+    //Public key length is included, so key and signature bytes can not be shifted
+    @Nonnull
+    private static ByteArrayKey key(
+            @Nonnull byte[] sighash,
+            @Nonnull byte[] publicKey,
+            @Nonnull byte[] signature) {
+        MessageDigest digest = newSha256();
+        digest.update(sighash);
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(publicKey.length).array());
+        digest.update(publicKey);
+        digest.update(signature);
+        return new ByteArrayKey(digest.digest());
+    }
+
+    @Nonnull
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -1,9 +1,9 @@
 package com.philippkutsch.tuchain.utils;
 
-import com.philippkutsch.tuchain.RsaKeys;
-import com.philippkutsch.tuchain.chain.Blockchain;
+import com.philippkutsch.tuchain.Keys;
+import com.philippkutsch.tuchain.chain.CanonicalEncoding;
+import com.philippkutsch.tuchain.chain.ChainView;
 import com.philippkutsch.tuchain.chain.Transaction;
-import com.philippkutsch.tuchain.chain.utils.ChainUtils;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -26,6 +26,10 @@ public class TransactionVerificationUtils {
     public static VerificationResult verifyCoinbaseTransaction(
             @Nonnull Transaction transaction,
             int coinbaseReward) {
+        if(!CanonicalEncoding.isSupportedVersion(transaction.getVersion())) {
+            return VerificationResult.error(VerificationError.InvalidVersion);
+        }
+
         //Check if we have one input
         if(transaction.getInputs().length != 1) {
             return VerificationResult.error(VerificationError.CoinbaseInvalidInputCount);
@@ -59,7 +63,7 @@ public class TransactionVerificationUtils {
 
         //Check pupKey
         try {
-            new RsaKeys(coinbaseOutput.getPubKey(), null);
+            Keys.forPublicKey(coinbaseOutput.getPubKey());
         }
         catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
             return VerificationResult.error(VerificationError.InvalidOutputPubKey);
@@ -70,49 +74,52 @@ public class TransactionVerificationUtils {
 
     @Nonnull
     public static VerificationResult verifyTransaction(
-            @Nonnull Blockchain blockchain,
+            @Nonnull ChainView blockchain,
             @Nonnull Transaction transaction,
             boolean newTransaction) {
-        try {
-            blockchain.beginReadAccess();
+        if(!CanonicalEncoding.isSupportedVersion(transaction.getVersion())) {
+            return VerificationResult.error(VerificationError.InvalidVersion);
+        }
+
+        //Check if we have at least one input
+        if(transaction.getInputs().length == 0) {
+            return VerificationResult.error(VerificationError.InvalidInputCount);
+        }
 
-            //Check if we have at least one input
-            if(transaction.getInputs().length == 0) {
-                return VerificationResult.error(VerificationError.InvalidInputCount);
+        //Verify inputs and signature
+        int inputSum = 0;
+        byte[] transactionBytes = transaction.toSignAbleTransaction().toSignBytes();
+        byte[] sighash = SignatureCache.sighash(transactionBytes);
+        SignatureCache signatureCache = SignatureCache.shared();
+        for(Transaction.SignedInput input : transaction.getInputs()) {
+            //Find target transaction and output
+            Optional<Transaction> transactionOptional =
+                    blockchain.findTransaction(input.getTxId());
+            if(transactionOptional.isEmpty()) {
+                return VerificationResult.error(VerificationError.InvalidInputTxId);
             }
 
-            //Verify inputs and signature
-            int inputSum = 0;
-            byte[] transactionBytes = ChainUtils
-                    .encodeToBytes(transaction.toSignAbleTransaction());
-            for(Transaction.SignedInput input : transaction.getInputs()) {
-                //Find target transaction and output
-                Optional<Transaction> transactionOptional =
-                        blockchain.findTransaction(input.getTxId());
-                if(transactionOptional.isEmpty()) {
-                    return VerificationResult.error(VerificationError.InvalidInputTxId);
-                }
+            //Check if transaction vOut is present
+            Transaction targetTransaction = transactionOptional.get();
+            if(input.getvOut() > targetTransaction.getOutputs().length - 1) {
+                return VerificationResult.error(VerificationError.InvalidInputVOut);
+            }
 
-                //Check if transaction vOut is present
-                Transaction targetTransaction = transactionOptional.get();
-                if(input.getvOut() > targetTransaction.getOutputs().length - 1) {
-                    return VerificationResult.error(VerificationError.InvalidInputVOut);
+            //Check if transaction is already spent
+            if(newTransaction) {
+                if(!blockchain.isUnspent(input.getTxId(), input.getvOut())) {
+                    return VerificationResult.error(VerificationError.InvalidAlreadySpent);
                 }
+            }
 
-                //Check if transaction is already spent
-                if(newTransaction) {
-                    Optional<Transaction.Input> referencingInput = blockchain
-                            .findTransactionInput(targetTransaction.getTransactionId(), input.getvOut());
-                    if(referencingInput.isPresent()) {
-                        return VerificationResult.error(VerificationError.InvalidAlreadySpent);
-                    }
-                }
+            //Load target output pubKey
+            Transaction.Output targetOutput = targetTransaction.getOutputs()[input.getvOut()];
 
-                //Load target output pubKey
-                Transaction.Output targetOutput = targetTransaction.getOutputs()[input.getvOut()];
-                RsaKeys outputKey;
+            //Signature already verified, e.g. when the transaction was queued
+            if(!signatureCache.contains(sighash, targetOutput.getPubKey(), input.getSignature())) {
+                Keys outputKey;
                 try {
-                    outputKey = new RsaKeys(targetOutput.getPubKey(), null);
+                    outputKey = Keys.forPublicKey(targetOutput.getPubKey());
                 }
                 catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
                     return VerificationResult.error(VerificationError.InvalidTargetOutputPubKey);
@@ -128,33 +135,31 @@ public class TransactionVerificationUtils {
                 catch (NoSuchAlgorithmException | InvalidKeyException | SignatureException e) {
                     return VerificationResult.error(VerificationError.InvalidInputSignatureFormat);
                 }
-
-                //Sum inputs
-                inputSum += targetOutput.getAmount();
-            }
-
-            //Check if we have at least one output
-            if(transaction.getOutputs().length == 0) {
-                return VerificationResult.error(VerificationError.InvalidOutputCount);
+                signatureCache.addValid(sighash, targetOutput.getPubKey(), input.getSignature());
             }
 
-            //Check outputs pubKeys and sum amount
-            int outputSum = 0;
-            for(Transaction.Output output : transaction.getOutputs()) {
-                outputSum += output.getAmount();
-                //Do not verify pubKey because contract addresses are not valid pubKeys
-            }
+            //Sum inputs
+            inputSum += targetOutput.getAmount();
+        }
 
-            //Check if sum of inputs = sum of outputs
-            if(inputSum != outputSum) {
-                return VerificationResult.error(VerificationError.InvalidInputOutputSum);
-            }
+        //Check if we have at least one output
+        if(transaction.getOutputs().length == 0) {
+            return VerificationResult.error(VerificationError.InvalidOutputCount);
+        }
 
-            return VerificationResult.success();
+        //Check outputs pubKeys and sum amount
+        int outputSum = 0;
+        for(Transaction.Output output : transaction.getOutputs()) {
+            outputSum += output.getAmount();
+            //Do not verify pubKey because contract addresses are not valid pubKeys
         }
-        finally {
-            blockchain.endReadAccess();
+
+        //Check if sum of inputs = sum of outputs
+        if(inputSum != outputSum) {
+            return VerificationResult.error(VerificationError.InvalidInputOutputSum);
         }
+
+        return VerificationResult.success();
     }
 
     public enum VerificationError {
@@ -172,7 +177,8 @@ public class TransactionVerificationUtils {
         InvalidTargetOutputPubKey,
         InvalidInputSignatureFormat,
         InvalidInputSignature,
-        InvalidInputOutputSum
+        InvalidInputOutputSum,
+        InvalidVersion
     }
 
     public static class VerificationResult {
@@ -0,0 +1,93 @@
+package com.philippkutsch.tuchain;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyFactory;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * KeysBenchmark
+ *
+ * Cost of verifying one input signature from its X.509 public key bytes.
+ * uncached repeats what every verification did before: KeyFactory lookup, key parsing
+ * and a new Signature engine. cached goes through Keys with its key cache and
+ * per thread Signature engine. The decode benchmarks only measure loading the public key,
+ * sign measures signing with the private key. Every benchmark runs for RSA-2048 and Ed25519.
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=com.philippkutsch.tuchain.KeysBenchmark -Dexec.classpathScope=test
+ * or from the IDE.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeysBenchmark {
+    @Param({"rsa", "ed25519"})
+    public String keyTypeName;
+
+    private KeyType keyType;
+    private Keys keys;
+    private byte[] publicKeyBytes;
+    private byte[] data;
+    private byte[] signature;
+
+    @Setup
+    public void setup() throws Exception {
+        keyType = KeyType.forName(keyTypeName);
+        keys = Keys.generate(keyType);
+        publicKeyBytes = keys.getPublicKeyBytes();
+        data = "transaction to sign".getBytes(StandardCharsets.UTF_8);
+        signature = keys.signData(data);
+    }
+
+    @Benchmark
+    public boolean uncached() throws Exception {
+        KeyFactory keyFactory = KeyFactory.getInstance(keyType.getKeyAlgorithm());
+        Signature verifier = Signature.getInstance(keyType.getSignatureAlgorithm());
+        verifier.initVerify(keyFactory.generatePublic(new X509EncodedKeySpec(publicKeyBytes)));
+        verifier.update(data);
+        return verifier.verify(signature);
+    }
+
+    @Benchmark
+    public boolean cached() throws Exception {
+        return new Keys(keyType, publicKeyBytes, null).verifyData(data, signature);
+    }
+
+    @Benchmark
+    public Object decodeUncached() throws Exception {
+        return KeyFactory.getInstance(keyType.getKeyAlgorithm()).generatePublic(new X509EncodedKeySpec(publicKeyBytes));
+    }
+
+    @Benchmark
+    public Object decodeCached() throws Exception {
+        return new Keys(keyType, publicKeyBytes, null);
+    }
+
+    @Benchmark
+    public byte[] sign() throws Exception {
+        return keys.signData(data);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(KeysBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,93 @@
+package com.philippkutsch.tuchain;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.spec.InvalidKeySpecException;
+
+public class KeysTest {
+    private static final byte[] DATA = "transaction".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void ed25519_shouldSignAndVerify() throws Exception {
+        Keys keys = Keys.generate(KeyType.ED25519);
+        assert keys.getKeyType() == KeyType.ED25519;
+        assert keys.getPublicKeyBytes().length == 44;
+
+        byte[] signature = keys.signData(DATA);
+        assert signature.length == 64;
+
+        //Output keys declare their type in the X.509 algorithm identifier
+        Keys publicKey = Keys.forPublicKey(keys.getPublicKeyBytes());
+        assert publicKey.getKeyType() == KeyType.ED25519;
+        assert publicKey.verifyData(DATA, signature);
+        assert !publicKey.verifyData("other".getBytes(StandardCharsets.UTF_8), signature);
+    }
+
+    @Test
+    public void keyTypes_shouldNotVerifyEachOthersSignatures() throws Exception {
+        Keys rsa = Keys.generate(KeyType.RSA);
+        Keys ed25519 = Keys.generate(KeyType.ED25519);
+        assert rsa.getKeyType() == KeyType.RSA;
+        assert Keys.forPublicKey(rsa.getPublicKeyBytes()).getKeyType() == KeyType.RSA;
+
+        //Same thread alternates between both signature engines
+        byte[] rsaSignature = rsa.signData(DATA);
+        byte[] ed25519Signature = ed25519.signData(DATA);
+        assert rsa.verifyData(DATA, rsaSignature);
+        assert ed25519.verifyData(DATA, ed25519Signature);
+        assert !ed25519.verifyData(DATA, new byte[64]);
+    }
+
+    @Test
+    public void keys_shouldRejectKeysOfAnotherType() throws Exception {
+        Keys rsa = Keys.generate(KeyType.RSA);
+        Keys ed25519 = Keys.generate(KeyType.ED25519);
+        assertRejected(KeyType.ED25519, rsa.getPublicKeyBytes(), null);
+        assertRejected(KeyType.RSA, ed25519.getPublicKeyBytes(), null);
+        assertRejected(KeyType.ED25519, null, rsa.getPrivateKeyBytes());
+        assertRejected(KeyType.RSA, null, ed25519.getPrivateKeyBytes());
+
+        try {
+            Keys.forPublicKey(new byte[32]);
+            assert false;
+        }
+        catch (InvalidKeySpecException e) {
+            //Contract addresses are no public keys
+        }
+    }
+
+    @Test
+    public void wallet_shouldLoadKeysOfDeclaredType() throws Exception {
+        Keys ed25519 = Keys.generate(KeyType.ED25519);
+        Wallet wallet = new Wallet(ed25519.getPrivateKeyBytes(), ed25519.getPublicKeyBytes(), KeyType.ED25519);
+        assert wallet.getKeys().getKeyType() == KeyType.ED25519;
+
+        //Wallets without a key type are RSA wallets
+        Wallet legacy = new Wallet(ed25519.getPrivateKeyBytes(), ed25519.getPublicKeyBytes());
+        assert legacy.getKeyType() == KeyType.RSA;
+        try {
+            legacy.getKeys();
+            assert false;
+        }
+        catch (InvalidKeySpecException e) {
+            //Expected, the keys are no RSA keys
+        }
+    }
+
+    @Test
+    public void forName_shouldTreatMissingTypeAsRsa() {
+        assert KeyType.forName(null) == KeyType.RSA;
+        assert KeyType.forName("ed25519") == KeyType.ED25519;
+    }
+
+    private static void assertRejected(KeyType keyType, byte[] publicKey, byte[] privateKey) throws Exception {
+        try {
+            new Keys(keyType, publicKey, privateKey);
+            assert false : "Accepted key as " + keyType.getName();
+        }
+        catch (InvalidKeySpecException e) {
+            //Expected
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.philippkutsch.tuchain.chain;
+
+import com.philippkutsch.tuchain.chain.utils.ChainUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+public class BlockchainTest {
+    private static final byte[] PUB_KEY_A = "PubKeyA".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PUB_KEY_B = "PubKeyB".getBytes(StandardCharsets.UTF_8);
+
+    private Transaction coinbaseA;
+    private Transaction coinbaseB;
+    private Transaction spendA;
+    private Contract contract;
+    private Blockchain blockchain;
+
+    @Before
+    public void setup() {
+        coinbaseA = Transaction.buildCoinbaseTransaction(1, 100, new byte[0], PUB_KEY_A);
+        coinbaseB = Transaction.buildCoinbaseTransaction(2, 100, new byte[0], PUB_KEY_B);
+        spendA = new Transaction(3, new Transaction.SignedInput[]{
+                new Transaction.SignedInput(coinbaseA.getTransactionId(), 0, new byte[0])
+        }, new Transaction.Output[]{
+                new Transaction.Output(60, PUB_KEY_B),
+                new Transaction.Output(40, PUB_KEY_A)
+        });
+        contract = new Contract(new SignAbleContract(
+                1, 2, 100, PUB_KEY_A, "Test", "Test"), new byte[0]);
+
+        List<HashedBlock> blocks = new ArrayList<>();
+        blocks.add(new HashedBlock(1, new byte[0],
+                new BlockBody(new Transaction[]{coinbaseA}, new Contract[0]), 0, 0, new byte[0]));
+        blocks.add(new HashedBlock(2, new byte[0],
+                new BlockBody(new Transaction[]{coinbaseB, spendA}, new Contract[]{contract}), 0, 0, new byte[0]));
+        blockchain = new Blockchain(blocks);
+    }
+
+    @Test
+    public void findTransaction_shouldFindIndexedTransactions() {
+        Optional<Transaction> found = blockchain.findTransaction(spendA.getTransactionId());
+        assert found.isPresent();
+        assert found.get().equals(spendA);
+
+        Optional<HashedBlock> block = blockchain.findTransactionBlock(spendA.getTransactionId());
+        assert block.isPresent();
+        assert block.get().getId() == 2;
+
+        assert blockchain.findTransaction(new byte[32]).isEmpty();
+        assert blockchain.findTransactionBlock(new byte[32]).isEmpty();
+    }
+
+    @Test
+    public void findTransaction_shouldFindTransactionsOfAddedBlocks() {
+        Transaction coinbaseC = Transaction.buildCoinbaseTransaction(4, 100, new byte[0], PUB_KEY_A);
+        assert blockchain.findTransaction(coinbaseC.getTransactionId()).isEmpty();
+
+        blockchain.addBlock(new HashedBlock(3, new byte[0],
+                new BlockBody(new Transaction[]{coinbaseC}, new Contract[0]), 0, 0, new byte[0]));
+        assert blockchain.findTransaction(coinbaseC.getTransactionId()).isPresent();
+        assert blockchain.findTransactionBlock(coinbaseC.getTransactionId()).get().getId() == 3;
+    }
+
+    @Test
+    public void findContract_shouldFindIndexedContract() {
+        Optional<Contract> found = blockchain.findContract(contract.getContractId());
+        assert found.isPresent();
+        assert found.get().equals(contract);
+        assert blockchain.findContract(new byte[32]).isEmpty();
+    }
+
+    @Test
+    public void findTransaction_shouldWorkAfterGsonDecoding() {
+        Blockchain decoded = ChainUtils.decodeFromString(
+                ChainUtils.encodeToString(blockchain), Blockchain.class);
+        assert decoded.findTransaction(spendA.getTransactionId()).isPresent();
+        assert decoded.findTransactionBlock(coinbaseB.getTransactionId()).get().getId() == 2;
+        assert decoded.findContract(contract.getContractId()).isPresent();
+    }
+
+    @Test
+    public void findUTXO_shouldSkipSpentOutputs() {
+        List<UnspentTransactionOutput> uTXOListA = blockchain.findUTXO(PUB_KEY_A);
+        assert uTXOListA.size() == 1;
+        assert Arrays.equals(uTXOListA.get(0).getTxId(), spendA.getTransactionId());
+        assert uTXOListA.get(0).getvOut() == 1;
+        assert uTXOListA.get(0).getAmount() == 40;
+
+        //Chain order: coinbase first, then the payment
+        List<UnspentTransactionOutput> uTXOListB = blockchain.findUTXO(PUB_KEY_B);
+        assert uTXOListB.size() == 2;
+        assert Arrays.equals(uTXOListB.get(0).getTxId(), coinbaseB.getTransactionId());
+        assert Arrays.equals(uTXOListB.get(1).getTxId(), spendA.getTransactionId());
+
+        assert !blockchain.isUnspent(coinbaseA.getTransactionId(), 0);
+        assert blockchain.isUnspent(spendA.getTransactionId(), 0);
+        assert !blockchain.isUnspent(spendA.getTransactionId(), 2);
+    }
+
+    @Test
+    public void findUTXOTransaction_shouldReturnDistinctTransactions() {
+        List<Transaction> transactions = blockchain.findUTXOTransaction(PUB_KEY_B);
+        assert transactions.size() == 2;
+        assert transactions.get(0).equals(coinbaseB);
+        assert transactions.get(1).equals(spendA);
+    }
+
+    @Test
+    public void verifyUtxoSet_shouldMatchRebuild() {
+        Transaction spendB = new Transaction(5, new Transaction.SignedInput[]{
+                new Transaction.SignedInput(coinbaseB.getTransactionId(), 0, new byte[0])
+        }, new Transaction.Output[]{
+                new Transaction.Output(100, PUB_KEY_A)
+        });
+        blockchain.addBlock(new HashedBlock(3, new byte[0],
+                new BlockBody(new Transaction[]{spendB}, new Contract[0]), 0, 0, new byte[0]));
+
+        assert blockchain.verifyUtxoSet().isEmpty();
+        assert blockchain.findUTXO(PUB_KEY_B).size() == 1;
+    }
+
+    @Test
+    public void getBalance_shouldSumUnspentOutputs() {
+        assert blockchain.getBalance(PUB_KEY_A) == 40;
+        assert blockchain.getBalance(PUB_KEY_B) == 160;
+        assert blockchain.getBalance("Unknown".getBytes(StandardCharsets.UTF_8)) == 0;
+    }
+
+    @Test
+    public void findTransactionsTo_shouldReturnAllPayingTransactions() {
+        List<Transaction> transactionsToA = blockchain.findTransactionsTo(PUB_KEY_A);
+        assert transactionsToA.size() == 2;
+        assert transactionsToA.get(0).equals(coinbaseA);
+        assert transactionsToA.get(1).equals(spendA);
+
+        assert blockchain.findTransactionsTo("Unknown".getBytes(StandardCharsets.UTF_8)).isEmpty();
+    }
+
+    @Test
+    public void findSpendingTransaction_shouldFindSpender() {
+        Optional<Transaction> spender = blockchain.findSpendingTransaction(coinbaseA.getTransactionId(), 0);
+        assert spender.isPresent();
+        assert spender.get().equals(spendA);
+        assert blockchain.findSpendingTransaction(coinbaseA.getTransactionId(), 1).isEmpty();
+        assert blockchain.findSpendingTransaction(spendA.getTransactionId(), 0).isEmpty();
+
+        Optional<Transaction.Input> input = blockchain.findTransactionInput(coinbaseA.getTransactionId(), 0);
+        assert input.isPresent();
+        assert Arrays.equals(input.get().getTxId(), coinbaseA.getTransactionId());
+        assert blockchain.findTransactionInput(coinbaseB.getTransactionId(), 0).isEmpty();
+    }
+
+    @Test
+    public void findReferencingTransaction_shouldFindFirstReference() {
+        assert blockchain.findReferencingTransaction(coinbaseA.getTransactionId()).get().equals(spendA);
+        assert blockchain.findReferencingTransaction(coinbaseB.getTransactionId()).isEmpty();
+    }
+
+    @Test
+    public void snapshot_shouldNotSeeLaterBlocks() {
+        ChainSnapshot snapshot = blockchain.snapshot();
+        Transaction spendB = new Transaction(5, new Transaction.SignedInput[]{
+                new Transaction.SignedInput(coinbaseB.getTransactionId(), 0, new byte[0])
+        }, new Transaction.Output[]{
+                new Transaction.Output(100, PUB_KEY_A)
+        });
+        blockchain.addBlock(new HashedBlock(3, new byte[0],
+                new BlockBody(new Transaction[]{spendB}, new Contract[0]), 0, 0, new byte[0]));
+
+        assert snapshot.getHeight() == 2;
+        assert snapshot.getBlockchain().size() == 2;
+        assert snapshot.getLastBlock().getId() == 2;
+        assert snapshot.findTransaction(spendB.getTransactionId()).isEmpty();
+        assert snapshot.isUnspent(coinbaseB.getTransactionId(), 0);
+        assert snapshot.getBalance(PUB_KEY_A) == 40;
+        assert snapshot.getBalance(PUB_KEY_B) == 160;
+
+        assert blockchain.getHeight() == 3;
+        assert !blockchain.isUnspent(coinbaseB.getTransactionId(), 0);
+        assert blockchain.getBalance(PUB_KEY_A) == 140;
+        assert blockchain.getBalance(PUB_KEY_B) == 60;
+    }
+
+    @Test
+    public void pin_shouldViewChainPrefix() {
+        ChainSnapshot genesis = blockchain.snapshot().pin(1);
+        assert genesis.getHeight() == 1;
+        assert genesis.findBlock(2).isEmpty();
+        assert genesis.findBlock(1).isPresent();
+        assert genesis.findContract(contract.getContractId()).isEmpty();
+        assert genesis.isUnspent(coinbaseA.getTransactionId(), 0);
+        assert genesis.findSpendingTransaction(coinbaseA.getTransactionId(), 0).isEmpty();
+        assert genesis.getBalance(PUB_KEY_A) == 100;
+        assert genesis.getBalance(PUB_KEY_B) == 0;
+    }
+
+    @Test
+    public void compareAndAppend_shouldRejectStaleSnapshot() {
+        ChainSnapshot snapshot = blockchain.snapshot();
+        HashedBlock block3 = new HashedBlock(3, new byte[0],
+                new BlockBody(new Transaction[0], new Contract[0]), 0, 0, new byte[0]);
+        assert blockchain.compareAndAppend(snapshot, block3);
+        assert !blockchain.compareAndAppend(snapshot, block3);
+        assert blockchain.getHeight() == 3;
+    }
+}
@@ -0,0 +1,67 @@
+package com.philippkutsch.tuchain.chain;
+
+import com.google.common.hash.Hashing;
+import com.philippkutsch.tuchain.chain.utils.ChainUtils;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class CanonicalEncodingTest {
+    private static final byte[] PUB_KEY = "PubKey".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void getTransactionId_shouldKeepJsonHashForLegacyTransactions() {
+        Transaction legacy = buildTransaction(null, new byte[]{1});
+        byte[] jsonHash = Hashing.sha256().hashBytes(ChainUtils.encodeToBytes(legacy)).asBytes();
+        assert Arrays.equals(legacy.getTransactionId(), jsonHash);
+        assert !ChainUtils.encodeToString(legacy).contains("version");
+
+        Transaction binary = buildTransaction(CanonicalEncoding.VERSION_BINARY, new byte[]{1});
+        assert !Arrays.equals(binary.getTransactionId(), legacy.getTransactionId());
+        assert Arrays.equals(binary.getTransactionId(),
+                buildTransaction(CanonicalEncoding.VERSION_BINARY, new byte[]{1}).getTransactionId());
+    }
+
+    @Test
+    public void toSignBytes_shouldNotDependOnSignatures() {
+        Transaction signedA = buildTransaction(CanonicalEncoding.VERSION_BINARY, new byte[]{1});
+        Transaction signedB = buildTransaction(CanonicalEncoding.VERSION_BINARY, new byte[]{2});
+        assert !Arrays.equals(signedA.getTransactionId(), signedB.getTransactionId());
+        assert Arrays.equals(
+                signedA.toSignAbleTransaction().toSignBytes(),
+                signedB.toSignAbleTransaction().toSignBytes());
+
+        SignAbleContract signAbleContract = new SignAbleContract(
+                1, 2, 100, PUB_KEY, "Title", "Description", CanonicalEncoding.VERSION_BINARY);
+        Contract contract = signAbleContract.toContract(new byte[]{1});
+        assert contract.getVersion() == CanonicalEncoding.VERSION_BINARY;
+        assert Arrays.equals(contract.toSignAbleContract().toSignBytes(), signAbleContract.toSignBytes());
+    }
+
+    @Test
+    public void hash_shouldCommitToBlockBody() {
+        BlockBody bodyA = new BlockBody(new Transaction[]{
+                buildTransaction(CanonicalEncoding.VERSION_BINARY, new byte[]{1})}, new Contract[0]);
+        BlockBody bodyB = new BlockBody(new Transaction[]{
+                buildTransaction(CanonicalEncoding.VERSION_BINARY, new byte[]{2})}, new Contract[0]);
+        HashAbleBlock blockA = new HashAbleBlock(2, new byte[32], bodyA, CanonicalEncoding.VERSION_BINARY);
+        HashAbleBlock blockB = new HashAbleBlock(2, new byte[32], bodyB, CanonicalEncoding.VERSION_BINARY);
+        assert !Arrays.equals(blockA.hash(), blockB.hash());
+
+        HashedBlock hashedBlock = new HashedBlock(2, new byte[32], bodyA, 0, 0, blockA.hash(),
+                CanonicalEncoding.VERSION_BINARY);
+        assert hashedBlock.isHeaderValid();
+        HashedBlock decoded = ChainUtils.decodeFromString(ChainUtils.encodeToString(hashedBlock), HashedBlock.class);
+        assert decoded.isHeaderValid();
+        assert decoded.equals(hashedBlock);
+    }
+
+    private static Transaction buildTransaction(Integer version, byte[] signature) {
+        return new Transaction(1, new Transaction.SignedInput[]{
+                new Transaction.SignedInput(new byte[32], 0, signature)
+        }, new Transaction.Output[]{
+                new Transaction.Output(10, PUB_KEY)
+        }, version);
+    }
+}
@@ -0,0 +1,42 @@
+package com.philippkutsch.tuchain.chain;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DifficultyAdjustmentTest {
+    @Test
+    public void nextDifficulty_shouldKeepDifficultyBetweenRetargets() {
+        assert DifficultyAdjustment.nextDifficulty(new Blockchain().snapshot())
+                == DifficultyAdjustment.INITIAL_DIFFICULTY;
+        assert DifficultyAdjustment.nextDifficulty(buildChain(5, 1)) == 22;
+        assert DifficultyAdjustment.nextDifficulty(buildChain(DifficultyAdjustment.RETARGET_INTERVAL,
+                DifficultyAdjustment.TARGET_BLOCK_TIME_MS)) == 22;
+    }
+
+    @Test
+    public void nextDifficulty_shouldFollowBlockTime() {
+        int interval = DifficultyAdjustment.RETARGET_INTERVAL;
+        long target = DifficultyAdjustment.TARGET_BLOCK_TIME_MS;
+        //Twice as fast: one bit more
+        assert DifficultyAdjustment.nextDifficulty(buildChain(interval, target / 2)) == 23;
+        //Much faster: limited to MAX_STEP
+        assert DifficultyAdjustment.nextDifficulty(buildChain(interval, 1)) == 22 + DifficultyAdjustment.MAX_STEP;
+        //Twice as slow: one bit less
+        assert DifficultyAdjustment.nextDifficulty(buildChain(interval, target * 2)) == 21;
+        //Within a factor of two: unchanged
+        assert DifficultyAdjustment.nextDifficulty(buildChain(interval, target * 3 / 2)) == 22;
+    }
+
+    //Chain of blockCount blocks with difficulty 22, blockTime apart
+    private static ChainSnapshot buildChain(int blockCount, long blockTime) {
+        List<HashedBlock> blocks = new ArrayList<>();
+        for(int i = 0; i < blockCount; i++) {
+            blocks.add(new HashedBlock(i + 1, new byte[0],
+                    new BlockBody(new Transaction[0], new Contract[0]), 1000 + i * blockTime, 0, new byte[0],
+                    CanonicalEncoding.CURRENT_VERSION, null, 22));
+        }
+        return new Blockchain(blocks).snapshot();
+    }
+}
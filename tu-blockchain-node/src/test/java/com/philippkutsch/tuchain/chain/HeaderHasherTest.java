@@ -0,0 +1,66 @@
+package com.philippkutsch.tuchain.chain;
+
+import com.philippkutsch.tuchain.modules.mining.Miner;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class HeaderHasherTest {
+    private static final byte[] PUB_KEY = "PubKey".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void hash_shouldMatchHashAbleBlockForAllVersions() {
+        BlockBody body = new BlockBody(new Transaction[]{
+                Transaction.buildCoinbaseTransaction(1, 100, new byte[0], PUB_KEY)
+        }, new Contract[0]);
+        Integer[] versions = {null, CanonicalEncoding.VERSION_BINARY,
+                CanonicalEncoding.VERSION_BODY_DIGEST, CanonicalEncoding.VERSION_MERKLE_ROOT};
+        for(Integer version : versions) {
+            Block block = new Block(2, new byte[32], body, version);
+            HeaderHasher headerHasher = new HeaderHasher(block);
+            for(long nuOnce = 0; nuOnce < 3; nuOnce++) {
+                HashAbleBlock hashAbleBlock = HashAbleBlock.fromBlock(block);
+                hashAbleBlock.setTimestamp(1000 + nuOnce);
+                hashAbleBlock.setNuOnce(nuOnce);
+                assert Arrays.equals(headerHasher.hash(1000 + nuOnce, nuOnce), hashAbleBlock.hash());
+            }
+        }
+    }
+
+    //Benchmark of the mining kernel, prints hash rate and allocations per hash
+    @Test
+    public void hashInto_shouldNotAllocatePerHash() {
+        BlockBody body = new BlockBody(new Transaction[]{
+                Transaction.buildCoinbaseTransaction(1, 100, new byte[0], PUB_KEY)
+        }, new Contract[0]);
+        HeaderHasher headerHasher = new HeaderHasher(
+                new Block(2, new byte[32], body, CanonicalEncoding.CURRENT_VERSION));
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        byte[] hash = new byte[HeaderHasher.HASH_LENGTH];
+
+        //Warm up so the measured loop runs compiled
+        long zeroBits = 0;
+        for(long nuOnce = 0; nuOnce < 50_000; nuOnce++) {
+            headerHasher.hashInto(1000, nuOnce, hash);
+            zeroBits += Miner.calculateZeroPrefix(hash);
+        }
+
+        int hashes = 200_000;
+        long allocatedBefore = threadBean.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for(long nuOnce = 0; nuOnce < hashes; nuOnce++) {
+            headerHasher.hashInto(1000, nuOnce, hash);
+            zeroBits += Miner.calculateZeroPrefix(hash);
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = threadBean.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        double bytesPerHash = allocated / (double) hashes;
+        System.out.println("Mining kernel: " + (hashes * 1_000_000L / nanos) + " kh/s, "
+                + bytesPerHash + " bytes allocated per hash (" + zeroBits + " zero bits)");
+        assert bytesPerHash < 1.0;
+    }
+}
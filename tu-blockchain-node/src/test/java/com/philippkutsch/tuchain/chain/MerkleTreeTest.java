@@ -0,0 +1,70 @@
+package com.philippkutsch.tuchain.chain;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+public class MerkleTreeTest {
+    private static final byte[] PUB_KEY = "PubKey".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void prove_shouldVerifyEveryLeaf() {
+        for(int transactionCount = 1; transactionCount <= 7; transactionCount++) {
+            BlockBody body = buildBody(transactionCount, 2);
+            MerkleTree merkleTree = MerkleTree.of(body);
+            byte[] root = merkleTree.getRoot();
+            assert merkleTree.getLeafCount() == transactionCount + 2;
+
+            for(int i = 0; i < transactionCount; i++) {
+                MerkleProof proof = merkleTree.proveTransaction(i);
+                assert proof.verifyTransaction(body.getTransactions()[i].getTransactionId(), root);
+                //Transaction ids can not be passed off as contract ids
+                assert !proof.verifyContract(body.getTransactions()[i].getTransactionId(), root);
+                assert !proof.verifyTransaction(new byte[32], root);
+            }
+            for(int i = 0; i < 2; i++) {
+                MerkleProof proof = merkleTree.proveContract(i);
+                assert proof.verifyContract(body.getContracts()[i].getContractId(), root);
+            }
+        }
+    }
+
+    @Test
+    public void proveTransaction_shouldVerifyAgainstStoredHeader() {
+        BlockBody body = buildBody(3, 1);
+        Block block = new Block(1, new byte[0], body, CanonicalEncoding.VERSION_MERKLE_ROOT);
+        HeaderHasher headerHasher = new HeaderHasher(block);
+        HashedBlock hashedBlock = new HashedBlock(1, new byte[0], body, 1, 0, headerHasher.hash(1, 0),
+                CanonicalEncoding.VERSION_MERKLE_ROOT, headerHasher.getMerkleRoot());
+        assert hashedBlock.isHeaderValid();
+        Blockchain blockchain = new Blockchain(List.of(hashedBlock));
+
+        BlockHeader header = blockchain.snapshot().getHeader(0);
+        assert header.isHashValid();
+
+        byte[] transactionId = body.getTransactions()[2].getTransactionId();
+        Optional<MerkleProof> proof = blockchain.proveTransaction(transactionId);
+        assert proof.isPresent();
+        assert proof.get().verifyTransaction(transactionId, header.getMerkleRoot());
+
+        byte[] contractId = body.getContracts()[0].getContractId();
+        assert blockchain.proveContract(contractId).get().verifyContract(contractId, header.getMerkleRoot());
+        assert blockchain.proveTransaction(new byte[32]).isEmpty();
+    }
+
+    private static BlockBody buildBody(int transactionCount, int contractCount) {
+        List<Transaction> transactions = new ArrayList<>();
+        for(int i = 0; i < transactionCount; i++) {
+            transactions.add(Transaction.buildCoinbaseTransaction(i, 100, new byte[0], PUB_KEY));
+        }
+        List<Contract> contracts = new ArrayList<>();
+        for(int i = 0; i < contractCount; i++) {
+            contracts.add(new SignAbleContract(i, i + 1, 100, PUB_KEY, "Title", "Description",
+                    CanonicalEncoding.CURRENT_VERSION).toContract(new byte[0]));
+        }
+        return new BlockBody(transactions.toArray(new Transaction[0]), contracts.toArray(new Contract[0]));
+    }
+}
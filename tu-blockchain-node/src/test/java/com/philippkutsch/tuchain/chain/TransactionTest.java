@@ -1,6 +1,7 @@
 package com.philippkutsch.tuchain.chain;
 
-import com.philippkutsch.tuchain.RsaKeys;
+import com.philippkutsch.tuchain.KeyType;
+import com.philippkutsch.tuchain.Keys;
 import com.philippkutsch.tuchain.chain.utils.ChainUtils;
 import org.junit.Before;
 import org.junit.Test;
@@ -14,7 +15,7 @@ import java.security.spec.InvalidKeySpecException;
 public class TransactionTest {
     public static final String coinbaseTransactionId = "eBU5sEhChxQeqdOro2Fmhpz/VPoKfEFYQLYqxwvJL0A=";
 
-    public RsaKeys rsaKeys;
+    public Keys keys;
     public Transaction coinbaseTransaction;
 
     @Before
@@ -22,7 +23,7 @@ public class TransactionTest {
             NoSuchAlgorithmException, InvalidKeySpecException {
         File publicKeyFile = new File("src/test/resources/public.der");
         File privateKeyFile = new File("src/test/resources/private.der");
-        rsaKeys = RsaKeys.fromFiles(publicKeyFile, privateKeyFile);
+        keys = Keys.fromFiles(KeyType.RSA, publicKeyFile, privateKeyFile);
 
         //Coinbase transaction
         //32 null bytes since coinbase transaction has no input
@@ -31,7 +32,7 @@ public class TransactionTest {
         byte[] signature = "PK coinbase transaction".getBytes(StandardCharsets.UTF_8);
         Transaction.SignedInput signedInput = new Transaction.SignedInput(input.getTxId(), input.getvOut(), signature);
         //Transaction output to miner public key
-        Transaction.Output output = new Transaction.Output(100, rsaKeys.getPublicKeyBytes());
+        Transaction.Output output = new Transaction.Output(100, keys.getPublicKeyBytes());
         Transaction.SignedInput[] inputs = { signedInput };
         Transaction.Output[] outputs = { output };
         coinbaseTransaction = new Transaction(1669935899L, inputs, outputs);
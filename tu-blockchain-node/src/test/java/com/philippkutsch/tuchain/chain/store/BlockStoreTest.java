@@ -0,0 +1,113 @@
+package com.philippkutsch.tuchain.chain.store;
+
+import com.philippkutsch.tuchain.chain.BlockBody;
+import com.philippkutsch.tuchain.chain.Blockchain;
+import com.philippkutsch.tuchain.chain.Contract;
+import com.philippkutsch.tuchain.chain.HashedBlock;
+import com.philippkutsch.tuchain.chain.Transaction;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class BlockStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static HashedBlock block(long id) {
+        Transaction coinbase = Transaction.buildCoinbaseTransaction(
+                id, 100, new byte[0], "PubKey".getBytes(StandardCharsets.UTF_8));
+        return new HashedBlock(id, new byte[0],
+                new BlockBody(new Transaction[]{coinbase}, new Contract[0]), id, 0, new byte[0]);
+    }
+
+    @Test
+    public void append_shouldPersistBlocksAcrossSegments() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        try(BlockStore blockStore = BlockStore.open(directory, 1024, BlockStore.DEFAULT_BODY_CACHE_SIZE)) {
+            for(int i = 1; i <= 20; i++) {
+                blockStore.append(block(i));
+            }
+        }
+        assert Files.exists(directory.resolve("blk00001.dat"));
+
+        try(BlockStore blockStore = BlockStore.open(directory, 1024, BlockStore.DEFAULT_BODY_CACHE_SIZE)) {
+            assert blockStore.size() == 20;
+            for(int i = 0; i < 20; i++) {
+                assert blockStore.read(i).equals(block(i + 1));
+            }
+        }
+    }
+
+    @Test
+    public void open_shouldTruncateTornRecord() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        try(BlockStore blockStore = BlockStore.open(directory)) {
+            blockStore.append(block(1));
+            blockStore.append(block(2));
+        }
+
+        //Record header of a record that was never completed
+        Path segment = directory.resolve("blk00000.dat");
+        long validSize = Files.size(segment);
+        Files.write(segment, new byte[]{0, 0, 1, 0, 42, 42}, StandardOpenOption.APPEND);
+
+        try(BlockStore blockStore = BlockStore.open(directory)) {
+            assert blockStore.size() == 2;
+            assert Files.size(segment) == validSize;
+            blockStore.append(block(3));
+            assert blockStore.read(2).equals(block(3));
+        }
+    }
+
+    @Test
+    public void open_shouldIndexRecordsMissingInIndex() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        try(BlockStore blockStore = BlockStore.open(directory)) {
+            blockStore.append(block(1));
+            blockStore.append(block(2));
+        }
+
+        //Crash after writing the record but before writing the index entry
+        Path index = directory.resolve("index.dat");
+        Files.write(index, Arrays.copyOf(Files.readAllBytes(index), 16 + 7));
+
+        try(BlockStore blockStore = BlockStore.open(directory)) {
+            assert blockStore.size() == 2;
+            assert blockStore.read(1).equals(block(2));
+        }
+    }
+
+    @Test
+    public void load_shouldServeBodiesFromStore() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        try(BlockStore blockStore = BlockStore.open(directory, 1024, 2)) {
+            blockStore.append(block(1));
+            Blockchain blockchain = Blockchain.load(blockStore);
+            for(int i = 2; i <= 10; i++) {
+                blockchain.addBlock(block(i));
+            }
+            assert blockStore.size() == 10;
+            assert blockchain.snapshot().getHeader(4).getResidentBody() == null;
+
+            //Bodies are read back through the mapped segments and the cache
+            for(int i = 0; i < 10; i++) {
+                assert blockchain.getBlockchain().get(i).equals(block(i + 1));
+            }
+            assert blockchain.findTransactionBlock(block(3).getData().getTransactions()[0].getTransactionId())
+                    .get().equals(block(3));
+        }
+
+        try(BlockStore blockStore = BlockStore.open(directory)) {
+            Blockchain blockchain = Blockchain.load(blockStore);
+            assert blockchain.getHeight() == 10;
+            assert blockchain.getLastBlock().equals(block(10));
+        }
+    }
+}
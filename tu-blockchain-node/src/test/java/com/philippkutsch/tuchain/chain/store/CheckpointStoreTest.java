@@ -0,0 +1,160 @@
+package com.philippkutsch.tuchain.chain.store;
+
+import com.philippkutsch.tuchain.chain.BlockBody;
+import com.philippkutsch.tuchain.chain.Blockchain;
+import com.philippkutsch.tuchain.chain.Contract;
+import com.philippkutsch.tuchain.chain.HashedBlock;
+import com.philippkutsch.tuchain.chain.Transaction;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+public class CheckpointStoreTest {
+    private static final byte[] PUB_KEY_A = "PubKeyA".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PUB_KEY_B = "PubKeyB".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static HashedBlock block(long id, Transaction... transactions) {
+        return block(id, new Contract[0], transactions);
+    }
+
+    private static HashedBlock block(long id, Contract[] contracts, Transaction... transactions) {
+        Transaction[] body = new Transaction[transactions.length + 1];
+        body[0] = Transaction.buildCoinbaseTransaction(id, 100, new byte[0], PUB_KEY_A);
+        System.arraycopy(transactions, 0, body, 1, transactions.length);
+        return new HashedBlock(id, new byte[0],
+                new BlockBody(body, contracts), id, 0, ("Hash" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Transaction spend(HashedBlock block, long timestamp) {
+        return spend(block, timestamp, PUB_KEY_B);
+    }
+
+    private static Transaction spend(HashedBlock block, long timestamp, byte[] pubKey) {
+        return new Transaction(timestamp, new Transaction.SignedInput[]{
+                new Transaction.SignedInput(block.getData().getTransactions()[0].getTransactionId(), 0, new byte[0])
+        }, new Transaction.Output[]{
+                new Transaction.Output(100, pubKey)
+        });
+    }
+
+    private static long checkpointCount(Path checkpointDirectory) throws IOException {
+        try(Stream<Path> files = Files.list(checkpointDirectory)) {
+            return files.filter((path) -> path.getFileName().toString().endsWith(".bin")).count();
+        }
+    }
+
+    @Test
+    public void load_shouldRestoreStateFromCheckpoint() throws IOException {
+        Path blockDirectory = folder.newFolder().toPath();
+        Path checkpointDirectory = folder.newFolder().toPath();
+        HashedBlock first = block(1);
+        Transaction spendFirst = spend(first, 100);
+        try(BlockStore blockStore = BlockStore.open(blockDirectory)) {
+            blockStore.append(first);
+            Blockchain blockchain = Blockchain.load(blockStore,
+                    new CheckpointStore(checkpointDirectory, 4), null);
+            for(int i = 2; i <= 10; i++) {
+                blockchain.addBlock(i == 6 ? block(i, spendFirst) : block(i));
+            }
+            blockchain.close();
+        }
+
+        //Due at height 4 and 8, written in the background for the tip at that time
+        long checkpoints = checkpointCount(checkpointDirectory);
+        assert checkpoints >= 1 && checkpoints <= 2;
+
+        try(BlockStore blockStore = BlockStore.open(blockDirectory)) {
+            //Only blocks after the checkpoint are read, headers come from the checkpoint
+            AtomicLong loadedBlocks = new AtomicLong();
+            Blockchain blockchain = Blockchain.load(blockStore,
+                    new CheckpointStore(checkpointDirectory, 4),
+                    (done, total) -> loadedBlocks.incrementAndGet());
+            assert loadedBlocks.get() <= 6;
+            assert blockchain.getHeight() == 10;
+            assert blockchain.findBlock(3).get().getId() == 3;
+            assert blockchain.getBalance(PUB_KEY_A) == 900;
+            assert blockchain.getBalance(PUB_KEY_B) == 100;
+            assert !blockchain.isUnspent(first.getData().getTransactions()[0].getTransactionId(), 0);
+            assert blockchain.findTransactionBlock(spendFirst.getTransactionId()).get().getId() == 6;
+            assert blockchain.findSpendingTransaction(first.getData().getTransactions()[0].getTransactionId(), 0)
+                    .get().equals(spendFirst);
+            assert blockchain.verifyUtxoSet().isEmpty();
+        }
+    }
+
+    @Test
+    public void load_shouldIgnoreCorruptCheckpoint() throws IOException {
+        Path blockDirectory = folder.newFolder().toPath();
+        Path checkpointDirectory = folder.newFolder().toPath();
+        try(BlockStore blockStore = BlockStore.open(blockDirectory)) {
+            blockStore.append(block(1));
+            Blockchain blockchain = Blockchain.load(blockStore,
+                    new CheckpointStore(checkpointDirectory, 4), null);
+            for(int i = 2; i <= 5; i++) {
+                blockchain.addBlock(block(i));
+            }
+            blockchain.close();
+        }
+
+        assert checkpointCount(checkpointDirectory) == 1;
+        try(Stream<Path> files = Files.list(checkpointDirectory)) {
+            for(Path checkpoint : (Iterable<Path>) files::iterator) {
+                byte[] data = Files.readAllBytes(checkpoint);
+                data[data.length / 2] ^= 0x7f;
+                Files.write(checkpoint, data);
+            }
+        }
+
+        try(BlockStore blockStore = BlockStore.open(blockDirectory)) {
+            Blockchain blockchain = Blockchain.load(blockStore,
+                    new CheckpointStore(checkpointDirectory, 4), null);
+            assert blockchain.getHeight() == 5;
+            assert blockchain.getBalance(PUB_KEY_A) == 500;
+            assert blockchain.verifyUtxoSet().isEmpty();
+        }
+    }
+
+    @Test
+    public void load_shouldRestoreContractInvestment() throws IOException {
+        Path blockDirectory = folder.newFolder().toPath();
+        Path checkpointDirectory = folder.newFolder().toPath();
+        Contract contract = new Contract(1, 300, 1000, PUB_KEY_A, "Project", "Description", new byte[0]);
+        byte[] contractId = contract.getContractId();
+        HashedBlock first = block(1);
+        HashedBlock second = block(2, new Contract[]{contract});
+        try(BlockStore blockStore = BlockStore.open(blockDirectory)) {
+            blockStore.append(first);
+            Blockchain blockchain = Blockchain.load(blockStore,
+                    new CheckpointStore(checkpointDirectory, 4), null);
+            blockchain.addBlock(second);
+            blockchain.addBlock(block(3, spend(first, 200, contractId)));
+            //After the deadline, paid to the contract but not invested
+            blockchain.addBlock(block(4, spend(second, 400, contractId)));
+            blockchain.addBlock(block(5));
+            assert blockchain.getContractInvestment(contractId) == 100;
+            //Below the tip the investment is summed from the address history
+            assert blockchain.snapshot().pin(4).getContractInvestment(contractId) == 100;
+            blockchain.close();
+        }
+        assert checkpointCount(checkpointDirectory) == 1;
+
+        try(BlockStore blockStore = BlockStore.open(blockDirectory)) {
+            Blockchain blockchain = Blockchain.load(blockStore,
+                    new CheckpointStore(checkpointDirectory, 4), null);
+            assert blockchain.getContractInvestment(contractId) == 100;
+            assert blockchain.getBalance(contractId) == 200;
+            assert blockchain.findTransactionsTo(contractId).size() == 2;
+            assert blockchain.findContract(contractId).isPresent();
+        }
+    }
+}
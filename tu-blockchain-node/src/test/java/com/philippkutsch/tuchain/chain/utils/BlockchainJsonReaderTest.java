@@ -0,0 +1,47 @@
+package com.philippkutsch.tuchain.chain.utils;
+
+import com.philippkutsch.tuchain.chain.BlockBody;
+import com.philippkutsch.tuchain.chain.Blockchain;
+import com.philippkutsch.tuchain.chain.Contract;
+import com.philippkutsch.tuchain.chain.HashedBlock;
+import com.philippkutsch.tuchain.chain.Transaction;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BlockchainJsonReaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readFile_shouldStreamBlocksWithProgress() throws IOException {
+        List<HashedBlock> blockList = new ArrayList<>();
+        for(int i = 1; i <= 50; i++) {
+            Transaction coinbase = Transaction.buildCoinbaseTransaction(
+                    i, 100, new byte[0], "PubKey".getBytes(StandardCharsets.UTF_8));
+            blockList.add(new HashedBlock(i, new byte[0],
+                    new BlockBody(new Transaction[]{coinbase}, new Contract[0]), i, 0, new byte[0]));
+        }
+        Path file = folder.newFile().toPath();
+        Files.writeString(file, ChainUtils.encodeToString(new Blockchain(blockList)));
+
+        List<HashedBlock> readBlocks = new ArrayList<>();
+        long[] lastProgress = {0, 0};
+        int count = BlockchainJsonReader.readFile(file, readBlocks::add, (done, total) -> {
+            assert done >= lastProgress[0];
+            lastProgress[0] = done;
+            lastProgress[1] = total;
+        });
+
+        assert count == 50;
+        assert readBlocks.equals(blockList);
+        assert lastProgress[0] == lastProgress[1];
+    }
+}
@@ -0,0 +1,33 @@
+package com.philippkutsch.tuchain.chain.utils;
+
+import org.junit.Test;
+
+import java.util.List;
+
+public class PersistentVectorTest {
+    @Test
+    public void append_shouldKeepPreviousVersions() {
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        PersistentVector<Integer> half = null;
+        //Enough elements for a root overflow
+        for(int i = 0; i < 2000; i++) {
+            vector = vector.append(i);
+            if(i == 999) {
+                half = vector;
+            }
+        }
+
+        assert vector.size() == 2000;
+        for(int i = 0; i < 2000; i++) {
+            assert vector.get(i) == i;
+        }
+        assert half.size() == 1000;
+        for(int i = 0; i < 1000; i++) {
+            assert half.get(i) == i;
+        }
+
+        List<Integer> prefix = vector.asList(10);
+        assert prefix.size() == 10;
+        assert prefix.get(9) == 9;
+    }
+}
@@ -0,0 +1,69 @@
+package com.philippkutsch.tuchain.modules.mining;
+
+import com.philippkutsch.tuchain.chain.Block;
+import com.philippkutsch.tuchain.chain.HeaderHasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HashEngineBenchmark
+ *
+ * Header hashes per second of the scalar MessageDigest engine and the vector engine.
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=com.philippkutsch.tuchain.modules.mining.HashEngineBenchmark -Dexec.classpathScope=test
+ * or from the IDE.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class HashEngineBenchmark {
+    //Enough nonces per invocation to fill every lane of the widest vector shape
+    private static final int NONCES = 64;
+
+    @Param({HashEngines.SCALAR, HashEngines.VECTOR})
+    public String engineName;
+
+    private HashEngine engine;
+    private byte[] hashes;
+    private long nuOnce;
+
+    @Setup
+    public void setup() {
+        engine = HashEngines.forName(engineName).create(Block.generateGenesisBlock());
+        hashes = new byte[engine.getLanes() * HeaderHasher.HASH_LENGTH];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NONCES)
+    public void hashNonces(Blackhole blackhole) {
+        int lanes = engine.getLanes();
+        for(int i = 0; i < NONCES; i += lanes) {
+            engine.hash(1668000000000L, nuOnce, 1, hashes);
+            nuOnce += lanes;
+            blackhole.consume(hashes);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(HashEngineBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
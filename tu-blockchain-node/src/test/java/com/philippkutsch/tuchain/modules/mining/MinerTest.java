@@ -1,10 +1,22 @@
 package com.philippkutsch.tuchain.modules.mining;
 
+import com.philippkutsch.tuchain.chain.Block;
+import com.philippkutsch.tuchain.chain.BlockBody;
+import com.philippkutsch.tuchain.chain.CanonicalEncoding;
+import com.philippkutsch.tuchain.chain.Contract;
 import com.philippkutsch.tuchain.chain.HashedBlock;
+import com.philippkutsch.tuchain.chain.Transaction;
 import com.philippkutsch.tuchain.chain.utils.ChainUtils;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
 public class MinerTest {
     private static final byte[] PREFIX_ZERO_LENGTH = new byte[]{(byte)0xff, (byte)0xff};
     private static final byte[] PREFIX_FOUR_LENGTH = new byte[]{(byte)0x0f, (byte)0xff};
@@ -17,6 +29,13 @@ public class MinerTest {
         assert Miner.calculateZeroPrefix(PREFIX_FOUR_LENGTH) == 4;
         assert Miner.calculateZeroPrefix(PREFIX_EIGHT_LENGTH) == 8;
         assert Miner.calculateZeroPrefix(PREFIX_TEN_LENGTH) == 10;
+
+        byte[] hash = new byte[32];
+        assert Miner.calculateZeroPrefix(hash) == 256;
+        hash[9] = 0x01;
+        assert Miner.calculateZeroPrefix(hash) == 79;
+        hash[3] = (byte) 0x80;
+        assert Miner.calculateZeroPrefix(hash) == 24;
     }
 
     @Test
@@ -24,4 +43,52 @@ public class MinerTest {
     public void testThrotteling() throws Exception {
         new Miner(8, 100, HashedBlock.generateGenesisBlock(), (number, hash) -> System.out.println("Hash " + ChainUtils.bytesToBase64(hash))).call();
     }
+
+    @Test
+    public void updateBlock_shouldMineLatestTemplate() throws Exception {
+        Block initial = Block.generateGenesisBlock();
+        Block updated = new Block(initial.getId(), initial.getPrevHash(), new BlockBody(new Transaction[]{
+                Transaction.buildCoinbaseTransaction(1, 100, new byte[0], "PubKey".getBytes(StandardCharsets.UTF_8))
+        }, new Contract[0]), CanonicalEncoding.CURRENT_VERSION, initial.getDifficulty());
+
+        AtomicReference<Miner> miner = new AtomicReference<>();
+        miner.set(new Miner(8, 0, initial, (number, hash) -> {
+            if(number == 0) {
+                //Spoil the first attempt, so the initial template can not win
+                hash[0] = (byte) 0xff;
+                miner.get().updateBlock(updated);
+            }
+        }));
+        HashedBlock hashedBlock = miner.get().call();
+        assert hashedBlock.getData().equals(updated.getData());
+        assert hashedBlock.isHeaderValid();
+    }
+
+    @Test
+    public void switchTip_shouldMoveRunningSearch() throws Exception {
+        Block initial = Block.generateGenesisBlock();
+        Block nextTip = new Block(initial.getId() + 1, new byte[32], new BlockBody(new Transaction[0], new Contract[0]),
+                CanonicalEncoding.CURRENT_VERSION, 8);
+
+        //Unreachable target, the search only ends on the new tip
+        MiningMetrics metrics = new MiningMetrics();
+        Miner miner = new Miner(256, 0, initial, null, ScalarHashEngine::new, metrics);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<HashedBlock> future = executor.submit(miner);
+            while(metrics.getTotalHashes() == 0) {
+                Thread.sleep(1);
+            }
+            miner.switchTip(nextTip, 8);
+
+            HashedBlock hashedBlock = future.get(30, TimeUnit.SECONDS);
+            assert hashedBlock.getId() == nextTip.getId();
+            assert hashedBlock.isHeaderValid();
+            assert Miner.calculateZeroPrefix(hashedBlock.getHash()) >= 8;
+            assert metrics.getLastWorkerPickupMicros() < TimeUnit.SECONDS.toMicros(1);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
 }
@@ -0,0 +1,116 @@
+package com.philippkutsch.tuchain.modules.mining;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.philippkutsch.tuchain.chain.Block;
+import com.philippkutsch.tuchain.chain.HashedBlock;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class MiningEngineTest {
+    @Test
+    public void names_shouldFindBuiltInProviders() {
+        List<String> names = MiningEngines.names();
+        assert names.contains(MiningEngines.THREADS);
+        assert names.contains(MiningEngines.FORK_JOIN);
+        assert names.contains(MiningEngines.GET_WORK);
+    }
+
+    @Test
+    public void forkJoin_shouldMineValidBlock() throws Exception {
+        try (ForkJoinMiningEngine engine = new ForkJoinMiningEngine(2)) {
+            AtomicBoolean cancelled = new AtomicBoolean();
+            HashedBlock hashedBlock = engine.mine(
+                    new Miner(8, 0, Block.generateGenesisBlock(), null), cancelled).get(30, TimeUnit.SECONDS);
+            assert hashedBlock.isHeaderValid();
+            assert Miner.calculateZeroPrefix(hashedBlock.getHash()) >= 8;
+            assert cancelled.get();
+        }
+    }
+
+    @Test
+    public void singleThread_shouldStopOnCancelToken() throws Exception {
+        ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor());
+        try {
+            AtomicBoolean cancelled = new AtomicBoolean();
+            //Unreachable target, only the token ends the search
+            ListenableFuture<HashedBlock> future = new ThreadMiningEngine(1, executor)
+                    .mine(new Miner(256, 0, Block.generateGenesisBlock(), null), cancelled);
+            cancelled.set(true);
+            try {
+                future.get(30, TimeUnit.SECONDS);
+                assert false;
+            }
+            catch (ExecutionException e) {
+                assert e.getCause() instanceof CancellationException;
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void getWork_shouldAcceptWorkerSolution() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try (GetWorkMiningEngine engine = new GetWorkMiningEngine(
+                InetAddress.getLoopbackAddress(), 0, executor)) {
+            Block block = Block.generateGenesisBlock();
+            AtomicBoolean cancelled = new AtomicBoolean();
+            executor.execute(new GetWorkWorker("127.0.0.1", engine.getPort(), ScalarHashEngine::new));
+
+            HashedBlock hashedBlock = engine.mine(new Miner(8, 0, block, null), cancelled)
+                    .get(30, TimeUnit.SECONDS);
+            assert hashedBlock.isHeaderValid();
+            assert hashedBlock.getData().equals(block.getData());
+            assert Miner.calculateZeroPrefix(hashedBlock.getHash()) >= 8;
+            assert cancelled.get();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void getWork_shouldRejectJobOfOlderTemplate() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try (GetWorkMiningEngine engine = new GetWorkMiningEngine(
+                InetAddress.getLoopbackAddress(), 0, executor);
+             Socket socket = new Socket(InetAddress.getLoopbackAddress(), engine.getPort());
+             BufferedReader reader = new BufferedReader(new InputStreamReader(
+                     socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                     socket.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            Block block = Block.generateGenesisBlock();
+            //Target of zero bits, every nonce solves the job
+            Miner miner = new Miner(0, 0, block, null);
+            engine.mine(miner, new AtomicBoolean());
+
+            writer.println(GetWorkProtocol.GET_WORK);
+            String[] work = reader.readLine().split(" ");
+            assert work[0].equals(GetWorkProtocol.WORK);
+            miner.updateBlock(Block.generateGenesisBlock());
+
+            writer.println(GetWorkProtocol.SUBMIT + " " + work[1] + " 0 0");
+            assert reader.readLine().equals(GetWorkProtocol.REJECTED + " stale");
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.philippkutsch.tuchain.modules.mining;
+
+import com.philippkutsch.tuchain.chain.Block;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+public class MiningMetricsTest {
+    @Test
+    public void search_shouldPublishWorkerHashes() throws Exception {
+        MiningMetrics metrics = new MiningMetrics();
+        metrics.onRoundStarted();
+        Miner miner = new Miner(8, 0, Block.generateGenesisBlock(), null, ScalarHashEngine::new, metrics);
+        assert miner.call().isHeaderValid();
+        metrics.onBlockMined();
+        metrics.sample();
+
+        assert metrics.getTotalHashes() > 0;
+        assert metrics.getWorkerHashrates().containsKey(Thread.currentThread().getName());
+        assert metrics.getHashrate() > 0;
+        assert metrics.getLastTemplateAttempts() == metrics.getTotalHashes();
+        assert metrics.getBlocksMined() == 1;
+        assert metrics.getTimeToBlockHistogram()[0] == 1;
+    }
+
+    @Test
+    public void onRoundAbandoned_shouldCountStaleHashes() {
+        MiningMetrics metrics = new MiningMetrics();
+        MiningMetrics.Worker worker = metrics.worker("worker");
+        worker.addHashes(10);
+        metrics.onRoundStarted();
+        worker.addHashes(5);
+        metrics.onTemplateUpdated();
+        worker.addHashes(7);
+        assert metrics.getLastTemplateAttempts() == 5;
+        assert metrics.getCurrentTemplateAttempts() == 7;
+
+        metrics.onRoundAbandoned();
+        assert metrics.getStaleRounds() == 1;
+        assert metrics.getStaleHashes() == 12;
+        assert metrics.getBlocksMined() == 0;
+    }
+
+    @Test
+    public void sample_shouldDropIdleWorkers() {
+        MiningMetrics metrics = new MiningMetrics(0);
+        metrics.worker("idle").addHashes(10);
+        metrics.worker("active").addHashes(10);
+        metrics.sample();
+        metrics.worker("active").addHashes(5);
+        metrics.sample();
+
+        assert !metrics.getWorkerHashrates().containsKey("idle");
+        assert metrics.getWorkerHashrates().containsKey("active");
+        assert metrics.getTotalHashes() == 25;
+
+        metrics.removeWorker("active");
+        assert metrics.getWorkerHashrates().isEmpty();
+        assert metrics.getTotalHashes() == 25;
+    }
+
+    @Test
+    public void registerMBean_shouldExposeAttributes() throws Exception {
+        MiningMetrics metrics = new MiningMetrics();
+        metrics.worker("worker").addHashes(42);
+        ObjectName name = metrics.registerMBean("metrics-test");
+        try {
+            Object hashes = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "TotalHashes");
+            assert Long.valueOf(42).equals(hashes);
+        }
+        finally {
+            MiningMetrics.unregisterMBean(name);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.philippkutsch.tuchain.modules.mining;
+
+import com.philippkutsch.tuchain.KeyType;
+import com.philippkutsch.tuchain.Node;
+import com.philippkutsch.tuchain.Keys;
+import com.philippkutsch.tuchain.chain.Block;
+import com.philippkutsch.tuchain.chain.Blockchain;
+import com.philippkutsch.tuchain.chain.CanonicalEncoding;
+import com.philippkutsch.tuchain.chain.HashedBlock;
+import com.philippkutsch.tuchain.chain.SignAbleTransaction;
+import com.philippkutsch.tuchain.chain.Transaction;
+import com.philippkutsch.tuchain.config.Config;
+import com.philippkutsch.tuchain.modules.BlockchainSyncModule;
+import com.philippkutsch.tuchain.modules.ModuleLoadException;
+import com.philippkutsch.tuchain.network.ConnectedNode;
+import com.philippkutsch.tuchain.network.RemoteNode;
+import com.philippkutsch.tuchain.network.protocol.NewBlockMessage;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class MiningModuleTest {
+    @Test
+    public void minedAndPeerBlock_shouldAppendOnlyOne() throws Exception {
+        Block genesis = Block.generateGenesisBlock();
+        PausingBlockchain blockchain = new PausingBlockchain(List.of(
+                new Miner(genesis.getDifficulty(), 0, genesis, null).call()));
+        //getwork engine without workers, so only the test produces blocks
+        Config config = new Config("mining-test", 0, null, null, null, null,
+                1, 0, MiningEngines.GET_WORK, null, null, 0, List.of());
+        TestNode node = new TestNode(config, Keys.generate(KeyType.RSA), blockchain);
+        MiningModule miningModule = node.requireModule(MiningModule.class);
+        RemoteNode peer = new RemoteNode(new ConnectedNode(null, "peer", "127.0.0.1", 1, true));
+        HashedBlock minedBlock = mineNext(blockchain);
+        HashedBlock peerBlock = mineNext(blockchain);
+
+        //The peer block is appended by the sync module while the miner callback
+        //of a block on the same parent runs, the peer append waits until the
+        //miner thread is blocked
+        CountDownLatch appending = new CountDownLatch(1);
+        Thread minerThread = new Thread(() -> {
+            await(appending);
+            blockchain.competitorStarted = true;
+            miningModule.onSuccess(minedBlock);
+        });
+        Thread peerThread = new Thread(() ->
+                node.onMessage(peer, new NewBlockMessage(peerBlock).encode()));
+        minerThread.setDaemon(true);
+        peerThread.setDaemon(true);
+        blockchain.pause(peerThread, minerThread, appending);
+        minerThread.start();
+        peerThread.start();
+        minerThread.join(30_000);
+        peerThread.join(30_000);
+
+        boolean finished = !minerThread.isAlive() && !peerThread.isAlive();
+        //Shutting down a deadlocked module would block as well
+        if(finished) {
+            miningModule.shutdown();
+            node.shutdown();
+        }
+        assert finished : "deadlock";
+
+        //Peer block was appended first, the mined block on the same parent is stale
+        assert blockchain.getHeight() == 2;
+        assert Arrays.equals(blockchain.getLastBlock().getHash(), peerBlock.getHash());
+    }
+
+    @Test
+    public void olderTemplateMined_shouldRequeueNewerTransactions() throws Exception {
+        Block genesis = Block.generateGenesisBlock();
+        Blockchain blockchain = new Blockchain(List.of(
+                new Miner(genesis.getDifficulty(), 0, genesis, null).call()));
+        Keys keys = Keys.generate(KeyType.RSA);
+        HashedBlock firstFunds = mineNext(blockchain, keys.getPublicKeyBytes(), List.of());
+        blockchain.addBlock(firstFunds);
+        HashedBlock secondFunds = mineNext(blockchain, keys.getPublicKeyBytes(), List.of());
+        blockchain.addBlock(secondFunds);
+        Config config = new Config("mining-test", 0, null, null, null, null,
+                1, 0, MiningEngines.GET_WORK, null, null, 0, List.of());
+        TestNode node = new TestNode(config, keys, blockchain);
+        MiningModule miningModule = node.requireModule(MiningModule.class);
+        try {
+            Transaction older = spend(keys, firstFunds.getData().getTransactions()[0]);
+            Transaction newer = spend(keys, secondFunds.getData().getTransactions()[0]);
+            assert miningModule.submitTransaction(older);
+            miningModule.refreshTemplate();
+            //Workers still find a block of the template before the refresh
+            HashedBlock olderTemplateBlock = mineNext(blockchain, keys.getPublicKeyBytes(), List.of(older));
+            assert miningModule.submitTransaction(newer);
+            miningModule.refreshTemplate();
+
+            miningModule.onSuccess(olderTemplateBlock);
+            assert blockchain.getHeight() == 4;
+            assert blockchain.findTransaction(older.getTransactionId()).isPresent();
+            assert blockchain.findTransaction(newer.getTransactionId()).isEmpty();
+
+            //Template goes back to the queue, submitting it again finds it there
+            miningModule.stopMining();
+            assert !miningModule.submitTransaction(newer);
+        }
+        finally {
+            miningModule.shutdown();
+            node.shutdown();
+        }
+    }
+
+    @Nonnull
+    private static HashedBlock mineNext(@Nonnull Blockchain blockchain) throws Exception {
+        return mineNext(blockchain, Keys.generate(KeyType.RSA).getPublicKeyBytes(), List.of());
+    }
+
+    @Nonnull
+    private static HashedBlock mineNext(@Nonnull Blockchain blockchain,
+                                        @Nonnull byte[] minerKey,
+                                        @Nonnull List<Transaction> transactions) throws Exception {
+        List<Transaction> blockTransactions = new ArrayList<>();
+        blockTransactions.add(Transaction.buildCoinbaseTransaction(
+                System.currentTimeMillis(), 100, new byte[0], minerKey));
+        blockTransactions.addAll(transactions);
+        Block next = blockchain.snapshot().buildNextBlock(blockTransactions, List.of());
+        //noinspection ConstantConditions
+        return new Miner(next.getDifficulty(), 0, next, null).call();
+    }
+
+    //Sends the whole first output of source back to keys
+    @Nonnull
+    private static Transaction spend(@Nonnull Keys keys, @Nonnull Transaction source) throws Exception {
+        Transaction.Input input = new Transaction.Input(source.getTransactionId(), 0);
+        Transaction.Output[] outputs = { new Transaction.Output(
+                source.getOutputs()[0].getAmount(), keys.getPublicKeyBytes()) };
+        SignAbleTransaction signAbleTransaction = new SignAbleTransaction(System.currentTimeMillis(),
+                new Transaction.Input[]{ input }, outputs, CanonicalEncoding.CURRENT_VERSION);
+        byte[] signature = keys.signData(signAbleTransaction.toSignBytes());
+        return new Transaction(signAbleTransaction.getTimestamp(),
+                new Transaction.SignedInput[]{ input.toSignedInput(signature) }, outputs,
+                signAbleTransaction.getVersion());
+    }
+
+    private static void await(@Nonnull CountDownLatch latch) {
+        try {
+            latch.await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //Holds the first append of writer until competitor is blocked, writer holds the chain lock meanwhile
+    private static class PausingBlockchain extends Blockchain {
+        private volatile Thread writer;
+        private volatile Thread competitor;
+        private volatile CountDownLatch appending;
+        private volatile boolean competitorStarted;
+
+        private PausingBlockchain(@Nonnull List<HashedBlock> initialState) {
+            super(initialState);
+        }
+
+        private void pause(@Nonnull Thread writer,
+                           @Nonnull Thread competitor,
+                           @Nonnull CountDownLatch appending) {
+            this.competitor = competitor;
+            this.appending = appending;
+            this.writer = writer;
+        }
+
+        @Override
+        public void addBlock(@Nonnull HashedBlock hashedBlock) {
+            if(Thread.currentThread() == writer) {
+                writer = null;
+                appending.countDown();
+                long deadline = System.currentTimeMillis() + 10_000;
+                while(System.currentTimeMillis() < deadline && !(competitorStarted && isBlocked(competitor))) {
+                    Thread.onSpinWait();
+                }
+            }
+            super.addBlock(hashedBlock);
+        }
+
+        private static boolean isBlocked(@Nonnull Thread thread) {
+            Thread.State state = thread.getState();
+            return state == Thread.State.WAITING || state == Thread.State.BLOCKED
+                    || state == Thread.State.TERMINATED;
+        }
+    }
+
+    private static class TestNode extends Node {
+        private TestNode(@Nonnull Config config,
+                         @Nonnull Keys keys,
+                         @Nonnull Blockchain blockchain)
+                throws IOException, ModuleLoadException {
+            super(config, keys, blockchain);
+            registerModule(new MiningModule(this));
+            registerModule(new BlockchainSyncModule(this));
+            run();
+        }
+    }
+}
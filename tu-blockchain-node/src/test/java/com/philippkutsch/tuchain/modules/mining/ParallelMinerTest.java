@@ -0,0 +1,57 @@
+package com.philippkutsch.tuchain.modules.mining;
+
+import com.philippkutsch.tuchain.chain.Block;
+import com.philippkutsch.tuchain.chain.HashedBlock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ParallelMinerTest {
+    private ExecutorService executorService;
+
+    @Before
+    public void setup() {
+        executorService = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void call_shouldFindValidBlockAndStopWorkers() throws Exception {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Miner miner = new Miner(8, 0, Block.generateGenesisBlock(), null);
+        HashedBlock hashedBlock = new ParallelMiner(miner, 4, executorService, cancelled).call();
+
+        assert hashedBlock.isHeaderValid();
+        assert Miner.calculateZeroPrefix(hashedBlock.getHash()) >= 8;
+        assert cancelled.get();
+    }
+
+    @Test
+    public void call_shouldStopOnCancellation() throws Exception {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        //Unreachable target, only the token ends the search
+        Miner miner = new Miner(256, 0, Block.generateGenesisBlock(), null);
+        Future<HashedBlock> future = executorService.submit(
+                new ParallelMiner(miner, 4, executorService, cancelled));
+
+        cancelled.set(true);
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            assert false;
+        }
+        catch (ExecutionException e) {
+            assert e.getCause().getMessage().equals("Failed to hash block");
+        }
+    }
+}
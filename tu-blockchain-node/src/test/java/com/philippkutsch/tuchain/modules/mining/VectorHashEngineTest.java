@@ -0,0 +1,61 @@
+package com.philippkutsch.tuchain.modules.mining;
+
+import com.philippkutsch.tuchain.chain.Block;
+import com.philippkutsch.tuchain.chain.BlockBody;
+import com.philippkutsch.tuchain.chain.CanonicalEncoding;
+import com.philippkutsch.tuchain.chain.Contract;
+import com.philippkutsch.tuchain.chain.HashedBlock;
+import com.philippkutsch.tuchain.chain.HeaderHasher;
+import com.philippkutsch.tuchain.chain.Transaction;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class VectorHashEngineTest {
+    @Before
+    public void setup() {
+        Assume.assumeTrue(HashEngines.isVectorAvailable());
+    }
+
+    @Test
+    public void hash_shouldMatchHeaderHasher() {
+        BlockBody body = new BlockBody(new Transaction[]{
+                Transaction.buildCoinbaseTransaction(1, 100, new byte[0], "PubKey".getBytes(StandardCharsets.UTF_8))
+        }, new Contract[0]);
+
+        //Different prevHash lengths and versions move timestamp and nonce across word and block borders
+        for(int prevHashLength = 0; prevHashLength <= 40; prevHashLength++) {
+            for(int version = CanonicalEncoding.VERSION_BODY_DIGEST; version <= CanonicalEncoding.CURRENT_VERSION; version++) {
+                Block block = new Block(7, new byte[prevHashLength], body, version,
+                        CanonicalEncoding.hasDifficulty(version) ? 20 : null);
+                assertSameHashes(block, 1668000000000L, 0, 1);
+                assertSameHashes(block, -1L, Long.MAX_VALUE - 3, 5);
+            }
+        }
+    }
+
+    @Test
+    public void forName_shouldMineValidBlock() throws Exception {
+        HashedBlock hashedBlock = new Miner(8, 0, Block.generateGenesisBlock(), null,
+                HashEngines.forName(HashEngines.VECTOR)).call();
+        assert hashedBlock.isHeaderValid();
+        assert Miner.calculateZeroPrefix(hashedBlock.getHash()) >= 8;
+    }
+
+    private static void assertSameHashes(Block block, long timestamp, long firstNonce, long stride) {
+        VectorHashEngine engine = new VectorHashEngine(block);
+        HeaderHasher headerHasher = new HeaderHasher(block);
+        assert Arrays.equals(engine.getMerkleRoot(), headerHasher.getMerkleRoot());
+
+        byte[] hashes = new byte[engine.getLanes() * HeaderHasher.HASH_LENGTH];
+        engine.hash(timestamp, firstNonce, stride, hashes);
+        for(int lane = 0; lane < engine.getLanes(); lane++) {
+            byte[] expected = headerHasher.hash(timestamp, firstNonce + lane * stride);
+            assert Arrays.equals(expected, Arrays.copyOfRange(hashes,
+                    lane * HeaderHasher.HASH_LENGTH, (lane + 1) * HeaderHasher.HASH_LENGTH));
+        }
+    }
+}
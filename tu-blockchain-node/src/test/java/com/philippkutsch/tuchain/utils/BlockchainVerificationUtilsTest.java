@@ -1,21 +1,192 @@
 package com.philippkutsch.tuchain.utils;
 
+import com.philippkutsch.tuchain.KeyType;
+import com.philippkutsch.tuchain.Keys;
+import com.philippkutsch.tuchain.chain.Block;
+import com.philippkutsch.tuchain.chain.BlockBody;
 import com.philippkutsch.tuchain.chain.Blockchain;
+import com.philippkutsch.tuchain.chain.CanonicalEncoding;
+import com.philippkutsch.tuchain.chain.ChainSnapshot;
+import com.philippkutsch.tuchain.chain.Contract;
 import com.philippkutsch.tuchain.chain.HashedBlock;
+import com.philippkutsch.tuchain.chain.SignAbleTransaction;
+import com.philippkutsch.tuchain.chain.Transaction;
 import com.philippkutsch.tuchain.chain.utils.ChainUtils;
+import com.philippkutsch.tuchain.modules.mining.Miner;
 import com.philippkutsch.tuchain.network.protocol.BlockchainSyncMessage;
 import com.philippkutsch.tuchain.network.protocol.Message;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import javax.annotation.Nonnull;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
-//TODO: Not sure if blockchain is just corrupted, or if its a real bug
-@Ignore
 public class BlockchainVerificationUtilsTest {
     @Test
+    public void connectBlock_shouldOnlyAcceptNextBlock() throws Exception {
+        Block genesis = Block.generateGenesisBlock();
+        Blockchain blockchain = new Blockchain(List.of(
+                new Miner(genesis.getDifficulty(), 0, genesis, null).call()));
+
+        byte[] minerKey = KeyPairGenerator.getInstance("RSA").generateKeyPair().getPublic().getEncoded();
+        Block next = blockchain.snapshot().buildNextBlock(List.of(Transaction.buildCoinbaseTransaction(
+                System.currentTimeMillis(), 100, new byte[0], minerKey)), List.of());
+        HashedBlock hashedNext = new Miner(next.getDifficulty(), 0, next, null).call();
+
+        assert BlockchainVerificationUtils.connectBlock(blockchain, hashedNext, 100).isSuccess();
+        assert blockchain.getHeight() == 2;
+
+        //Same block again no longer extends the tip
+        BlockchainVerificationUtils.VerificationResult result
+                = BlockchainVerificationUtils.connectBlock(blockchain, hashedNext, 100);
+        assert !result.isSuccess();
+        assert blockchain.getHeight() == 2;
+
+        //Audit still covers the whole chain
+        assert BlockchainVerificationUtils.validateBlockchain(blockchain, 100).isSuccess();
+        BlockchainVerificationUtils.VerificationResult audit
+                = BlockchainVerificationUtils.validateBlockchain(blockchain, 50, new ForkJoinPool(2));
+        assert audit.getError() == BlockchainVerificationUtils.VerificationError.InvalidTransaction;
+        assert audit.getErrorBlock().getId() == hashedNext.getId();
+    }
+
+    @Test
+    public void connectBlock_shouldRejectVersionDowngrade() throws Exception {
+        Block genesis = Block.generateGenesisBlock();
+        HashedBlock hashedGenesis = new Miner(genesis.getDifficulty(), 0, genesis, null).call();
+        Blockchain blockchain = new Blockchain(List.of(hashedGenesis));
+
+        //Merkle root version has no difficulty, a single zero bit would be enough without the check
+        byte[] minerKey = KeyPairGenerator.getInstance("RSA").generateKeyPair().getPublic().getEncoded();
+        Block downgraded = new Block(hashedGenesis.getId() + 1, hashedGenesis.getHash(), new BlockBody(
+                new Transaction[]{Transaction.buildCoinbaseTransaction(
+                        System.currentTimeMillis(), 100, new byte[0], minerKey)},
+                new Contract[0]), CanonicalEncoding.VERSION_MERKLE_ROOT);
+        HashedBlock hashedDowngraded = new Miner(1, 0, downgraded, null).call();
+
+        BlockchainVerificationUtils.VerificationResult result
+                = BlockchainVerificationUtils.connectBlock(blockchain, hashedDowngraded, 100);
+        assert result.getError() == BlockchainVerificationUtils.VerificationError.InvalidVersion;
+        assert blockchain.getHeight() == 1;
+    }
+
+    @Test
+    public void connectBlock_shouldReportTipChangedWhenRaceIsLost() throws Exception {
+        Block genesis = Block.generateGenesisBlock();
+        HashedBlock hashedGenesis = new Miner(genesis.getDifficulty(), 0, genesis, null).call();
+        HashedBlock[] competitor = new HashedBlock[1];
+        //Competing writer appends its block right before the checked block
+        Blockchain blockchain = new Blockchain(List.of(hashedGenesis)) {
+            @Override
+            public boolean compareAndAppend(@Nonnull ChainSnapshot expected, @Nonnull HashedBlock hashedBlock) {
+                if(competitor[0] != null) {
+                    addBlock(competitor[0]);
+                    competitor[0] = null;
+                }
+                return super.compareAndAppend(expected, hashedBlock);
+            }
+        };
+        HashedBlock block = mineNext(blockchain, List.of(), List.of());
+        competitor[0] = mineNext(blockchain, List.of(), List.of());
+
+        BlockchainVerificationUtils.VerificationResult result
+                = BlockchainVerificationUtils.connectBlock(blockchain, block, 100);
+        assert result.getError() == BlockchainVerificationUtils.VerificationError.TipChanged;
+        assert blockchain.getHeight() == 2;
+    }
+
+    @Test
+    public void spendingOutputOfSameBlock_shouldBeRejectedOnArrivalAndAudit() throws Exception {
+        Keys keys = Keys.generate(KeyType.RSA);
+        Blockchain blockchain = fundedChain(keys);
+        Transaction funds = blockchain.getLastBlock().getData().getTransactions()[0];
+        long timestamp = System.currentTimeMillis();
+        Transaction first = spend(keys, funds, keys.getPublicKeyBytes(), timestamp);
+        Transaction second = spend(keys, first, keys.getPublicKeyBytes(), timestamp + 1);
+        HashedBlock block = mineNext(blockchain, List.of(first, second), List.of());
+
+        BlockchainVerificationUtils.VerificationResult result
+                = BlockchainVerificationUtils.connectBlock(blockchain, block, 100);
+        assert result.getError() == BlockchainVerificationUtils.VerificationError.InvalidTransaction;
+        assert blockchain.getHeight() == 2;
+
+        //Audit of a chain that contains the block anyway
+        blockchain.addBlock(block);
+        BlockchainVerificationUtils.VerificationResult audit
+                = BlockchainVerificationUtils.validateBlockchain(blockchain, 100);
+        assert audit.getError() == BlockchainVerificationUtils.VerificationError.InvalidTransaction;
+        assert audit.getErrorBlock().getId() == block.getId();
+    }
+
+    @Test
+    public void investingInContractOfSameBlock_shouldBeValidOnArrivalAndAudit() throws Exception {
+        Keys keys = Keys.generate(KeyType.RSA);
+        Blockchain blockchain = fundedChain(keys);
+        Transaction funds = blockchain.getLastBlock().getData().getTransactions()[0];
+        //Deadline passed, a running contract would refund the investment
+        long timestamp = System.currentTimeMillis();
+        Contract contract = new Contract(timestamp, 1, 100, keys.getPublicKeyBytes(),
+                "title", "description", new byte[0]);
+        Transaction investment = spend(keys, funds, contract.getContractId(), timestamp);
+        HashedBlock block = mineNext(blockchain, List.of(investment), List.of(contract));
+
+        //The contract only exists after the block, so the investment does not invoke it
+        assert BlockchainVerificationUtils.connectBlock(blockchain, block, 100).isSuccess();
+        assert blockchain.getHeight() == 3;
+        assert BlockchainVerificationUtils.validateBlockchain(blockchain, 100).isSuccess();
+    }
+
+    //Genesis and a block paying the coinbase to keys
+    @Nonnull
+    private static Blockchain fundedChain(@Nonnull Keys keys) throws Exception {
+        Block genesis = Block.generateGenesisBlock();
+        Blockchain blockchain = new Blockchain(List.of(
+                new Miner(genesis.getDifficulty(), 0, genesis, null).call()));
+        Block funding = blockchain.snapshot().buildNextBlock(List.of(Transaction.buildCoinbaseTransaction(
+                System.currentTimeMillis(), 100, new byte[0], keys.getPublicKeyBytes())), List.of());
+        assert BlockchainVerificationUtils.connectBlock(blockchain,
+                new Miner(funding.getDifficulty(), 0, funding, null).call(), 100).isSuccess();
+        return blockchain;
+    }
+
+    @Nonnull
+    private static HashedBlock mineNext(@Nonnull Blockchain blockchain,
+                                        @Nonnull List<Transaction> transactions,
+                                        @Nonnull List<Contract> contracts) throws Exception {
+        byte[] minerKey = KeyPairGenerator.getInstance("RSA").generateKeyPair().getPublic().getEncoded();
+        List<Transaction> blockTransactions = new ArrayList<>();
+        blockTransactions.add(Transaction.buildCoinbaseTransaction(
+                System.currentTimeMillis(), 100, new byte[0], minerKey));
+        blockTransactions.addAll(transactions);
+        Block next = blockchain.snapshot().buildNextBlock(blockTransactions, contracts);
+        //noinspection ConstantConditions
+        return new Miner(next.getDifficulty(), 0, next, null).call();
+    }
+
+    //Sends the first output of source to target
+    @Nonnull
+    private static Transaction spend(@Nonnull Keys keys,
+                                     @Nonnull Transaction source,
+                                     @Nonnull byte[] target,
+                                     long timestamp) throws Exception {
+        Transaction.Input input = new Transaction.Input(source.getTransactionId(), 0);
+        Transaction.Output[] outputs = { new Transaction.Output(source.getOutputs()[0].getAmount(), target) };
+        SignAbleTransaction signAbleTransaction = new SignAbleTransaction(timestamp,
+                new Transaction.Input[]{ input }, outputs, CanonicalEncoding.CURRENT_VERSION);
+        byte[] signature = keys.signData(signAbleTransaction.toSignBytes());
+        return new Transaction(timestamp, new Transaction.SignedInput[]{ input.toSignedInput(signature) },
+                outputs, signAbleTransaction.getVersion());
+    }
+
+    //TODO: Not sure if blockchain is just corrupted, or if its a real bug
+    @Test
+    @Ignore
     public void validateBlockchainTest() throws IOException {
         File testMessage = new File("src/test/resources/BSyncTestchain.json");
         Message message = ChainUtils.decodeFromString(Files.readString(testMessage.toPath()), Message.class);
@@ -0,0 +1,36 @@
+package com.philippkutsch.tuchain.utils;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class SignatureCacheTest {
+    @Test
+    public void contains_shouldOnlyMatchSameTriple() {
+        SignatureCache cache = new SignatureCache(10);
+        byte[] sighash = SignatureCache.sighash("transaction".getBytes(StandardCharsets.UTF_8));
+        byte[] publicKey = new byte[]{1, 2, 3};
+        byte[] signature = new byte[]{4, 5, 6};
+
+        assert !cache.contains(sighash, publicKey, signature);
+        cache.addValid(sighash, publicKey, signature);
+        assert cache.contains(sighash, publicKey, signature);
+
+        //Moving a byte from key to signature is a different entry
+        assert !cache.contains(sighash, new byte[]{1, 2}, new byte[]{3, 4, 5, 6});
+        assert !cache.contains(sighash, publicKey, new byte[]{4, 5, 7});
+
+        assert cache.getHits() == 1;
+        assert cache.getMisses() == 3;
+        assert cache.getHitRate() == 0.25;
+    }
+
+    @Test
+    public void addValid_shouldStayBounded() {
+        SignatureCache cache = new SignatureCache(10);
+        for(int i = 0; i < 100; i++) {
+            cache.addValid(new byte[]{(byte) i}, new byte[0], new byte[0]);
+        }
+        assert cache.size() <= 10;
+    }
+}